@@ -1,12 +1,22 @@
 package com.selfimprovementtree.backend;
 
+import com.selfimprovementtree.backend.service.UserDataRestore;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.util.Arrays;
 
 @SpringBootApplication
+@EnableScheduling
 public class BackendApplication {
 
-	public static void main(String[] args) {
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0 && args[0].equals("restore")) {
+			// offline restore from backups; see UserDataRestore
+			UserDataRestore.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
 		SpringApplication.run(BackendApplication.class, args);
 	}
 
@@ -0,0 +1,26 @@
+package com.selfimprovementtree.backend.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.selfimprovementtree.backend.model.GameRules;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Loads the game balance tables; point app.game.rules at another resource to rebalance without a rebuild.
+ */
+@Configuration
+public class GameRulesConfig {
+
+    @Bean
+    public GameRules gameRules(ObjectMapper mapper,
+                               @Value("${app.game.rules:classpath:game-rules.json}") Resource rules) throws IOException {
+        try (InputStream in = rules.getInputStream()) {
+            return mapper.readValue(in, GameRules.class);
+        }
+    }
+}
@@ -4,12 +4,16 @@ import com.stripe.Stripe;
 import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 
 /**
  * Stripe API configuration.
  * Initializes the Stripe SDK with the secret key from application.properties.
+ * Lazy: {@link com.selfimprovementtree.backend.controller.StripeController} depends on it,
+ * so the key is set before the first Stripe call rather than at startup.
  */
 @Configuration
+@Lazy
 public class StripeConfig {
 
     @Value("${stripe.secret.key}")
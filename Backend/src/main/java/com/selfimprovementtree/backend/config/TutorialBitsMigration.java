@@ -0,0 +1,39 @@
+package com.selfimprovementtree.backend.config;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * One-off migration from the old per-tutorial boolean columns to app_user.tutorial_bits.
+ * ddl-auto=update adds the new column but never drops old ones, and the old NOT NULL columns
+ * would break inserts, so fold them into the mask and drop them. No-op on fresh databases.
+ */
+@Component
+public class TutorialBitsMigration implements ApplicationRunner {
+
+    // column -> bit, must match TutorialStep
+    private static final List<String> LEGACY_COLUMNS = List.of("TUTORIAL_TREE", "TUTORIAL_HABIT", "TUTORIAL_SHOP");
+
+    private final JdbcTemplate jdbc;
+
+    public TutorialBitsMigration(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        for (int bit = 0; bit < LEGACY_COLUMNS.size(); bit++) {
+            String column = LEGACY_COLUMNS.get(bit);
+            Integer present = jdbc.queryForObject(
+                    "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME = 'APP_USER' AND COLUMN_NAME = ?",
+                    Integer.class, column);
+            if (present == null || present == 0) continue;
+            jdbc.update("UPDATE app_user SET tutorial_bits = BITOR(tutorial_bits, " + (1L << bit) + ") WHERE " + column);
+            jdbc.execute("ALTER TABLE app_user DROP COLUMN " + column);
+        }
+    }
+}
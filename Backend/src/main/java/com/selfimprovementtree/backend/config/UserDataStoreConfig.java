@@ -0,0 +1,83 @@
+package com.selfimprovementtree.backend.config;
+
+import com.selfimprovementtree.backend.repo.JpaUserDataStore;
+import com.selfimprovementtree.backend.repo.UserDataArchive;
+import com.selfimprovementtree.backend.repo.UserDataRepository;
+import com.selfimprovementtree.backend.repo.UserDataStore;
+import com.selfimprovementtree.backend.repo.shard.ShardedUserDataStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chooses how user_data is stored.
+ * app.userdata.shards=1 (default) keeps everything in the main database via JPA;
+ * a larger value spreads rows over that many H2 files, the main database being shard 0.
+ */
+@Configuration
+public class UserDataStoreConfig {
+
+    @Value("${app.userdata.shards:1}")
+    private int shardCount;
+
+    @Value("${app.userdata.shard-url:jdbc:h2:file:./data/selfimprovement-shard%d;MODE=PostgreSQL}")
+    private String shardUrl;
+
+    @Value("${app.userdata.virtual-nodes:128}")
+    private int virtualNodes;
+
+    @Value("${app.userdata.rebalance.batch-size:500}")
+    private int rebalanceBatchSize;
+
+    @Value("${app.userdata.rebalance.pause-ms:20}")
+    private long rebalancePauseMs;
+
+    @Value("${app.archive.dir:./data/archive}")
+    private String archiveDir;
+
+    @Value("${app.archive.segment-max-bytes:67108864}")
+    private long archiveSegmentMaxBytes;
+
+    @Bean
+    public UserDataArchive userDataArchive() throws IOException {
+        return new UserDataArchive(Path.of(archiveDir), archiveSegmentMaxBytes);
+    }
+
+    @Bean
+    public UserDataStore userDataStore(UserDataRepository repo, DataSource dataSource) {
+        if (shardCount <= 1) {
+            return new JpaUserDataStore(repo);
+        }
+        List<DataSource> all = new ArrayList<>();
+        List<DataSource> owned = new ArrayList<>();
+        all.add(dataSource);
+        for (int i = 1; i < shardCount; i++) {
+            DataSource ds = DataSourceBuilder.create()
+                    .driverClassName("org.h2.Driver")
+                    .url(String.format(shardUrl, i))
+                    .username("sa")
+                    .password("")
+                    .build();
+            all.add(ds);
+            owned.add(ds);
+        }
+        return new ShardedUserDataStore(all, owned, virtualNodes, rebalanceBatchSize, rebalancePauseMs);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebalance(ApplicationReadyEvent event) {
+        UserDataStore store = event.getApplicationContext().getBean(UserDataStore.class);
+        if (store instanceof ShardedUserDataStore sharded) {
+            sharded.rebalanceAsync();
+        }
+    }
+}
@@ -1,30 +1,82 @@
 package com.selfimprovementtree.backend.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.selfimprovementtree.backend.repo.AppUserRepository;
 import com.selfimprovementtree.backend.repo.PendingRegistrationRepository;
-import com.selfimprovementtree.backend.repo.UserDataRepository;
+import com.selfimprovementtree.backend.repo.UserDataStore;
+import com.selfimprovementtree.backend.security.ConcurrencyLimitFilter;
+import com.selfimprovementtree.backend.service.AccountNameIndex;
+import com.selfimprovementtree.backend.service.EngagementService;
+import com.selfimprovementtree.backend.service.FeatureFlagService;
+import com.selfimprovementtree.backend.service.FlightRecordingService;
+import com.selfimprovementtree.backend.service.HabitAnalyticsService;
+import com.selfimprovementtree.backend.service.HabitHistoryService;
+import com.selfimprovementtree.backend.service.ReminderService;
+import com.selfimprovementtree.backend.service.UserDataArchiveService;
+import com.selfimprovementtree.backend.service.UserDataBackupService;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/admin")
 @CrossOrigin(origins = "*")
+@Lazy // operator-only endpoints; built on the first admin request
 public class AdminController {
 
     private final AppUserRepository userRepo;
-    private final UserDataRepository dataRepo;
+    private final UserDataStore dataRepo;
     private final PendingRegistrationRepository pendingRepo;
+    private final ObjectMapper objectMapper;
+    private final UserDataArchiveService archiveService;
+    private final HabitAnalyticsService analyticsService;
+    private final AccountNameIndex accountNames;
+    private final ConcurrencyLimitFilter limitFilter;
+    private final UserDataBackupService backupService;
+    private final FeatureFlagService featureFlagService;
+    private final HabitHistoryService historyService;
+    private final FlightRecordingService flightRecording;
+    private final ReminderService reminderService;
+    private final EngagementService engagement;
 
     @Value("${app.admin.token:dev-reset-token}")
     private String adminToken;
 
-    public AdminController(AppUserRepository userRepo, UserDataRepository dataRepo, PendingRegistrationRepository pendingRepo) {
+    public AdminController(AppUserRepository userRepo, UserDataStore dataRepo, PendingRegistrationRepository pendingRepo, ObjectMapper objectMapper, UserDataArchiveService archiveService, HabitAnalyticsService analyticsService, AccountNameIndex accountNames, ConcurrencyLimitFilter limitFilter, UserDataBackupService backupService, FeatureFlagService featureFlagService, HabitHistoryService historyService, FlightRecordingService flightRecording, ReminderService reminderService, EngagementService engagement) {
         this.userRepo = userRepo;
         this.dataRepo = dataRepo;
         this.pendingRepo = pendingRepo;
+        this.objectMapper = objectMapper;
+        this.archiveService = archiveService;
+        this.analyticsService = analyticsService;
+        this.accountNames = accountNames;
+        this.limitFilter = limitFilter;
+        this.backupService = backupService;
+        this.featureFlagService = featureFlagService;
+        this.historyService = historyService;
+        this.flightRecording = flightRecording;
+        this.reminderService = reminderService;
+        this.engagement = engagement;
     }
 
     @DeleteMapping("/wipe-accounts")
@@ -38,10 +90,280 @@ public class AdminController {
                 .toList();
         // delete user_data for those accounts
         dataRepo.deleteAllById(accountIds);
+        historyService.deleteUsers(accountIds);
         // delete pending registrations
         pendingRepo.deleteAll();
         // delete all users
         userRepo.deleteAll();
+        accountNames.rebuildAsync();
         return ResponseEntity.ok().body("OK");
     }
+
+    /**
+     * GET /api/admin/users?q=&field=username|email&after=&limit=50&activity=false
+     * Without q, pages through all users by id. With q, lists users whose username (or email; the default when
+     * q contains '@') starts with q, case-sensitive, in that column's order. Pass the returned "next" as
+     * "after" for the following page. activity=true adds each user's last user_data updatedAt.
+     */
+    @GetMapping("/users")
+    public ResponseEntity<?> searchUsers(@RequestHeader(value = "X-Admin-Token", required = false) String token,
+                                         @RequestParam(value = "q", required = false) String q,
+                                         @RequestParam(value = "field", required = false) String field,
+                                         @RequestParam(value = "after", required = false) String after,
+                                         @RequestParam(value = "limit", defaultValue = "50") int limit,
+                                         @RequestParam(value = "activity", defaultValue = "false") boolean activity) {
+        if (token == null || !token.equals(adminToken)) {
+            return ResponseEntity.status(401).body("UNAUTHORIZED");
+        }
+        Limit page = Limit.of(Math.max(1, Math.min(500, limit)));
+        List<AppUserRepository.UserSummary> users;
+        String sortedBy;
+        try {
+            if (q == null || q.isEmpty()) {
+                sortedBy = "id";
+                users = userRepo.pageById(after == null || after.isEmpty() ? 0L : Long.parseLong(after), page);
+            } else {
+                sortedBy = field != null ? field : (q.contains("@") ? "email" : "username");
+                String to = q + '\uffff';
+                String from = after == null ? "" : after;
+                users = switch (sortedBy) {
+                    case "username" -> userRepo.pageByUsername(q, to, from, page);
+                    case "email" -> userRepo.pageByEmail(q, to, from, page);
+                    default -> throw new IllegalArgumentException();
+                };
+            }
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", "INVALID_INPUT"));
+        }
+
+        Map<String, OffsetDateTime> lastActive = Map.of();
+        if (activity && !users.isEmpty()) {
+            lastActive = dataRepo.findUpdatedAt(users.stream().map(u -> u.getId().toString()).toList());
+        }
+        List<Map<String, Object>> items = new ArrayList<>(users.size());
+        for (AppUserRepository.UserSummary u : users) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", u.getId());
+            item.put("username", u.getUsername());
+            item.put("email", u.getEmail());
+            if (activity) item.put("lastActive", lastActive.get(u.getId().toString()));
+            items.add(item);
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("items", items);
+        String next = null;
+        if (users.size() == page.max()) {
+            AppUserRepository.UserSummary last = users.get(users.size() - 1);
+            next = switch (sortedBy) {
+                case "username" -> last.getUsername();
+                case "email" -> last.getEmail();
+                default -> last.getId().toString();
+            };
+        }
+        body.put("next", next);
+        return ResponseEntity.ok(body);
+    }
+
+    @GetMapping("/userdata/count")
+    public ResponseEntity<?> countUserData(@RequestHeader(value = "X-Admin-Token", required = false) String token) {
+        if (token == null || !token.equals(adminToken)) {
+            return ResponseEntity.status(401).body("UNAUTHORIZED");
+        }
+        return ResponseEntity.ok(Map.of("count", dataRepo.count()));
+    }
+
+    /**
+     * Streams every user_data row as newline-delimited JSON.
+     * With sharding enabled all shards are read in parallel, so rows are not ordered.
+     */
+    @GetMapping("/userdata/export")
+    public ResponseEntity<StreamingResponseBody> exportUserData(@RequestHeader(value = "X-Admin-Token", required = false) String token) {
+        if (token == null || !token.equals(adminToken)) {
+            return ResponseEntity.status(401).build();
+        }
+        StreamingResponseBody body = out -> {
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            dataRepo.scan(e -> {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("id", e.getId());
+                row.put("version", e.getVersion());
+                row.put("updatedAt", e.getUpdatedAt() != null ? e.getUpdatedAt().toString() : null);
+                row.put("json", e.getJson());
+                try {
+                    String line = objectMapper.writeValueAsString(row);
+                    synchronized (writer) {
+                        writer.write(line);
+                        writer.write('\n');
+                    }
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+            writer.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
+    }
+
+    /** Runs the archiving job now instead of waiting for its nightly schedule. */
+    @PostMapping("/userdata/archive")
+    public ResponseEntity<?> archiveUserData(@RequestHeader(value = "X-Admin-Token", required = false) String token,
+                                             @RequestParam(value = "days", defaultValue = "30") int days) {
+        if (token == null || !token.equals(adminToken)) {
+            return ResponseEntity.status(401).body("UNAUTHORIZED");
+        }
+        return ResponseEntity.ok(Map.of("archived", archiveService.archiveInactive(days)));
+    }
+
+    /** Aggregated habit statistics; served from memory, never scans user data. */
+    @GetMapping("/stats")
+    public ResponseEntity<?> stats(@RequestHeader(value = "X-Admin-Token", required = false) String token) {
+        if (token == null || !token.equals(adminToken)) {
+            return ResponseEntity.status(401).body("UNAUTHORIZED");
+        }
+        return ResponseEntity.ok(analyticsService.summary());
+    }
+
+    @PostMapping("/stats/rebuild")
+    public ResponseEntity<?> rebuildStats(@RequestHeader(value = "X-Admin-Token", required = false) String token) {
+        if (token == null || !token.equals(adminToken)) {
+            return ResponseEntity.status(401).body("UNAUTHORIZED");
+        }
+        analyticsService.rebuild();
+        return ResponseEntity.ok(analyticsService.summary());
+    }
+
+    /** Current adaptive limits, in-flight counts and rejections for /api/userdata. */
+    @GetMapping("/limits")
+    public ResponseEntity<?> limits(@RequestHeader(value = "X-Admin-Token", required = false) String token) {
+        if (token == null || !token.equals(adminToken)) {
+            return ResponseEntity.status(401).body("UNAUTHORIZED");
+        }
+        return ResponseEntity.ok(limitFilter.metrics());
+    }
+
+    /**
+     * The last {@code minutes} of the continuous flight recording as a .jfr file, for JDK Mission Control
+     * or {@code jfr print --events selfimprovement.*}.
+     */
+    @GetMapping("/jfr")
+    public ResponseEntity<StreamingResponseBody> dumpFlightRecording(@RequestHeader(value = "X-Admin-Token", required = false) String token,
+                                                                     @RequestParam(value = "minutes", defaultValue = "10") int minutes) throws IOException {
+        if (token == null || !token.equals(adminToken)) {
+            return ResponseEntity.status(401).build();
+        }
+        if (!flightRecording.isRunning()) {
+            return ResponseEntity.status(503).build();
+        }
+        Path file = flightRecording.dump(Math.max(1, Math.min(minutes, 24 * 60)));
+        StreamingResponseBody body = out -> {
+            try {
+                Files.copy(file, out);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(Files.size(file))
+                .header("Content-Disposition", "attachment; filename=\"backend-" + System.currentTimeMillis() + ".jfr\"")
+                .body(body);
+    }
+
+    /** Reminder wheel size, dispatch backlog and mail counters. */
+    @GetMapping("/reminders")
+    public ResponseEntity<?> reminders(@RequestHeader(value = "X-Admin-Token", required = false) String token) {
+        if (token == null || !token.equals(adminToken)) {
+            return ResponseEntity.status(401).body("UNAUTHORIZED");
+        }
+        return ResponseEntity.ok(reminderService.metrics());
+    }
+
+    /**
+     * Approximate distinct active ids (all, accounts, guests) and guest-to-account conversions on {@code date}
+     * (yyyy-MM-dd, default UTC today) and over the 7 and 30 days ending with it.
+     */
+    @GetMapping("/engagement")
+    public ResponseEntity<?> engagement(@RequestHeader(value = "X-Admin-Token", required = false) String token,
+                                        @RequestParam(value = "date", required = false) String date) {
+        if (token == null || !token.equals(adminToken)) {
+            return ResponseEntity.status(401).body("UNAUTHORIZED");
+        }
+        LocalDate day;
+        try {
+            day = date != null ? LocalDate.parse(date) : LocalDate.now(ZoneOffset.UTC);
+        } catch (DateTimeParseException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", "INVALID_INPUT"));
+        }
+        return ResponseEntity.ok(engagement.report(day));
+    }
+
+    @GetMapping("/backup")
+    public ResponseEntity<?> listBackups(@RequestHeader(value = "X-Admin-Token", required = false) String token) {
+        if (token == null || !token.equals(adminToken)) {
+            return ResponseEntity.status(401).body("UNAUTHORIZED");
+        }
+        return ResponseEntity.ok(backupService.list());
+    }
+
+    @PostMapping("/backup/snapshot")
+    public ResponseEntity<?> backupSnapshot(@RequestHeader(value = "X-Admin-Token", required = false) String token) {
+        if (token == null || !token.equals(adminToken)) {
+            return ResponseEntity.status(401).body("UNAUTHORIZED");
+        }
+        try {
+            return ResponseEntity.ok(Map.of("snapshot", backupService.snapshot()));
+        } catch (IllegalStateException ex) {
+            return ResponseEntity.status(409).body(Map.of("error", ex.getMessage()));
+        }
+    }
+
+    @PostMapping("/backup/delta")
+    public ResponseEntity<?> backupDelta(@RequestHeader(value = "X-Admin-Token", required = false) String token) {
+        if (token == null || !token.equals(adminToken)) {
+            return ResponseEntity.status(401).body("UNAUTHORIZED");
+        }
+        try {
+            return ResponseEntity.ok(Map.of("rows", backupService.delta()));
+        } catch (IllegalStateException ex) {
+            return ResponseEntity.status(409).body(Map.of("error", ex.getMessage()));
+        }
+    }
+
+    @GetMapping("/features")
+    public ResponseEntity<?> listFeatures(@RequestHeader(value = "X-Admin-Token", required = false) String token) {
+        if (token == null || !token.equals(adminToken)) {
+            return ResponseEntity.status(401).body("UNAUTHORIZED");
+        }
+        return ResponseEntity.ok(featureFlagService.list());
+    }
+
+    /**
+     * Creates or updates a flag; body: { "enabled": true, "rolloutPercent": 25, "description": "..." }.
+     * Takes effect on this instance immediately, on others within app.features.refresh-ms.
+     */
+    @PutMapping("/features/{key}")
+    public ResponseEntity<?> saveFeature(@RequestHeader(value = "X-Admin-Token", required = false) String token,
+                                         @PathVariable String key,
+                                         @RequestBody Map<String, Object> body) {
+        if (token == null || !token.equals(adminToken)) {
+            return ResponseEntity.status(401).body("UNAUTHORIZED");
+        }
+        boolean enabled = Boolean.TRUE.equals(body.get("enabled"));
+        int percent = body.get("rolloutPercent") instanceof Number n ? n.intValue() : 100;
+        String description = body.get("description") instanceof String d ? d : null;
+        try {
+            return ResponseEntity.ok(featureFlagService.save(key, enabled, percent, description));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/features/{key}")
+    public ResponseEntity<?> deleteFeature(@RequestHeader(value = "X-Admin-Token", required = false) String token,
+                                           @PathVariable String key) {
+        if (token == null || !token.equals(adminToken)) {
+            return ResponseEntity.status(401).body("UNAUTHORIZED");
+        }
+        return featureFlagService.delete(key) ? ResponseEntity.ok().body("OK") : ResponseEntity.notFound().build();
+    }
 }
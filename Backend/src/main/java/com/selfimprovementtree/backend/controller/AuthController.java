@@ -4,6 +4,7 @@ import com.selfimprovementtree.backend.service.AuthService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @RestController
@@ -32,6 +33,20 @@ public class AuthController {
         }
     }
 
+    @GetMapping("/available")
+    public ResponseEntity<?> available(@RequestParam(value = "username", required = false) String username,
+                                       @RequestParam(value = "email", required = false) String email) {
+        boolean hasUsername = username != null && !username.isBlank();
+        boolean hasEmail = email != null && !email.isBlank();
+        if (!hasUsername && !hasEmail) {
+            return ResponseEntity.badRequest().body(Map.of("error", "INVALID_INPUT"));
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (hasUsername) result.put("username", authService.isUsernameAvailable(username));
+        if (hasEmail) result.put("email", authService.isEmailAvailable(email));
+        return ResponseEntity.ok(result);
+    }
+
     @PostMapping("/login")
     public ResponseEntity<?> login(@RequestBody Map<String, String> body) {
         String usernameOrEmail = body.getOrDefault("usernameOrEmail", "");
@@ -44,6 +59,16 @@ public class AuthController {
         }
     }
 
+    @PostMapping("/logout-all")
+    public ResponseEntity<?> logoutAll(@RequestHeader(value = "Authorization", required = false) String authHeader) {
+        try {
+            authService.logoutAll(authHeader);
+            return ResponseEntity.ok(Map.of("status", "LOGGED_OUT"));
+        } catch (RuntimeException ex) {
+            return ResponseEntity.status(401).body(Map.of("error", ex.getMessage()));
+        }
+    }
+
     @PostMapping("/link-guest")
     public ResponseEntity<?> linkGuest(@RequestBody Map<String, String> body) {
         String usernameOrEmail = body.getOrDefault("usernameOrEmail", "");
@@ -0,0 +1,47 @@
+package com.selfimprovementtree.backend.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.selfimprovementtree.backend.service.BootstrapService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bootstrap Controller
+ * Everything the app needs at start-up in one round trip.
+ */
+@RestController
+@RequestMapping("/api/bootstrap")
+@CrossOrigin(origins = "*")
+public class BootstrapController {
+
+    private final BootstrapService bootstrapService;
+
+    public BootstrapController(BootstrapService bootstrapService) {
+        this.bootstrapService = bootstrapService;
+    }
+
+    /**
+     * POST /api/bootstrap
+     * Body: { "id": "<userdata id>", "ops": [ { "op": "userdata.get" }, { "op": "tutorial.get" },
+     *         { "op": "userdata.put", "data": {...}, "merge": true, "baseVersion": 3 },
+     *         { "op": "tutorial.patch", "data": { "tree": true } }, { "op": "features.get" } ] }
+     * Returns { "results": [ { "op": ..., "status": 200, "version": ..., "body": ... }, ... ] } in request order.
+     */
+    @PostMapping
+    public ResponseEntity<?> bootstrap(
+            @RequestBody JsonNode body,
+            @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        JsonNode ops = body.path("ops");
+        if (!ops.isArray() || ops.isEmpty() || ops.size() > BootstrapService.MAX_OPS) {
+            return ResponseEntity.badRequest().body(Map.of("error", "INVALID_INPUT"));
+        }
+        List<JsonNode> list = new ArrayList<>(ops.size());
+        ops.forEach(list::add);
+        String id = body.hasNonNull("id") ? body.get("id").asText() : null;
+        return ResponseEntity.ok(Map.of("results", bootstrapService.run(authHeader, id, list)));
+    }
+}
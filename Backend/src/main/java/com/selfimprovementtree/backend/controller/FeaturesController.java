@@ -0,0 +1,63 @@
+package com.selfimprovementtree.backend.controller;
+
+import com.selfimprovementtree.backend.model.FeatureFlags;
+import com.selfimprovementtree.backend.security.JwtService;
+import com.selfimprovementtree.backend.service.FeatureFlagService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Features Controller
+ * Serves the feature flags as evaluated for one user, from memory.
+ */
+@RestController
+@RequestMapping("/api/features")
+@CrossOrigin(origins = "*")
+public class FeaturesController {
+
+    private final FeatureFlagService featureFlagService;
+    private final JwtService jwtService;
+
+    public FeaturesController(FeatureFlagService featureFlagService, JwtService jwtService) {
+        this.featureFlagService = featureFlagService;
+        this.jwtService = jwtService;
+    }
+
+    /**
+     * GET /api/features?id=<guest or account id>
+     * Returns { "flags": { "newShop": true, ... } } for the signed-in account (Bearer token) or else for {@code id}.
+     * The ETag covers the flag definitions and this user's results, so If-None-Match answers 304 until either changes.
+     */
+    @GetMapping
+    public ResponseEntity<?> getFeatures(
+            @RequestParam(value = "id", required = false) String id,
+            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            WebRequest request) {
+        String userId = jwtService.subjectOf(authHeader);
+        if (userId == null) userId = id;
+
+        FeatureFlags flags = featureFlagService.snapshot();
+        long[] bits = new long[(flags.size() + 63) / 64];
+        flags.evaluate(userId, bits);
+        StringBuilder etag = new StringBuilder("\"").append(Long.toHexString(flags.version()));
+        for (long word : bits) etag.append('-').append(Long.toHexString(word));
+        etag.append('"');
+        if (request.checkNotModified(etag.toString())) {
+            return null;
+        }
+
+        Map<String, Boolean> result = new LinkedHashMap<>();
+        for (int i = 0; i < flags.size(); i++) {
+            result.put(flags.key(i), (bits[i >>> 6] & (1L << (i & 63))) != 0);
+        }
+        return ResponseEntity.ok()
+                .eTag(etag.toString())
+                .cacheControl(CacheControl.noCache())
+                .body(Map.of("flags", result));
+    }
+}
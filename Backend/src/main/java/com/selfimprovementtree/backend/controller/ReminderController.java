@@ -0,0 +1,80 @@
+package com.selfimprovementtree.backend.controller;
+
+import com.selfimprovementtree.backend.security.JwtService;
+import com.selfimprovementtree.backend.service.ReminderService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Daily habit reminder of the signed-in account.
+ * Mail goes out at the given local time when good habits are still unchecked that day (see {@link ReminderService}).
+ */
+@RestController
+@RequestMapping("/api/reminders")
+@CrossOrigin(origins = "*")
+public class ReminderController {
+
+    private final ReminderService reminderService;
+    private final JwtService jwtService;
+
+    public ReminderController(ReminderService reminderService, JwtService jwtService) {
+        this.reminderService = reminderService;
+        this.jwtService = jwtService;
+    }
+
+    @GetMapping
+    public ResponseEntity<?> get(@RequestHeader(value = "Authorization", required = false) String authHeader) {
+        Long userId = userId(authHeader);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "User not authenticated"));
+        }
+        return reminderService.get(userId)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "NOT_FOUND")));
+    }
+
+    /**
+     * PUT /api/reminders
+     * Body: { "time": "20:00", "zone": "Europe/Berlin", "enabled": true }
+     */
+    @PutMapping
+    public ResponseEntity<?> put(@RequestBody Map<String, Object> body,
+                                 @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        Long userId = userId(authHeader);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "User not authenticated"));
+        }
+        Object time = body.get("time");
+        Object zone = body.get("zone");
+        boolean enabled = !Boolean.FALSE.equals(body.get("enabled"));
+        try {
+            return ResponseEntity.ok(reminderService.save(userId, enabled,
+                    time instanceof String t ? t : null, zone instanceof String z ? z : null));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", ex.getMessage()));
+        }
+    }
+
+    @DeleteMapping
+    public ResponseEntity<?> delete(@RequestHeader(value = "Authorization", required = false) String authHeader) {
+        Long userId = userId(authHeader);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "User not authenticated"));
+        }
+        reminderService.delete(userId);
+        return ResponseEntity.ok(Map.of("status", "DELETED"));
+    }
+
+    private Long userId(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) return null;
+        String token = authHeader.substring("Bearer ".length()).trim();
+        try {
+            return Long.parseLong(jwtService.getSubject(token));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package com.selfimprovementtree.backend.controller;
 
+import com.selfimprovementtree.backend.config.StripeConfig;
+import com.selfimprovementtree.backend.service.FlightEvents;
 import com.stripe.exception.SignatureVerificationException;
 import com.stripe.exception.StripeException;
 import com.stripe.model.Event;
 import com.stripe.model.PaymentIntent;
+import com.stripe.net.RequestOptions;
 import com.stripe.net.Webhook;
 import com.stripe.param.PaymentIntentCreateParams;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -21,18 +25,26 @@ import java.util.Map;
 @RestController
 @RequestMapping("/api/stripe")
 @CrossOrigin(origins = "*") // Allow React Native dev server
+@Lazy
 public class StripeController {
 
     @Value("${stripe.webhook.secret}")
     private String webhookSecret;
 
+    public StripeController(StripeConfig stripeConfig) {
+        // Injected only to make sure Stripe.apiKey is set before any request is served
+    }
+
     /**
      * Create a PaymentIntent
      * POST /api/stripe/create-payment-intent
      * Body: { "amount": 1000, "currency": "usd", "metadata": {...} }
+     * An Idempotency-Key header is forwarded to Stripe.
      */
     @PostMapping("/create-payment-intent")
-    public ResponseEntity<?> createPaymentIntent(@RequestBody Map<String, Object> request) {
+    public ResponseEntity<?> createPaymentIntent(
+            @RequestBody Map<String, Object> request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         try {
             // Extract parameters
             Long amount = ((Number) request.get("amount")).longValue();
@@ -54,7 +66,11 @@ public class StripeController {
                 paramsBuilder.putAllMetadata(metadata);
             }
 
-            PaymentIntent paymentIntent = PaymentIntent.create(paramsBuilder.build());
+            // Stripe dedupes on the same key too, which covers retries after a restart
+            RequestOptions options = idempotencyKey != null
+                    ? RequestOptions.builder().setIdempotencyKey(idempotencyKey).build()
+                    : RequestOptions.getDefault();
+            PaymentIntent paymentIntent = createPaymentIntent(paramsBuilder.build(), options);
 
             // Return client secret
             Map<String, String> response = new HashMap<>();
@@ -77,6 +93,22 @@ public class StripeController {
         }
     }
 
+    private static PaymentIntent createPaymentIntent(PaymentIntentCreateParams params, RequestOptions options)
+            throws StripeException {
+        FlightEvents.Stripe event = new FlightEvents.Stripe("payment_intent.create");
+        event.begin();
+        try {
+            PaymentIntent intent = PaymentIntent.create(params, options);
+            if (intent.getLastResponse() != null) event.payloadBytes = intent.getLastResponse().body().length();
+            return intent;
+        } catch (StripeException | RuntimeException ex) {
+            event.fail(ex);
+            throw ex;
+        } finally {
+            event.commit();
+        }
+    }
+
     /**
      * Stripe Webhook Endpoint
      * POST /api/stripe/webhook
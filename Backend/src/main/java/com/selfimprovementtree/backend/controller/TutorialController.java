@@ -1,101 +1,88 @@
 package com.selfimprovementtree.backend.controller;
 
-import com.selfimprovementtree.backend.model.AppUser;
+import com.selfimprovementtree.backend.model.TutorialStep;
 import com.selfimprovementtree.backend.repo.AppUserRepository;
-import org.springframework.beans.factory.annotation.Autowired;
+import com.selfimprovementtree.backend.security.JwtService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Tutorial Progress Controller
- * Manages tutorial completion state for each user
+ * Manages tutorial completion state for each user.
+ * Progress is a bitmask on app_user (see {@link TutorialStep}); reads and writes are one query each.
  */
 @RestController
 @RequestMapping("/api/user/tutorial-progress")
 @CrossOrigin(origins = "*")
 public class TutorialController {
 
-    @Autowired
-    private AppUserRepository userRepository;
+    private final AppUserRepository userRepository;
+    private final JwtService jwtService;
+
+    public TutorialController(AppUserRepository userRepository, JwtService jwtService) {
+        this.userRepository = userRepository;
+        this.jwtService = jwtService;
+    }
 
     /**
      * GET /api/user/tutorial-progress
      * Returns the tutorial completion state for the authenticated user
      */
     @GetMapping
-    public ResponseEntity<?> getTutorialProgress(Authentication authentication) {
-        if (authentication == null || !authentication.isAuthenticated()) {
+    public ResponseEntity<?> getTutorialProgress(
+            @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        Long userId = userId(authHeader);
+        if (userId == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "User not authenticated"));
         }
-
-        String username = authentication.getName();
-        AppUser user = userRepository.findByUsername(username).orElse(null);
-
-        if (user == null) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                    .body(Map.of("error", "User not found"));
-        }
-
-        Map<String, Boolean> progress = new HashMap<>();
-        progress.put("tree", user.isTutorialTree());
-        progress.put("habit", user.isTutorialHabit());
-        progress.put("shop", user.isTutorialShop());
-
-        return ResponseEntity.ok(progress);
+        return userRepository.findTutorialBitsById(userId)
+                .<ResponseEntity<?>>map(bits -> ResponseEntity.ok(TutorialStep.toProgress(bits)))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("error", "User not found")));
     }
 
     /**
      * PATCH /api/user/tutorial-progress
      * Updates tutorial completion state for the authenticated user
      * Body: { "tree": true, "habit": true, "shop": true }
+     * Keys that are absent are left untouched; unknown keys are ignored.
      */
     @PatchMapping
     public ResponseEntity<?> updateTutorialProgress(
             @RequestBody Map<String, Boolean> progress,
-            Authentication authentication) {
-
-        if (authentication == null || !authentication.isAuthenticated()) {
+            @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        Long userId = userId(authHeader);
+        if (userId == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "User not authenticated"));
         }
 
-        String username = authentication.getName();
-        AppUser user = userRepository.findByUsername(username).orElse(null);
-
-        if (user == null) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                    .body(Map.of("error", "User not found"));
+        long set = 0L;
+        long clear = 0L;
+        for (Map.Entry<String, Boolean> e : progress.entrySet()) {
+            TutorialStep step = TutorialStep.fromKey(e.getKey());
+            if (step == null || e.getValue() == null) continue;
+            if (e.getValue()) set |= step.mask();
+            else clear |= step.mask();
         }
 
-        // Update tutorial flags
-        if (progress.containsKey("tree")) {
-            user.setTutorialTree(progress.get("tree"));
-        }
-        if (progress.containsKey("habit")) {
-            user.setTutorialHabit(progress.get("habit"));
-        }
-        if (progress.containsKey("shop")) {
-            user.setTutorialShop(progress.get("shop"));
-        }
-
-        userRepository.save(user);
-
-        System.out.println("✅ Tutorial progress updated for user: " + username);
-        System.out.println("   Tree: " + user.isTutorialTree());
-        System.out.println("   Habit: " + user.isTutorialHabit());
-        System.out.println("   Shop: " + user.isTutorialShop());
-
-        Map<String, Boolean> updatedProgress = new HashMap<>();
-        updatedProgress.put("tree", user.isTutorialTree());
-        updatedProgress.put("habit", user.isTutorialHabit());
-        updatedProgress.put("shop", user.isTutorialShop());
+        return userRepository.updateTutorialBits(userId, set, ~clear)
+                .<ResponseEntity<?>>map(bits -> ResponseEntity.ok(TutorialStep.toProgress(bits)))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("error", "User not found")));
+    }
 
-        return ResponseEntity.ok(updatedProgress);
+    private Long userId(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) return null;
+        String token = authHeader.substring("Bearer ".length()).trim();
+        try {
+            return Long.parseLong(jwtService.getSubject(token));
+        } catch (Exception e) {
+            return null;
+        }
     }
 }
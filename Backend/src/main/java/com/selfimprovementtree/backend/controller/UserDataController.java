@@ -1,11 +1,29 @@
 package com.selfimprovementtree.backend.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.selfimprovementtree.backend.model.UserDataEntity;
+import com.selfimprovementtree.backend.service.EngagementService;
+import com.selfimprovementtree.backend.service.HabitEngine;
+import com.selfimprovementtree.backend.service.HabitHistoryService;
+import com.selfimprovementtree.backend.service.UserDataCodec;
 import com.selfimprovementtree.backend.service.UserDataService;
+import com.selfimprovementtree.backend.service.UserDataStreamService;
 import com.selfimprovementtree.backend.security.JwtService;
 import com.selfimprovementtree.backend.repo.AppUserRepository;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/userdata")
@@ -15,11 +33,21 @@ public class UserDataController {
     private final UserDataService service;
     private final JwtService jwtService;
     private final AppUserRepository userRepo;
+    private final UserDataStreamService streamService;
+    private final HabitEngine habitEngine;
+    private final UserDataCodec codec;
+    private final HabitHistoryService historyService;
+    private final EngagementService engagement;
 
-    public UserDataController(UserDataService service, JwtService jwtService, AppUserRepository userRepo) {
+    public UserDataController(UserDataService service, JwtService jwtService, AppUserRepository userRepo, UserDataStreamService streamService, HabitEngine habitEngine, UserDataCodec codec, HabitHistoryService historyService, EngagementService engagement) {
         this.service = service;
         this.jwtService = jwtService;
         this.userRepo = userRepo;
+        this.streamService = streamService;
+        this.habitEngine = habitEngine;
+        this.codec = codec;
+        this.historyService = historyService;
+        this.engagement = engagement;
     }
 
     @GetMapping("/{id}")
@@ -27,36 +55,243 @@ public class UserDataController {
             @PathVariable String id,
             @RequestHeader(value = "Authorization", required = false) String authHeader
     ) {
-        if (isAccountId(id) && !isAuthorized(id, authHeader)) {
+        boolean account = isAccountId(id);
+        if (account && !isAuthorized(id, authHeader)) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
+        engagement.active(id, account);
         return service.get(id)
-                .map(e -> ResponseEntity.ok(e.getJson()))
+                .map(e -> ResponseEntity.ok().eTag(Long.toString(e.getVersion())).body(e.getJson()))
                 .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
     }
 
+    /**
+     * Stores the document. Plain PUT replaces it; with merge=true it is merged field by field
+     * into the stored copy, X-Base-Version naming the version (ETag, quoted or not) the device started from,
+     * and the merged document is returned.
+     */
     @PutMapping("/{id}")
-    public ResponseEntity<Void> put(
+    public ResponseEntity<String> put(
             @PathVariable String id,
             @RequestBody String json,
+            @RequestParam(value = "merge", defaultValue = "false") boolean merge,
+            @RequestHeader(value = "X-Base-Version", required = false) String baseVersion,
             @RequestHeader(value = "Authorization", required = false) String authHeader
     ) {
-        if (isAccountId(id) && !isAuthorized(id, authHeader)) {
+        boolean account = isAccountId(id);
+        if (account && !isAuthorized(id, authHeader)) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
-        service.upsert(id, json);
-        return ResponseEntity.ok().build();
+        engagement.active(id, account);
+        if (!merge) {
+            UserDataEntity saved = service.upsert(id, json);
+            return ResponseEntity.ok().eTag(Long.toString(saved.getVersion())).build();
+        }
+        Long base;
+        try {
+            base = parseVersion(baseVersion);
+        } catch (NumberFormatException ex) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            UserDataEntity saved = service.merge(id, json, base);
+            return ResponseEntity.ok().eTag(Long.toString(saved.getVersion())).body(saved.getJson());
+        } catch (JsonProcessingException ex) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
-    private boolean isAuthorized(String id, String authHeader) {
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) return false;
-        String token = authHeader.substring("Bearer ".length()).trim();
+    /** Same document as {@link #get} in CBOR or Smile, for clients that ask for one of them in Accept. */
+    @GetMapping(value = "/{id}", produces = {UserDataCodec.CBOR_VALUE, UserDataCodec.SMILE_VALUE})
+    public ResponseEntity<byte[]> getBinary(
+            @PathVariable String id,
+            @RequestHeader(value = "Accept") String accept,
+            @RequestHeader(value = "Authorization", required = false) String authHeader
+    ) {
+        boolean account = isAccountId(id);
+        if (account && !isAuthorized(id, authHeader)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        engagement.active(id, account);
+        MediaType type = binaryType(accept);
+        return service.get(id)
+                .map(e -> ResponseEntity.ok().contentType(type).eTag(Long.toString(e.getVersion()))
+                        .body(codec.encode(id, e.getVersion(), e.getJson(), type)))
+                .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+    }
+
+    /** {@link #put} with a CBOR or Smile body; the document is stored as JSON and a merge result comes back in the request's format. */
+    @PutMapping(value = "/{id}", consumes = {UserDataCodec.CBOR_VALUE, UserDataCodec.SMILE_VALUE})
+    public ResponseEntity<byte[]> putBinary(
+            @PathVariable String id,
+            @RequestBody byte[] body,
+            @RequestHeader(value = "Content-Type") MediaType type,
+            @RequestParam(value = "merge", defaultValue = "false") boolean merge,
+            @RequestHeader(value = "X-Base-Version", required = false) String baseVersion,
+            @RequestHeader(value = "Authorization", required = false) String authHeader
+    ) {
+        boolean account = isAccountId(id);
+        if (account && !isAuthorized(id, authHeader)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        engagement.active(id, account);
+        String json;
         try {
-            String subject = jwtService.getSubject(token);
-            return id.equals(subject);
-        } catch (Exception e) {
-            return false;
+            json = codec.decode(body, type);
+        } catch (IOException ex) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!merge) {
+            UserDataEntity saved = service.upsert(id, json);
+            codec.remember(id, saved.getVersion(), type, body);
+            return ResponseEntity.ok().eTag(Long.toString(saved.getVersion())).build();
+        }
+        Long base;
+        try {
+            base = parseVersion(baseVersion);
+        } catch (NumberFormatException ex) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            UserDataEntity saved = service.merge(id, json, base);
+            return ResponseEntity.ok().contentType(type).eTag(Long.toString(saved.getVersion()))
+                    .body(codec.encode(id, saved.getVersion(), saved.getJson(), type));
+        } catch (JsonProcessingException ex) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Applies a batch of game actions atomically and returns only what changed.
+     * Body: { "today": "2026-01-31", "actions": [ { "type": "checkGood", "habitId": "..." }, ... ] }
+     * A rejected batch answers 409 with the offending action index and nothing is saved.
+     */
+    @PostMapping("/{id}/actions")
+    public ResponseEntity<?> actions(
+            @PathVariable String id,
+            @RequestBody Map<String, Object> body,
+            @RequestHeader(value = "Authorization", required = false) String authHeader
+    ) {
+        boolean account = isAccountId(id);
+        if (account && !isAuthorized(id, authHeader)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        engagement.active(id, account);
+        List<Map<String, String>> actions;
+        try {
+            @SuppressWarnings("unchecked")
+            List<Map<String, String>> parsed = (List<Map<String, String>>) body.get("actions");
+            actions = parsed;
+        } catch (ClassCastException ex) {
+            actions = null;
+        }
+        if (actions == null || actions.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "INVALID_INPUT"));
         }
+        Object today = body.get("today");
+        try {
+            return ResponseEntity.ok(habitEngine.apply(id, today instanceof String t ? t : null, actions));
+        } catch (HabitEngine.ActionRejectedException ex) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", ex.getMessage(), "index", ex.getIndex()));
+        }
+    }
+
+    /**
+     * Current and best streak of every habit with history. today (yyyy-MM-dd, the client's local date,
+     * default UTC today) decides whether a streak is still running.
+     */
+    @GetMapping("/{id}/habits/streaks")
+    public ResponseEntity<?> streaks(
+            @PathVariable String id,
+            @RequestParam(value = "today", required = false) String today,
+            @RequestHeader(value = "Authorization", required = false) String authHeader
+    ) {
+        boolean account = isAccountId(id);
+        if (account && !isAuthorized(id, authHeader)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        engagement.active(id, account);
+        LocalDate day;
+        try {
+            day = today != null ? LocalDate.parse(today) : LocalDate.now(ZoneOffset.UTC);
+        } catch (DateTimeParseException ex) {
+            return ResponseEntity.badRequest().body(Map.of("error", "INVALID_INPUT"));
+        }
+        return ResponseEntity.ok(Map.of("today", day.toString(), "habits", historyService.streaks(id, day)));
+    }
+
+    /**
+     * Heatmap data: check-ins per day of the year, over all habits or only habitId.
+     * {"year": 2026, "from": "2026-01-01", "counts": [0, 2, 1, ...]}, one entry per day.
+     */
+    @GetMapping("/{id}/habits/calendar")
+    public ResponseEntity<?> calendar(
+            @PathVariable String id,
+            @RequestParam(value = "year", required = false) Integer year,
+            @RequestParam(value = "habitId", required = false) String habitId,
+            @RequestHeader(value = "Authorization", required = false) String authHeader
+    ) {
+        boolean account = isAccountId(id);
+        if (account && !isAuthorized(id, authHeader)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        engagement.active(id, account);
+        int y = year != null ? year : LocalDate.now(ZoneOffset.UTC).getYear();
+        if (y < 1970 || y > 9999) {
+            return ResponseEntity.badRequest().body(Map.of("error", "INVALID_INPUT"));
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("year", y);
+        body.put("from", LocalDate.ofYearDay(y, 1).toString());
+        if (habitId != null) body.put("habitId", habitId);
+        body.put("counts", historyService.calendar(id, habitId, y));
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * SSE stream of change notices ({id, version, updatedAt}) for this user data.
+     * With include=data the notice also carries the document when it is small.
+     */
+    @GetMapping(value = "/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream(
+            @PathVariable String id,
+            @RequestParam(value = "include", required = false) String include,
+            @RequestHeader(value = "Authorization", required = false) String authHeader
+    ) {
+        boolean account = isAccountId(id);
+        if (account && !isAuthorized(id, authHeader)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        engagement.active(id, account);
+        SseEmitter emitter = streamService.subscribe(id, "data".equals(include));
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    /** A version as sent back from an ETag: 5, "5" or W/"5". */
+    private static Long parseVersion(String header) {
+        if (header == null || header.isBlank()) return null;
+        String v = header.trim();
+        if (v.startsWith("W/")) v = v.substring(2);
+        if (v.length() >= 2 && v.startsWith("\"") && v.endsWith("\"")) v = v.substring(1, v.length() - 1);
+        return Long.parseLong(v);
+    }
+
+    /** The first binary format in Accept, in the client's order of preference. */
+    private static MediaType binaryType(String accept) {
+        List<MediaType> types = MediaType.parseMediaTypes(accept);
+        MimeTypeUtils.sortBySpecificity(types);
+        for (MediaType t : types) {
+            if (UserDataCodec.SMILE.isCompatibleWith(t) && !t.isWildcardSubtype()) return UserDataCodec.SMILE;
+            if (UserDataCodec.CBOR.isCompatibleWith(t) && !t.isWildcardSubtype()) return UserDataCodec.CBOR;
+        }
+        return UserDataCodec.CBOR;
+    }
+
+    private boolean isAuthorized(String id, String authHeader) {
+        return id.equals(jwtService.subjectOf(authHeader));
     }
 
     private boolean isAccountId(String id) {
@@ -21,15 +21,14 @@ public class AppUser {
     @Column(nullable = false)
     private String passwordHash;
 
-    // Tutorial progress flags
-    @Column(name = "tutorial_tree", nullable = false)
-    private boolean tutorialTree = false;
+    // Tutorial progress, one bit per TutorialStep
+    @Column(name = "tutorial_bits", nullable = false, columnDefinition = "BIGINT DEFAULT 0 NOT NULL")
+    private long tutorialBits = 0L;
 
-    @Column(name = "tutorial_habit", nullable = false)
-    private boolean tutorialHabit = false;
-
-    @Column(name = "tutorial_shop", nullable = false)
-    private boolean tutorialShop = false;
+    // Bumped to revoke every token issued before; only ever changed through AppUserRepository.bumpTokenEpoch
+    @Column(name = "token_epoch", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "INT DEFAULT 0 NOT NULL")
+    private int tokenEpoch = 0;
 
     public AppUser() {}
 
@@ -67,27 +66,15 @@ public class AppUser {
         this.passwordHash = passwordHash;
     }
 
-    public boolean isTutorialTree() {
-        return tutorialTree;
-    }
-
-    public void setTutorialTree(boolean tutorialTree) {
-        this.tutorialTree = tutorialTree;
-    }
-
-    public boolean isTutorialHabit() {
-        return tutorialHabit;
-    }
-
-    public void setTutorialHabit(boolean tutorialHabit) {
-        this.tutorialHabit = tutorialHabit;
+    public long getTutorialBits() {
+        return tutorialBits;
     }
 
-    public boolean isTutorialShop() {
-        return tutorialShop;
+    public void setTutorialBits(long tutorialBits) {
+        this.tutorialBits = tutorialBits;
     }
 
-    public void setTutorialShop(boolean tutorialShop) {
-        this.tutorialShop = tutorialShop;
+    public int getTokenEpoch() {
+        return tokenEpoch;
     }
 }
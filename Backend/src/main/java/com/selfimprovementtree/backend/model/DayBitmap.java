@@ -0,0 +1,208 @@
+package com.selfimprovementtree.backend.model;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * A set of days (epoch day numbers) kept as sorted runs of consecutive days.
+ *
+ * Encoded like a Roaring container, whichever form is smaller: a list of varint (gap, length - 1) pairs, or a
+ * plain bitmap over the span between the first and last day. A habit done every day of a year is one run
+ * (about 6 bytes); one done every other day falls back to the bitmap (about 50 bytes).
+ */
+public final class DayBitmap {
+    private static final int RUNS = 0;
+    private static final int BITS = 1;
+
+    // run i covers start[i] .. start[i] + len[i] - 1; runs are sorted and never touch
+    private int[] start = new int[4];
+    private int[] len = new int[4];
+    private int n;
+
+    public static DayBitmap decode(byte[] bytes) {
+        DayBitmap set = new DayBitmap();
+        if (bytes == null || bytes.length == 0) return set;
+        int[] pos = {1};
+        if (bytes[0] == RUNS) {
+            int end = -2;
+            while (pos[0] < bytes.length) {
+                int s = set.n == 0 ? readVarint(bytes, pos) : end + 2 + readVarint(bytes, pos);
+                int l = readVarint(bytes, pos) + 1;
+                set.append(s, l);
+                end = s + l - 1;
+            }
+        } else {
+            int first = readVarint(bytes, pos);
+            int span = readVarint(bytes, pos);
+            for (int i = 0; i < span; i++) {
+                if ((bytes[pos[0] + (i >>> 3)] & (1 << (i & 7))) != 0) set.add(first + i);
+            }
+        }
+        return set;
+    }
+
+    public byte[] encode() {
+        ByteArrayOutputStream runs = new ByteArrayOutputStream(1 + 4 * n);
+        runs.write(RUNS);
+        for (int i = 0; i < n; i++) {
+            writeVarint(runs, i == 0 ? start[0] : start[i] - (start[i - 1] + len[i - 1]) - 1);
+            writeVarint(runs, len[i] - 1);
+        }
+        if (n < 2) return runs.toByteArray();
+        int first = start[0];
+        int span = lastDay() - first + 1;
+        int bitmapSize = 1 + varintSize(first) + varintSize(span) + (span + 7) / 8;
+        if (bitmapSize >= runs.size()) return runs.toByteArray();
+        ByteArrayOutputStream bits = new ByteArrayOutputStream(bitmapSize);
+        bits.write(BITS);
+        writeVarint(bits, first);
+        writeVarint(bits, span);
+        byte[] map = new byte[(span + 7) / 8];
+        for (int i = 0; i < n; i++) {
+            for (int d = start[i] - first, e = d + len[i]; d < e; d++) map[d >>> 3] |= (byte) (1 << (d & 7));
+        }
+        bits.write(map, 0, map.length);
+        return bits.toByteArray();
+    }
+
+    /** @return false if the day was already in the set */
+    public boolean add(int day) {
+        int i = runAtOrBefore(day);
+        if (i >= 0 && day < start[i] + len[i]) return false;
+        boolean extendsLeft = i >= 0 && day == start[i] + len[i];
+        boolean extendsRight = i + 1 < n && day + 1 == start[i + 1];
+        if (extendsLeft && extendsRight) {
+            len[i] += 1 + len[i + 1];
+            removeRun(i + 1);
+        } else if (extendsLeft) {
+            len[i]++;
+        } else if (extendsRight) {
+            start[i + 1]--;
+            len[i + 1]++;
+        } else {
+            insertRun(i + 1, day, 1);
+        }
+        return true;
+    }
+
+    /** @return false if the day was not in the set */
+    public boolean remove(int day) {
+        int i = runAtOrBefore(day);
+        if (i < 0 || day >= start[i] + len[i]) return false;
+        int end = start[i] + len[i] - 1;
+        if (len[i] == 1) {
+            removeRun(i);
+        } else if (day == start[i]) {
+            start[i]++;
+            len[i]--;
+        } else if (day == end) {
+            len[i]--;
+        } else {
+            len[i] = day - start[i];
+            insertRun(i + 1, day + 1, end - day);
+        }
+        return true;
+    }
+
+    public boolean contains(int day) {
+        int i = runAtOrBefore(day);
+        return i >= 0 && day < start[i] + len[i];
+    }
+
+    public boolean isEmpty() {
+        return n == 0;
+    }
+
+    /** Latest day in the set; only meaningful when not empty. */
+    public int lastDay() {
+        return n == 0 ? Integer.MIN_VALUE : start[n - 1] + len[n - 1] - 1;
+    }
+
+    /** Length of the run ending at {@link #lastDay()}. */
+    public int lastRunLength() {
+        return n == 0 ? 0 : len[n - 1];
+    }
+
+    public int longestRun() {
+        int best = 0;
+        for (int i = 0; i < n; i++) best = Math.max(best, len[i]);
+        return best;
+    }
+
+    public int cardinality() {
+        int total = 0;
+        for (int i = 0; i < n; i++) total += len[i];
+        return total;
+    }
+
+    /** Adds 1 to {@code counts[d - from]} for every day d of the set inside the counts window. */
+    public void countInto(int from, int[] counts) {
+        int to = from + counts.length;
+        for (int i = 0; i < n; i++) {
+            int s = Math.max(start[i], from);
+            int e = Math.min(start[i] + len[i], to);
+            for (int d = s; d < e; d++) counts[d - from]++;
+        }
+    }
+
+    /** Index of the last run starting at or before {@code day}, -1 if none. */
+    private int runAtOrBefore(int day) {
+        if (n > 0 && start[n - 1] <= day) return n - 1; // check-ins almost always land at the end
+        int lo = 0;
+        int hi = n - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (start[mid] <= day) lo = mid + 1;
+            else hi = mid - 1;
+        }
+        return hi;
+    }
+
+    private void append(int s, int l) {
+        insertRun(n, s, l);
+    }
+
+    private void insertRun(int at, int s, int l) {
+        if (n == start.length) {
+            start = Arrays.copyOf(start, n * 2);
+            len = Arrays.copyOf(len, n * 2);
+        }
+        System.arraycopy(start, at, start, at + 1, n - at);
+        System.arraycopy(len, at, len, at + 1, n - at);
+        start[at] = s;
+        len[at] = l;
+        n++;
+    }
+
+    private void removeRun(int at) {
+        System.arraycopy(start, at + 1, start, at, n - at - 1);
+        System.arraycopy(len, at + 1, len, at, n - at - 1);
+        n--;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int v) {
+        while ((v & ~0x7F) != 0) {
+            out.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    private static int readVarint(byte[] b, int[] pos) {
+        int v = 0;
+        for (int shift = 0; ; shift += 7) {
+            int x = b[pos[0]++];
+            v |= (x & 0x7F) << shift;
+            if ((x & 0x80) == 0) return v;
+        }
+    }
+
+    private static int varintSize(int v) {
+        int size = 1;
+        while ((v & ~0x7F) != 0) {
+            v >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
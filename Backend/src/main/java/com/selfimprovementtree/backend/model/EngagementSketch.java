@@ -0,0 +1,72 @@
+package com.selfimprovementtree.backend.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * One day's distinct-id sketch of one engagement metric, as written by {@code HyperLogLog.toBytes}.
+ */
+@Entity
+@Table(name = "engagement_sketch")
+@IdClass(EngagementSketch.Key.class)
+public class EngagementSketch {
+    @Id
+    @Column(length = 16)
+    private String metric;
+
+    @Id
+    @Column(name = "epoch_day") // DAY is reserved in H2; UTC
+    private int day;
+
+    @Column(nullable = false, length = 16384)
+    private byte[] sketch = new byte[0];
+
+    @Column(name = "updated_at", nullable = false)
+    private long updatedAt;
+
+    public EngagementSketch() {}
+
+    public EngagementSketch(String metric, int day) {
+        this.metric = metric;
+        this.day = day;
+    }
+
+    public String getMetric() { return metric; }
+    public int getDay() { return day; }
+
+    public byte[] getSketch() { return sketch; }
+    public void setSketch(byte[] sketch) { this.sketch = sketch; }
+
+    public long getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(long updatedAt) { this.updatedAt = updatedAt; }
+
+    public static class Key implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private String metric;
+        private int day;
+
+        public Key() {}
+
+        public Key(String metric, int day) {
+            this.metric = metric;
+            this.day = day;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && Objects.equals(metric, k.metric) && day == k.day;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(metric, day);
+        }
+    }
+}
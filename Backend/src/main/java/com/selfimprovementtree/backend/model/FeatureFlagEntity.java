@@ -0,0 +1,56 @@
+package com.selfimprovementtree.backend.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Stored definition of one feature flag. Requests never read this table;
+ * they evaluate the {@link FeatureFlags} snapshot built from it.
+ */
+@Entity
+@Table(name = "feature_flag")
+public class FeatureFlagEntity {
+    @Id
+    @Column(name = "flag_key", length = 64)
+    private String key;
+
+    @Column(nullable = false)
+    private boolean enabled;
+
+    // share of users who get the flag while enabled, 0..100
+    @Column(name = "rollout_percent", nullable = false)
+    private int rolloutPercent = 100;
+
+    private String description;
+
+    private OffsetDateTime updatedAt;
+
+    public FeatureFlagEntity() {}
+
+    public FeatureFlagEntity(String key, boolean enabled, int rolloutPercent, String description) {
+        this.key = key;
+        this.enabled = enabled;
+        this.rolloutPercent = rolloutPercent;
+        this.description = description;
+        this.updatedAt = OffsetDateTime.now();
+    }
+
+    public String getKey() { return key; }
+    public void setKey(String key) { this.key = key; }
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public int getRolloutPercent() { return rolloutPercent; }
+    public void setRolloutPercent(int rolloutPercent) { this.rolloutPercent = rolloutPercent; }
+
+    public String getDescription() { return description; }
+    public void setDescription(String description) { this.description = description; }
+
+    public OffsetDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(OffsetDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -0,0 +1,82 @@
+package com.selfimprovementtree.backend.model;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable snapshot of every feature flag, in parallel arrays sorted by key.
+ *
+ * A flag is on for a user when it is enabled and the user's bucket (a hash of flag key and user id,
+ * 0..9999) falls below its rollout share, so a user keeps the same answer for as long as the share
+ * only grows. Evaluation reads the arrays and hashes the id char by char; it allocates nothing.
+ * {@link #version()} hashes the whole definition, so every instance with the same flags agrees on it.
+ */
+public final class FeatureFlags {
+    public static final FeatureFlags EMPTY = new FeatureFlags(List.of());
+    private static final int BUCKETS = 10_000;
+
+    private final String[] keys;
+    private final boolean[] enabled;
+    private final int[] thresholds;
+    private final long[] seeds;
+    private final long version;
+
+    public FeatureFlags(List<FeatureFlagEntity> flags) {
+        FeatureFlagEntity[] sorted = flags.toArray(new FeatureFlagEntity[0]);
+        Arrays.sort(sorted, Comparator.comparing(FeatureFlagEntity::getKey));
+        int n = sorted.length;
+        keys = new String[n];
+        enabled = new boolean[n];
+        thresholds = new int[n];
+        seeds = new long[n];
+        long v = 17;
+        for (int i = 0; i < n; i++) {
+            keys[i] = sorted[i].getKey();
+            enabled[i] = sorted[i].isEnabled();
+            thresholds[i] = Math.max(0, Math.min(100, sorted[i].getRolloutPercent())) * (BUCKETS / 100);
+            seeds[i] = Hash64.fnv1a(Hash64.FNV_OFFSET, keys[i]);
+            v = v * 31 + seeds[i];
+            v = v * 31 + (enabled[i] ? thresholds[i] + 1 : 0);
+        }
+        version = Hash64.mix(v);
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public String key(int index) {
+        return keys[index];
+    }
+
+    /** Index of the flag, or a negative number when there is no such flag. */
+    public int indexOf(String key) {
+        return Arrays.binarySearch(keys, key);
+    }
+
+    public boolean isEnabled(int index, String userId) {
+        if (!enabled[index]) return false;
+        int threshold = thresholds[index];
+        if (threshold >= BUCKETS) return true;
+        if (threshold <= 0) return false;
+        return Long.remainderUnsigned(Hash64.mix(Hash64.fnv1a(seeds[index], userId == null ? "" : userId)), BUCKETS) < threshold;
+    }
+
+    /** Unknown flags are off. */
+    public boolean isEnabled(String key, String userId) {
+        int i = indexOf(key);
+        return i >= 0 && isEnabled(i, userId);
+    }
+
+    /** Flags on for this user as a bit set over the sorted keys (bit i of word i / 64). */
+    public void evaluate(String userId, long[] bits) {
+        for (int i = 0; i < keys.length; i++) {
+            if (isEnabled(i, userId)) bits[i >>> 6] |= 1L << (i & 63);
+        }
+    }
+
+    public long version() {
+        return version;
+    }
+}
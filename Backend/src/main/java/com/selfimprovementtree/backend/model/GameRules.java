@@ -0,0 +1,47 @@
+package com.selfimprovementtree.backend.model;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Map;
+
+/**
+ * Game balance tables, loaded from game-rules.json (see GameRulesConfig).
+ * Arrays are indexed by level (habits) or by tree stage - 1; values mirror the client's screens.
+ */
+public record GameRules(
+        int maxHabitLevel,
+        int[] expGainByLevel,
+        int[] goldGainByLevel,
+        int[] decayGainByLevel,
+        int[] expLossByLevel,
+        int[] goodUpgradeCosts,
+        int[] badUpgradeCosts,
+        int maxDecay,
+        int maxTreeStage,
+        int[] expToNextStage,
+        int[] gemRewardByStage,
+        ObjectNode defaults,
+        Map<String, ShopItem> shop
+) {
+
+    /**
+     * A shop item. Cost is {@code cost + costStep * document[countField]}; when {@code maxPurchases}
+     * is set the count field caps how often it can be bought.
+     */
+    public record ShopItem(
+            int costGems,
+            int costCoins,
+            int costStep,
+            Integer maxPurchases,
+            String countField,
+            int grantCoins,
+            int grantGems,
+            int grantMaxGoodHabits,
+            boolean resetDecay
+    ) {}
+
+    /** Looks up {@code table[level]} with the level clamped to the table, like the client does. */
+    public static int at(int[] table, int level) {
+        return table[Math.max(0, Math.min(level, table.length - 1))];
+    }
+}
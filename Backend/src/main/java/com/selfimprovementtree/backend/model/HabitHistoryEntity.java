@@ -0,0 +1,101 @@
+package com.selfimprovementtree.backend.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Check-in history of one habit of one user data document: the checked days as an encoded {@link DayBitmap},
+ * plus the streak figures derived from it so they can be read without decoding.
+ */
+@Entity
+@Table(name = "habit_history", indexes = @Index(name = "idx_habit_history_user", columnList = "user_id"))
+@IdClass(HabitHistoryEntity.Key.class)
+public class HabitHistoryEntity {
+    @Id
+    @Column(name = "user_id", length = 128)
+    private String userId;
+
+    @Id
+    @Column(name = "habit_id", length = 128)
+    private String habitId;
+
+    // "good" or "bad"
+    @Column(nullable = false, length = 8)
+    private String kind;
+
+    @Column(nullable = false, length = 65535)
+    private byte[] days = new byte[0];
+
+    // epoch day of the latest check-in, and the run of consecutive days ending there
+    @Column(name = "last_day", nullable = false)
+    private int lastDay;
+
+    @Column(name = "current_streak", nullable = false)
+    private int currentStreak;
+
+    @Column(name = "best_streak", nullable = false)
+    private int bestStreak;
+
+    @Column(name = "total_days", nullable = false)
+    private int totalDays;
+
+    public HabitHistoryEntity() {}
+
+    public HabitHistoryEntity(String userId, String habitId, String kind) {
+        this.userId = userId;
+        this.habitId = habitId;
+        this.kind = kind;
+    }
+
+    public String getUserId() { return userId; }
+    public String getHabitId() { return habitId; }
+
+    public String getKind() { return kind; }
+    public void setKind(String kind) { this.kind = kind; }
+
+    public byte[] getDays() { return days; }
+    public void setDays(byte[] days) { this.days = days; }
+
+    public int getLastDay() { return lastDay; }
+    public void setLastDay(int lastDay) { this.lastDay = lastDay; }
+
+    public int getCurrentStreak() { return currentStreak; }
+    public void setCurrentStreak(int currentStreak) { this.currentStreak = currentStreak; }
+
+    public int getBestStreak() { return bestStreak; }
+    public void setBestStreak(int bestStreak) { this.bestStreak = bestStreak; }
+
+    public int getTotalDays() { return totalDays; }
+    public void setTotalDays(int totalDays) { this.totalDays = totalDays; }
+
+    public static class Key implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private String userId;
+        private String habitId;
+
+        public Key() {}
+
+        public Key(String userId, String habitId) {
+            this.userId = userId;
+            this.habitId = habitId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && Objects.equals(userId, k.userId) && Objects.equals(habitId, k.habitId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, habitId);
+        }
+    }
+}
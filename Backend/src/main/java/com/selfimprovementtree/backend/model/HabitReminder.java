@@ -0,0 +1,80 @@
+package com.selfimprovementtree.backend.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+/**
+ * Daily reminder setting of one account, plus a small projection of its user data that decides whether the
+ * reminder is worth sending: the day the check maps belong to, how many good habits there are and how many of
+ * them are unchecked on that day. The projection is kept current on every user data write.
+ */
+@Entity
+@Table(name = "habit_reminder", indexes = @Index(name = "idx_habit_reminder_updated", columnList = "updated_at"))
+public class HabitReminder {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(nullable = false)
+    private boolean enabled = true;
+
+    // local time of day in zone, in minutes after midnight
+    @Column(name = "minute_of_day", nullable = false)
+    private int minuteOfDay;
+
+    @Column(nullable = false, length = 64)
+    private String zone;
+
+    // epoch millis of the last settings change, for incremental loading
+    @Column(name = "updated_at", nullable = false)
+    private long updatedAt;
+
+    // epoch day of the document's lastOpenDate
+    @Column(name = "status_day", nullable = false)
+    private int statusDay;
+
+    @Column(name = "good_habits", nullable = false)
+    private int goodHabits;
+
+    @Column(name = "unchecked_good", nullable = false)
+    private int uncheckedGood;
+
+    // local epoch day of the last reminder sent, so a day gets at most one
+    @Column(name = "last_sent_day", nullable = false)
+    private int lastSentDay;
+
+    public HabitReminder() {}
+
+    public HabitReminder(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getUserId() { return userId; }
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public int getMinuteOfDay() { return minuteOfDay; }
+    public void setMinuteOfDay(int minuteOfDay) { this.minuteOfDay = minuteOfDay; }
+
+    public String getZone() { return zone; }
+    public void setZone(String zone) { this.zone = zone; }
+
+    public long getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(long updatedAt) { this.updatedAt = updatedAt; }
+
+    public int getStatusDay() { return statusDay; }
+    public void setStatusDay(int statusDay) { this.statusDay = statusDay; }
+
+    public int getGoodHabits() { return goodHabits; }
+    public void setGoodHabits(int goodHabits) { this.goodHabits = goodHabits; }
+
+    public int getUncheckedGood() { return uncheckedGood; }
+    public void setUncheckedGood(int uncheckedGood) { this.uncheckedGood = uncheckedGood; }
+
+    public int getLastSentDay() { return lastSentDay; }
+    public void setLastSentDay(int lastSentDay) { this.lastSentDay = lastSentDay; }
+}
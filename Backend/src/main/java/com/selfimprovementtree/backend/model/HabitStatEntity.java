@@ -0,0 +1,33 @@
+package com.selfimprovementtree.backend.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * One aggregate counter (e.g. "treeStage.3") maintained by HabitAnalyticsService.
+ */
+@Entity
+@Table(name = "habit_stat")
+public class HabitStatEntity {
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(name = "stat_value") // VALUE is reserved in H2
+    private long value;
+
+    public HabitStatEntity() {}
+
+    public HabitStatEntity(String name, long value) {
+        this.name = name;
+        this.value = value;
+    }
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public long getValue() { return value; }
+    public void setValue(long value) { this.value = value; }
+}
@@ -0,0 +1,34 @@
+package com.selfimprovementtree.backend.model;
+
+/**
+ * 64-bit FNV-1a over the chars of a string, and the murmur3 fmix64 finalizer that spreads it.
+ * FNV alone leaves the high bits weak for short, similar keys; {@link #mix} makes every bit depend on every char.
+ */
+public final class Hash64 {
+    public static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Hash64() {}
+
+    public static long fnv1a(long seed, String s) {
+        long h = seed;
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    public static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /** {@link #fnv1a} from the standard offset basis, mixed. */
+    public static long hash(String s) {
+        return mix(fnv1a(FNV_OFFSET, s));
+    }
+}
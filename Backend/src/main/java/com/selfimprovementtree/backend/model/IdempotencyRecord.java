@@ -0,0 +1,59 @@
+package com.selfimprovementtree.backend.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * A completed response kept for replay to retries carrying the same Idempotency-Key.
+ * Only written when app.idempotency.persist is on; the in-memory store is consulted first.
+ */
+@Entity
+@Table(name = "idempotency_record")
+public class IdempotencyRecord {
+    // SHA-256 of method, path, caller and key, hex
+    @Id
+    @Column(name = "key_hash", length = 64)
+    private String keyHash;
+
+    @Column(nullable = false, length = 64)
+    private String fingerprint;
+
+    @Column(nullable = false)
+    private int status;
+
+    @Column(name = "content_type", length = 128)
+    private String contentType;
+
+    // ETag and Location, as "name: value" lines
+    @Column(length = 1024)
+    private String headers;
+
+    @Column(length = 1048576)
+    private byte[] body;
+
+    @Column(name = "expires_at", nullable = false)
+    private long expiresAt;
+
+    public IdempotencyRecord() {}
+
+    public IdempotencyRecord(String keyHash, String fingerprint, int status, String contentType, String headers,
+                             byte[] body, long expiresAt) {
+        this.keyHash = keyHash;
+        this.fingerprint = fingerprint;
+        this.status = status;
+        this.contentType = contentType;
+        this.headers = headers;
+        this.body = body;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getKeyHash() { return keyHash; }
+    public String getFingerprint() { return fingerprint; }
+    public int getStatus() { return status; }
+    public String getContentType() { return contentType; }
+    public String getHeaders() { return headers; }
+    public byte[] getBody() { return body; }
+    public long getExpiresAt() { return expiresAt; }
+}
@@ -0,0 +1,47 @@
+package com.selfimprovementtree.backend.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tutorial steps tracked in {@link AppUser#getTutorialBits()}.
+ * Each step owns one bit of the 64-bit mask, so adding a tutorial only needs a new constant here
+ * (never reuse or reorder bits of existing constants, they are persisted).
+ */
+public enum TutorialStep {
+    TREE("tree", 0),
+    HABIT("habit", 1),
+    SHOP("shop", 2);
+
+    private final String key;
+    private final long mask;
+
+    TutorialStep(String key, int bit) {
+        if (bit < 0 || bit > 63) throw new IllegalArgumentException("bit out of range: " + bit);
+        this.key = key;
+        this.mask = 1L << bit;
+    }
+
+    /** JSON key used by the client ("tree", "habit", ...). */
+    public String key() { return key; }
+
+    public long mask() { return mask; }
+
+    public boolean isSet(long bits) { return (bits & mask) != 0; }
+
+    /** The mask as the client sees it: { "tree": true, "habit": false, ... }. */
+    public static Map<String, Boolean> toProgress(long bits) {
+        Map<String, Boolean> progress = new LinkedHashMap<>();
+        for (TutorialStep step : values()) {
+            progress.put(step.key(), step.isSet(bits));
+        }
+        return progress;
+    }
+
+    public static TutorialStep fromKey(String key) {
+        for (TutorialStep s : values()) {
+            if (s.key.equals(key)) return s;
+        }
+        return null;
+    }
+}
@@ -3,11 +3,12 @@ package com.selfimprovementtree.backend.model;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import java.time.OffsetDateTime;
 
 @Entity
-@Table(name = "user_data")
+@Table(name = "user_data", indexes = @Index(name = "idx_user_data_updated_at", columnList = "updatedAt"))
 public class UserDataEntity {
     @Id
     private String id; // userId
@@ -17,6 +18,10 @@ public class UserDataEntity {
 
     private OffsetDateTime updatedAt;
 
+    // bumped on every write, lets clients tell whether their copy is stale
+    @Column(columnDefinition = "BIGINT DEFAULT 0 NOT NULL")
+    private long version;
+
     public UserDataEntity() {}
 
     public UserDataEntity(String id, String json, OffsetDateTime updatedAt) {
@@ -33,4 +38,7 @@ public class UserDataEntity {
 
     public OffsetDateTime getUpdatedAt() { return updatedAt; }
     public void setUpdatedAt(OffsetDateTime updatedAt) { this.updatedAt = updatedAt; }
+
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
 }
@@ -1,11 +1,77 @@
 package com.selfimprovementtree.backend.repo;
 
 import com.selfimprovementtree.backend.model.AppUser;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface AppUserRepository extends JpaRepository<AppUser, Long> {
     Optional<AppUser> findByEmail(String email);
     Optional<AppUser> findByUsername(String username);
+
+    /** Keyset page of login names only (no password hashes), for building in-memory indexes. */
+    List<AccountNames> findTop1000ByIdGreaterThanOrderByIdAsc(Long id);
+
+    /** Users whose tokens have been revoked at least once; everyone else is at epoch 0. */
+    @Query("select u.id as id, u.tokenEpoch as tokenEpoch from AppUser u where u.tokenEpoch <> 0")
+    List<TokenEpoch> findNonZeroTokenEpochs();
+
+    /** Increments the user's token epoch and returns the new value; empty when the user does not exist. */
+    @Transactional
+    @Query(value = "SELECT token_epoch FROM FINAL TABLE ("
+            + "UPDATE app_user SET token_epoch = token_epoch + 1 WHERE id = :id)",
+            nativeQuery = true)
+    Optional<Integer> bumpTokenEpoch(@Param("id") Long id);
+
+    interface TokenEpoch {
+        Long getId();
+        int getTokenEpoch();
+    }
+
+    // Admin search pages. Keyset on the sort column keeps every page an index range scan, however deep;
+    // prefix searches are ranges [prefix, prefix + U+FFFF) over the unique username/email indexes.
+
+    @Query("select u.id as id, u.username as username, u.email as email from AppUser u "
+            + "where u.id > :after order by u.id")
+    List<UserSummary> pageById(@Param("after") long after, Limit limit);
+
+    @Query("select u.id as id, u.username as username, u.email as email from AppUser u "
+            + "where u.username >= :from and u.username < :to and u.username > :after order by u.username")
+    List<UserSummary> pageByUsername(@Param("from") String from, @Param("to") String to,
+                                     @Param("after") String after, Limit limit);
+
+    @Query("select u.id as id, u.username as username, u.email as email from AppUser u "
+            + "where u.email >= :from and u.email < :to and u.email > :after order by u.email")
+    List<UserSummary> pageByEmail(@Param("from") String from, @Param("to") String to,
+                                  @Param("after") String after, Limit limit);
+
+    interface UserSummary {
+        Long getId();
+        String getUsername();
+        String getEmail();
+    }
+
+    interface AccountNames {
+        Long getId();
+        String getUsername();
+        String getEmail();
+    }
+
+    @Query("select u.tutorialBits from AppUser u where u.id = :id")
+    Optional<Long> findTutorialBitsById(@Param("id") Long id);
+
+    /**
+     * Sets the bits in {@code set}, clears every bit not in {@code keep} and returns the new mask,
+     * all in one statement (H2 data change delta table). Empty when the user does not exist.
+     */
+    @Transactional
+    @Query(value = "SELECT tutorial_bits FROM FINAL TABLE ("
+            + "UPDATE app_user SET tutorial_bits = BITAND(BITOR(tutorial_bits, :set), :keep) WHERE id = :id)",
+            nativeQuery = true)
+    Optional<Long> updateTutorialBits(@Param("id") Long id, @Param("set") long set, @Param("keep") long keep);
 }
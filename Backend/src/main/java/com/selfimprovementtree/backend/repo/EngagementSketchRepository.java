@@ -0,0 +1,18 @@
+package com.selfimprovementtree.backend.repo;
+
+import com.selfimprovementtree.backend.model.EngagementSketch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface EngagementSketchRepository extends JpaRepository<EngagementSketch, EngagementSketch.Key> {
+    List<EngagementSketch> findByDayBetween(int from, int to);
+
+    @Modifying
+    @Transactional
+    @Query("delete from EngagementSketch s where s.day < :before")
+    int deleteOlderThan(int before);
+}
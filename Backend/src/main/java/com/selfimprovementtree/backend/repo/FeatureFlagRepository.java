@@ -0,0 +1,7 @@
+package com.selfimprovementtree.backend.repo;
+
+import com.selfimprovementtree.backend.model.FeatureFlagEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface FeatureFlagRepository extends JpaRepository<FeatureFlagEntity, String> {
+}
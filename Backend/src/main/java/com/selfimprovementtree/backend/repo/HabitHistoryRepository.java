@@ -0,0 +1,33 @@
+package com.selfimprovementtree.backend.repo;
+
+import com.selfimprovementtree.backend.model.HabitHistoryEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface HabitHistoryRepository extends JpaRepository<HabitHistoryEntity, HabitHistoryEntity.Key> {
+    List<HabitHistoryEntity> findByUserId(String userId);
+
+    /** Streak figures only; the day bitmaps are not loaded. */
+    @Query("select h.habitId as habitId, h.kind as kind, h.lastDay as lastDay, h.currentStreak as currentStreak, "
+            + "h.bestStreak as bestStreak, h.totalDays as totalDays from HabitHistoryEntity h where h.userId = :userId")
+    List<StreakRow> findStreaksByUserId(String userId);
+
+    @Modifying
+    @Transactional
+    @Query("delete from HabitHistoryEntity h where h.userId in :userIds")
+    int deleteByUserIdIn(Collection<String> userIds);
+
+    interface StreakRow {
+        String getHabitId();
+        String getKind();
+        int getLastDay();
+        int getCurrentStreak();
+        int getBestStreak();
+        int getTotalDays();
+    }
+}
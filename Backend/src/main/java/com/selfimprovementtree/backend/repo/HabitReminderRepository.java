@@ -0,0 +1,46 @@
+package com.selfimprovementtree.backend.repo;
+
+import com.selfimprovementtree.backend.model.HabitReminder;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface HabitReminderRepository extends JpaRepository<HabitReminder, Long> {
+    /** Keyset page of schedules, for loading the timing wheel. */
+    @Query("select new com.selfimprovementtree.backend.repo.HabitReminderRepository$Schedule(r.userId, r.enabled, r.minuteOfDay, r.zone, r.updatedAt) "
+            + "from HabitReminder r where r.userId > :after order by r.userId")
+    List<Schedule> pageSchedules(@Param("after") long after, Limit limit);
+
+    @Query("select new com.selfimprovementtree.backend.repo.HabitReminderRepository$Schedule(r.userId, r.enabled, r.minuteOfDay, r.zone, r.updatedAt) "
+            + "from HabitReminder r where r.updatedAt > :since")
+    List<Schedule> findSchedulesUpdatedSince(@Param("since") long since);
+
+    /** What a due reminder needs, joined with the account's email; never touches user_data. */
+    @Query("select new com.selfimprovementtree.backend.repo.HabitReminderRepository$Due(r.userId, u.email, r.zone, r.statusDay, r.goodHabits, r.uncheckedGood, "
+            + "r.lastSentDay) from HabitReminder r, AppUser u where u.id = r.userId and r.enabled = true and r.userId in :ids")
+    List<Due> findDue(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Transactional
+    @Query("update HabitReminder r set r.statusDay = :day, r.goodHabits = :good, r.uncheckedGood = :unchecked "
+            + "where r.userId = :userId and (r.statusDay <> :day or r.goodHabits <> :good or r.uncheckedGood <> :unchecked)")
+    int updateStatus(@Param("userId") long userId, @Param("day") int day, @Param("good") int good,
+                     @Param("unchecked") int unchecked);
+
+    @Modifying
+    @Transactional
+    @Query("update HabitReminder r set r.lastSentDay = :day where r.userId in :ids")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("day") int day);
+
+    // constructor expressions rather than interface projections: these are read for every reminder
+    record Schedule(long userId, boolean enabled, int minuteOfDay, String zone, long updatedAt) {}
+
+    record Due(long userId, String email, String zone, int statusDay, int goodHabits, int uncheckedGood,
+               int lastSentDay) {}
+}
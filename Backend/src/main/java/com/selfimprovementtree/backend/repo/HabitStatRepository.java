@@ -0,0 +1,7 @@
+package com.selfimprovementtree.backend.repo;
+
+import com.selfimprovementtree.backend.model.HabitStatEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface HabitStatRepository extends JpaRepository<HabitStatEntity, String> {
+}
@@ -0,0 +1,89 @@
+package com.selfimprovementtree.backend.repo;
+
+import com.selfimprovementtree.backend.model.UserDataEntity;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Default, unsharded store: the user_data table of the main datasource.
+ */
+public class JpaUserDataStore implements UserDataStore {
+    private final UserDataRepository repo;
+
+    public JpaUserDataStore(UserDataRepository repo) {
+        this.repo = repo;
+    }
+
+    @Override
+    public Optional<UserDataEntity> findById(String id) {
+        return repo.findById(id);
+    }
+
+    @Override
+    public UserDataEntity save(UserDataEntity entity) {
+        return repo.save(entity);
+    }
+
+    @Override
+    public void deleteAllById(Collection<String> ids) {
+        repo.deleteAllById(ids);
+    }
+
+    @Override
+    public boolean deleteIfVersion(String id, long version) {
+        return repo.deleteByIdAndVersion(id, version) > 0;
+    }
+
+    @Override
+    public Map<String, OffsetDateTime> findUpdatedAt(Collection<String> ids) {
+        Map<String, OffsetDateTime> out = new HashMap<>();
+        if (ids.isEmpty()) return out;
+        repo.findUpdatedAtByIdIn(ids).forEach(r -> out.put(r.getId(), r.getUpdatedAt()));
+        return out;
+    }
+
+    @Override
+    public long count() {
+        return repo.count();
+    }
+
+    @Override
+    public void scan(Consumer<UserDataEntity> consumer) {
+        // keyset pages so memory stays flat regardless of table size
+        String after = "";
+        while (true) {
+            List<UserDataEntity> page = repo.findTop500ByIdGreaterThanOrderByIdAsc(after);
+            if (page.isEmpty()) return;
+            page.forEach(consumer);
+            after = page.get(page.size() - 1).getId();
+        }
+    }
+
+    @Override
+    public void scanUpdatedBefore(OffsetDateTime cutoff, Consumer<UserDataEntity> consumer) {
+        String after = "";
+        while (true) {
+            List<UserDataEntity> page = repo.findTop500ByUpdatedAtBeforeAndIdGreaterThanOrderByIdAsc(cutoff, after);
+            if (page.isEmpty()) return;
+            page.forEach(consumer);
+            after = page.get(page.size() - 1).getId();
+        }
+    }
+
+    @Override
+    public void scanUpdatedSince(OffsetDateTime since, Consumer<UserDataEntity> consumer) {
+        String after = "";
+        while (true) {
+            List<UserDataEntity> page = repo.findTop500ByUpdatedAtGreaterThanEqualAndIdGreaterThanOrderByIdAsc(since, after);
+            if (page.isEmpty()) return;
+            page.forEach(consumer);
+            after = page.get(page.size() - 1).getId();
+        }
+    }
+}
@@ -0,0 +1,500 @@
+package com.selfimprovementtree.backend.repo;
+
+import com.selfimprovementtree.backend.model.UserDataEntity;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Cold storage for user_data rows nobody has touched in a while.
+ *
+ * Rows are appended to deflate-compressed, append-only segment files
+ * ({@code segment-NNNNNN.seg}, rolled at {@code segmentMaxBytes}). Each record is
+ * {@code [int length][id][version][updatedAt millis][raw length][deflated json]}, with a raw length of -1
+ * for a null json. An append-only index log ({@code archive.idx}) of {@code id -> segment/offset/length}
+ * entries is replayed into memory on start, with a negative segment marking a removed id.
+ *
+ * Rehydrated and re-archived rows leave dead records and index entries behind. {@link #compactIfNeeded}
+ * copies the live records into fresh segments, swaps in an index holding one entry per live id, and deletes
+ * the old segments once garbage outweighs live data. A log written before lengths were recorded is compacted
+ * on open.
+ */
+public class UserDataArchive implements Closeable {
+    private static final int SEGMENT_BITS = 24; // up to 16M segments, 1 TiB each
+    private static final int INDEX_MAGIC = 0x55444932; // "UDI2"; older logs start straight with an entry
+    private static final int NULL_JSON = -1;
+
+    private final Path dir;
+    private final long segmentMaxBytes;
+    private final IdTable index = new IdTable();
+    private final Map<Integer, FileChannel> readers = new HashMap<>();
+    private DataOutputStream indexLog;
+    private FileChannel writer;
+    private int segment;
+    // bytes in all segment files and entries in the index log, live or not
+    private long segmentBytes;
+    private long logEntries;
+
+    public UserDataArchive(Path dir, long segmentMaxBytes) throws IOException {
+        this.dir = dir;
+        this.segmentMaxBytes = segmentMaxBytes;
+        Files.createDirectories(dir);
+        boolean legacy = loadIndex();
+        Set<Integer> referenced = new HashSet<>();
+        index.forEach((id, location, length) -> referenced.add(segmentOf(location)));
+        List<Integer> segments = segments();
+        segment = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+        for (int seg : segments) {
+            // left behind by a compaction that swapped the index but crashed before deleting them
+            if (seg != segment && !referenced.contains(seg)) Files.delete(segmentFile(seg));
+            else segmentBytes += Files.size(segmentFile(seg));
+        }
+        openWriter();
+        if (legacy) {
+            compact();
+        } else {
+            openIndexLog();
+        }
+    }
+
+    public synchronized boolean contains(String id) {
+        return index.location(id) >= 0;
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /** Appends the rows, forces them to disk and only then publishes them in the index. */
+    public synchronized void append(List<UserDataEntity> rows) throws IOException {
+        if (rows.isEmpty()) return;
+        long[] positions = new long[rows.size()];
+        int[] segments = new int[rows.size()];
+        int[] lengths = new int[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            ByteBuffer record = encode(rows.get(i));
+            rollIfFull();
+            segments[i] = segment;
+            positions[i] = writer.size();
+            lengths[i] = record.remaining();
+            while (record.hasRemaining()) writer.write(record);
+            segmentBytes += lengths[i];
+        }
+        writer.force(true);
+        for (int i = 0; i < rows.size(); i++) {
+            writeIndexEntry(rows.get(i).getId(), segments[i], positions[i], lengths[i]);
+        }
+        indexLog.flush();
+    }
+
+    public synchronized Optional<UserDataEntity> read(String id) throws IOException {
+        long location = index.location(id);
+        if (location < 0) return Optional.empty();
+        ByteBuffer record = readRecord(location);
+        return Optional.of(decode(Arrays.copyOfRange(record.array(), 4, record.capacity())));
+    }
+
+    public synchronized void remove(String id) throws IOException {
+        if (index.location(id) < 0) return;
+        writeIndexEntry(id, -1, 0, 0);
+        indexLog.flush();
+    }
+
+    /** Compacts when dead records outweigh live ones (and a quarter segment), or the log is mostly stale entries. */
+    public synchronized boolean compactIfNeeded() throws IOException {
+        long garbage = segmentBytes - index.liveBytes();
+        boolean segmentsWorth = garbage > index.liveBytes() && garbage >= segmentMaxBytes / 4;
+        boolean logWorth = logEntries > 2L * index.size() + 1024;
+        if (!segmentsWorth && !logWorth) return false;
+        compact();
+        return true;
+    }
+
+    /**
+     * Copies every live record into new segments and replaces the index log with one entry per live id.
+     * The old files stay valid until the new index is atomically moved into place, so a crash at any point
+     * leaves a readable archive; segments nobody references any more are deleted on the next open.
+     */
+    public synchronized void compact() throws IOException {
+        int firstNew = segment + 1;
+        writer.force(true);
+        writer.close();
+        segment = firstNew;
+        openWriter();
+
+        int n = index.size();
+        String[] ids = new String[n];
+        long[] locations = new long[n];
+        int[] lengths = new int[n];
+        int[] i = {0};
+        index.forEach((id, location, length) -> {
+            ids[i[0]] = id;
+            locations[i[0]++] = location;
+        });
+        long live = 0;
+        for (int k = 0; k < n; k++) {
+            ByteBuffer record = readRecord(locations[k]);
+            rollIfFull();
+            long position = writer.size();
+            lengths[k] = record.remaining();
+            while (record.hasRemaining()) writer.write(record);
+            locations[k] = locationOf(segment, position);
+            live += lengths[k];
+        }
+        writer.force(true);
+
+        Path tmp = dir.resolve("archive.idx.tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch)))) {
+            out.writeInt(INDEX_MAGIC);
+            for (int k = 0; k < n; k++) {
+                writeEntry(out, ids[k], segmentOf(locations[k]), offsetOf(locations[k]), lengths[k]);
+            }
+            out.flush();
+            ch.force(true);
+        }
+        if (indexLog != null) indexLog.close();
+        Files.move(tmp, indexFile(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        for (int k = 0; k < n; k++) index.put(ids[k], locations[k], lengths[k]);
+        openIndexLog();
+
+        for (FileChannel ch : readers.values()) ch.close();
+        readers.clear();
+        for (int seg : segments()) {
+            if (seg < firstNew) Files.delete(segmentFile(seg));
+        }
+        segmentBytes = live;
+        logEntries = n;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        indexLog.close();
+        writer.close();
+        for (FileChannel ch : readers.values()) ch.close();
+    }
+
+    private void writeIndexEntry(String id, int seg, long offset, int length) throws IOException {
+        writeEntry(indexLog, id, seg, offset, length);
+        logEntries++;
+        if (seg < 0) index.remove(id);
+        else index.put(id, locationOf(seg, offset), length);
+    }
+
+    private static void writeEntry(DataOutputStream out, String id, int seg, long offset, int length) throws IOException {
+        out.writeUTF(id);
+        out.writeInt(seg);
+        out.writeLong(offset);
+        out.writeInt(length);
+    }
+
+    /**
+     * Replays the index log and returns whether it is in the old format without record lengths. A crash can
+     * leave a torn last entry; the log is cut back to the end of the last complete one, so entries appended
+     * from now on are not read as the continuation of the torn bytes.
+     */
+    private boolean loadIndex() throws IOException {
+        if (!Files.exists(indexFile())) return false;
+        if (Files.size(indexFile()) < 4) {
+            // not even a header or one whole entry made it to disk
+            Files.delete(indexFile());
+            return false;
+        }
+        boolean legacy;
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(indexFile()))) {
+            legacy = in.readInt() != INDEX_MAGIC;
+        }
+        long complete = legacy ? 0 : 4;
+        try (CountingInputStream counted = new CountingInputStream(new BufferedInputStream(Files.newInputStream(indexFile())));
+             DataInputStream in = new DataInputStream(counted)) {
+            if (!legacy) in.readInt();
+            while (true) {
+                String id = in.readUTF();
+                int seg = in.readInt();
+                long offset = in.readLong();
+                int length = legacy ? 0 : in.readInt();
+                if (seg < 0) index.remove(id);
+                else index.put(id, locationOf(seg, offset), length);
+                logEntries++;
+                complete = counted.count;
+            }
+        } catch (EOFException endOfLog) {
+            // a torn entry's record was never published, so dropping the entry loses nothing acknowledged
+        }
+        try (FileChannel ch = FileChannel.open(indexFile(), StandardOpenOption.WRITE)) {
+            if (ch.size() > complete) ch.truncate(complete);
+        }
+        return legacy;
+    }
+
+    private void openIndexLog() throws IOException {
+        boolean fresh = !Files.exists(indexFile()) || Files.size(indexFile()) == 0;
+        indexLog = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile(),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        if (fresh) {
+            indexLog.writeInt(INDEX_MAGIC);
+            indexLog.flush();
+        }
+    }
+
+    private void openWriter() throws IOException {
+        writer = FileChannel.open(segmentFile(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private void rollIfFull() throws IOException {
+        if (writer.size() < segmentMaxBytes) return;
+        writer.force(true);
+        writer.close();
+        segment++;
+        openWriter();
+    }
+
+    /** The whole record, length prefix included. */
+    private ByteBuffer readRecord(long location) throws IOException {
+        int seg = segmentOf(location);
+        long offset = offsetOf(location);
+        FileChannel ch = readers.get(seg);
+        if (ch == null) {
+            ch = FileChannel.open(segmentFile(seg), StandardOpenOption.READ);
+            readers.put(seg, ch);
+        }
+        ByteBuffer len = ByteBuffer.allocate(4);
+        readFully(ch, len, offset);
+        ByteBuffer record = ByteBuffer.allocate(4 + len.flip().getInt());
+        readFully(ch, record, offset);
+        return record.flip();
+    }
+
+    private List<Integer> segments() throws IOException {
+        try (var files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.startsWith("segment-") && n.endsWith(".seg"))
+                    .map(n -> Integer.parseInt(n.substring(8, n.length() - 4)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path indexFile() {
+        return dir.resolve("archive.idx");
+    }
+
+    private Path segmentFile(int seg) {
+        return dir.resolve(String.format("segment-%06d.seg", seg));
+    }
+
+    private static long locationOf(int seg, long offset) {
+        return ((long) seg << (64 - SEGMENT_BITS)) | offset;
+    }
+
+    private static int segmentOf(long location) {
+        return (int) (location >>> (64 - SEGMENT_BITS));
+    }
+
+    private static long offsetOf(long location) {
+        return location & ((1L << (64 - SEGMENT_BITS)) - 1);
+    }
+
+    private static ByteBuffer encode(UserDataEntity e) throws IOException {
+        byte[] raw = e.getJson() == null ? new byte[0] : e.getJson().getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+        byte[] buf = new byte[4096];
+        while (!deflater.finished()) {
+            compressed.write(buf, 0, deflater.deflate(buf));
+        }
+        deflater.end();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(compressed.size() + 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0); // length placeholder
+        out.writeUTF(e.getId());
+        out.writeLong(e.getVersion());
+        out.writeLong(e.getUpdatedAt() != null ? e.getUpdatedAt().toInstant().toEpochMilli() : 0L);
+        out.writeInt(e.getJson() == null ? NULL_JSON : raw.length);
+        compressed.writeTo(out);
+        ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+        record.putInt(0, record.capacity() - 4);
+        return record;
+    }
+
+    private static UserDataEntity decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        String id = in.readUTF();
+        long version = in.readLong();
+        long updatedAt = in.readLong();
+        int rawLength = in.readInt();
+        String json = null;
+        if (rawLength != NULL_JSON) {
+            byte[] compressed = in.readAllBytes();
+            byte[] raw = new byte[rawLength];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(compressed);
+                int n = 0;
+                while (n < rawLength && !inflater.finished()) {
+                    n += inflater.inflate(raw, n, rawLength - n);
+                }
+            } catch (DataFormatException ex) {
+                throw new IOException("Corrupt archive record for " + id, ex);
+            } finally {
+                inflater.end();
+            }
+            json = new String(raw, StandardCharsets.UTF_8);
+        }
+        UserDataEntity e = new UserDataEntity(id, json,
+                OffsetDateTime.ofInstant(Instant.ofEpochMilli(updatedAt), ZoneOffset.UTC));
+        e.setVersion(version);
+        return e;
+    }
+
+    @FunctionalInterface
+    private interface EntryVisitor {
+        void accept(String id, long location, int length) throws IOException;
+    }
+
+    /**
+     * id -> (location, record length) in open-addressed parallel arrays with linear probing and backward-shift
+     * deletion: per archived id there is the id string and 12 bytes, no map entry or boxed location.
+     */
+    private static final class IdTable {
+        private String[] ids = new String[16];
+        private long[] locations = new long[16];
+        private int[] lengths = new int[16];
+        private int size;
+        private long liveBytes;
+
+        int size() {
+            return size;
+        }
+
+        long liveBytes() {
+            return liveBytes;
+        }
+
+        /** -1 if absent. */
+        long location(String id) {
+            int slot = slot(id);
+            return ids[slot] == null ? -1 : locations[slot];
+        }
+
+        void put(String id, long location, int length) {
+            if ((size + 1) * 4L > ids.length * 3L) grow();
+            int slot = slot(id);
+            if (ids[slot] == null) {
+                ids[slot] = id;
+                size++;
+            } else {
+                liveBytes -= lengths[slot];
+            }
+            locations[slot] = location;
+            lengths[slot] = length;
+            liveBytes += length;
+        }
+
+        void remove(String id) {
+            int hole = slot(id);
+            if (ids[hole] == null) return;
+            liveBytes -= lengths[hole];
+            size--;
+            int mask = ids.length - 1;
+            for (int j = (hole + 1) & mask; ids[j] != null; j = (j + 1) & mask) {
+                int home = home(ids[j], mask);
+                // the entry at j may fill the hole unless its home lies cyclically in (hole, j]
+                boolean stays = hole <= j ? hole < home && home <= j : hole < home || home <= j;
+                if (stays) continue;
+                ids[hole] = ids[j];
+                locations[hole] = locations[j];
+                lengths[hole] = lengths[j];
+                hole = j;
+            }
+            ids[hole] = null;
+        }
+
+        void forEach(EntryVisitor visitor) throws IOException {
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] != null) visitor.accept(ids[i], locations[i], lengths[i]);
+            }
+        }
+
+        private int slot(String id) {
+            int mask = ids.length - 1;
+            int i = home(id, mask);
+            while (ids[i] != null && !ids[i].equals(id)) i = (i + 1) & mask;
+            return i;
+        }
+
+        private static int home(String id, int mask) {
+            int h = id.hashCode();
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        private void grow() {
+            String[] oldIds = ids;
+            long[] oldLocations = locations;
+            int[] oldLengths = lengths;
+            ids = new String[oldIds.length * 2];
+            locations = new long[oldIds.length * 2];
+            lengths = new int[oldIds.length * 2];
+            size = 0;
+            liveBytes = 0;
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldIds[i] != null) put(oldIds[i], oldLocations[i], oldLengths[i]);
+            }
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, position + buf.position());
+            if (n < 0) throw new EOFException("Truncated archive segment");
+        }
+    }
+}
@@ -2,6 +2,32 @@ package com.selfimprovementtree.backend.repo;
 
 import com.selfimprovementtree.backend.model.UserDataEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
 
 public interface UserDataRepository extends JpaRepository<UserDataEntity, String> {
+    List<UserDataEntity> findTop500ByIdGreaterThanOrderByIdAsc(String id);
+
+    List<UserDataEntity> findTop500ByUpdatedAtBeforeAndIdGreaterThanOrderByIdAsc(OffsetDateTime cutoff, String id);
+
+    List<UserDataEntity> findTop500ByUpdatedAtGreaterThanEqualAndIdGreaterThanOrderByIdAsc(OffsetDateTime since, String id);
+
+    @Query("select e.id as id, e.updatedAt as updatedAt from UserDataEntity e where e.id in :ids")
+    List<UpdatedAt> findUpdatedAtByIdIn(@Param("ids") Collection<String> ids);
+
+    interface UpdatedAt {
+        String getId();
+        OffsetDateTime getUpdatedAt();
+    }
+
+    @Modifying
+    @Transactional
+    @Query("delete from UserDataEntity e where e.id = :id and e.version = :version")
+    int deleteByIdAndVersion(@Param("id") String id, @Param("version") long version);
 }
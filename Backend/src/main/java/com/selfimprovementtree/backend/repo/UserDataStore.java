@@ -0,0 +1,43 @@
+package com.selfimprovementtree.backend.repo;
+
+import com.selfimprovementtree.backend.model.UserDataEntity;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Storage for user_data rows. Either the single JPA table ({@link JpaUserDataStore})
+ * or several H2 databases routed by id ({@link com.selfimprovementtree.backend.repo.shard.ShardedUserDataStore}),
+ * picked by {@code app.userdata.shards}.
+ */
+public interface UserDataStore {
+
+    Optional<UserDataEntity> findById(String id);
+
+    UserDataEntity save(UserDataEntity entity);
+
+    void deleteAllById(Collection<String> ids);
+
+    /** Deletes the row only if it is still at {@code version}; false when it changed or is gone. */
+    boolean deleteIfVersion(String id, long version);
+
+    /** updatedAt of each id that has a row, without loading the documents. */
+    Map<String, OffsetDateTime> findUpdatedAt(Collection<String> ids);
+
+    long count();
+
+    /**
+     * Visits every row. Sharded stores fan out over all shards in parallel,
+     * so the consumer may be called concurrently from several threads.
+     */
+    void scan(Consumer<UserDataEntity> consumer);
+
+    /** Visits rows last updated before {@code cutoff}, in pages, same threading rules as {@link #scan}. */
+    void scanUpdatedBefore(OffsetDateTime cutoff, Consumer<UserDataEntity> consumer);
+
+    /** Visits rows updated at or after {@code since}, in pages, same threading rules as {@link #scan}. */
+    void scanUpdatedSince(OffsetDateTime since, Consumer<UserDataEntity> consumer);
+}
@@ -0,0 +1,49 @@
+package com.selfimprovementtree.backend.repo.shard;
+
+import com.selfimprovementtree.backend.model.Hash64;
+
+import java.util.Arrays;
+
+/**
+ * Immutable consistent-hash ring mapping string keys to shard indexes.
+ * Each shard gets {@code virtualNodes} points so adding a shard only moves ~1/n of the keys.
+ * Points are kept in parallel primitive arrays and looked up by binary search.
+ * Keys and points are placed with {@link Hash64#hash}.
+ */
+public final class ConsistentHashRing {
+    private final int shards;
+    private final long[] points;
+    private final int[] owners;
+
+    public ConsistentHashRing(int shards, int virtualNodes) {
+        if (shards < 1) throw new IllegalArgumentException("shards must be >= 1");
+        this.shards = shards;
+        int n = shards * virtualNodes;
+        long[][] pairs = new long[n][];
+        int i = 0;
+        for (int s = 0; s < shards; s++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                pairs[i++] = new long[]{Hash64.hash("shard-" + s + "#" + v), s};
+            }
+        }
+        Arrays.sort(pairs, (a, b) -> Long.compare(a[0], b[0]));
+        this.points = new long[n];
+        this.owners = new int[n];
+        for (int j = 0; j < n; j++) {
+            points[j] = pairs[j][0];
+            owners[j] = (int) pairs[j][1];
+        }
+    }
+
+    public int size() {
+        return shards;
+    }
+
+    public int shardFor(String key) {
+        if (shards == 1) return 0;
+        int idx = Arrays.binarySearch(points, Hash64.hash(key));
+        if (idx < 0) idx = -idx - 1;
+        if (idx == points.length) idx = 0; // wrap around
+        return owners[idx];
+    }
+}
@@ -0,0 +1,317 @@
+package com.selfimprovementtree.backend.repo.shard;
+
+import com.selfimprovementtree.backend.model.UserDataEntity;
+import com.selfimprovementtree.backend.repo.UserDataStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * user_data spread over several H2 databases, routed by consistent hashing of the id.
+ *
+ * Shard 0 is the main datasource (the same table JPA maps), so turning sharding on for an existing
+ * database is just "adding shards": the rebalancer moves the keys whose owner changed. The ring size
+ * that the data currently matches is kept in user_data_shard_meta on shard 0 and only updated once a
+ * rebalance has finished, so an interrupted rebalance simply resumes on the next start.
+ *
+ * While a rebalance runs, reads fall back to the previous owner and writes go to the new owner and
+ * clear the previous copy. Removing shards is not supported.
+ */
+public class ShardedUserDataStore implements UserDataStore, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(ShardedUserDataStore.class);
+
+    private static final String COLUMNS = "id, json, updated_at, version";
+    private static final RowMapper<UserDataEntity> ROW_MAPPER = (rs, n) -> {
+        UserDataEntity e = new UserDataEntity(rs.getString("id"), rs.getString("json"),
+                rs.getObject("updated_at", OffsetDateTime.class));
+        e.setVersion(rs.getLong("version"));
+        return e;
+    };
+
+    private final List<JdbcTemplate> shards;
+    private final List<DataSource> ownedDataSources;
+    private final int virtualNodes;
+    private final int batchSize;
+    private final long pauseMs;
+    private final ExecutorService fanout;
+    private final ConsistentHashRing ring;
+    // non-null while keys are being moved off the previous ring
+    private volatile ConsistentHashRing previous;
+
+    /**
+     * @param dataSources       shard datasources, index 0 being the main database
+     * @param ownedDataSources  datasources created for this store, closed on shutdown
+     */
+    public ShardedUserDataStore(List<DataSource> dataSources, List<DataSource> ownedDataSources,
+                                int virtualNodes, int batchSize, long pauseMs) {
+        this.shards = dataSources.stream().map(JdbcTemplate::new).toList();
+        this.ownedDataSources = ownedDataSources;
+        this.virtualNodes = virtualNodes;
+        this.batchSize = batchSize;
+        this.pauseMs = pauseMs;
+        this.ring = new ConsistentHashRing(shards.size(), virtualNodes);
+        this.fanout = Executors.newFixedThreadPool(shards.size(), r -> {
+            Thread t = new Thread(r, "userdata-shard");
+            t.setDaemon(true);
+            return t;
+        });
+        for (int i = 1; i < shards.size(); i++) {
+            shards.get(i).execute("CREATE TABLE IF NOT EXISTS user_data ("
+                    + "id VARCHAR(255) NOT NULL PRIMARY KEY, json TEXT, "
+                    + "updated_at TIMESTAMP(6) WITH TIME ZONE, version BIGINT DEFAULT 0 NOT NULL)");
+            shards.get(i).execute("CREATE INDEX IF NOT EXISTS idx_user_data_updated_at ON user_data (updated_at)");
+        }
+        shards.get(0).execute("CREATE TABLE IF NOT EXISTS user_data_shard_meta (k VARCHAR(64) PRIMARY KEY, v VARCHAR(255))");
+    }
+
+    public int shardCount() {
+        return shards.size();
+    }
+
+    public boolean isRebalancing() {
+        return previous != null;
+    }
+
+    @Override
+    public Optional<UserDataEntity> findById(String id) {
+        int owner = ring.shardFor(id);
+        Optional<UserDataEntity> row = find(owner, id);
+        ConsistentHashRing prev = previous;
+        if (row.isEmpty() && prev != null) {
+            int old = prev.shardFor(id);
+            if (old != owner) row = find(old, id);
+        }
+        return row;
+    }
+
+    @Override
+    public UserDataEntity save(UserDataEntity e) {
+        int owner = ring.shardFor(e.getId());
+        shards.get(owner).update("MERGE INTO user_data (" + COLUMNS + ") KEY (id) VALUES (?, ?, ?, ?)",
+                e.getId(), e.getJson(), e.getUpdatedAt(), e.getVersion());
+        ConsistentHashRing prev = previous;
+        if (prev != null) {
+            int old = prev.shardFor(e.getId());
+            if (old != owner) shards.get(old).update("DELETE FROM user_data WHERE id = ?", e.getId());
+        }
+        return e;
+    }
+
+    @Override
+    public void deleteAllById(Collection<String> ids) {
+        Map<Integer, List<Object[]>> byShard = new HashMap<>();
+        ConsistentHashRing prev = previous;
+        for (String id : ids) {
+            int owner = ring.shardFor(id);
+            byShard.computeIfAbsent(owner, k -> new ArrayList<>()).add(new Object[]{id});
+            if (prev != null && prev.shardFor(id) != owner) {
+                byShard.computeIfAbsent(prev.shardFor(id), k -> new ArrayList<>()).add(new Object[]{id});
+            }
+        }
+        fanOut(byShard.keySet(), s -> shards.get(s).batchUpdate("DELETE FROM user_data WHERE id = ?", byShard.get(s)));
+    }
+
+    @Override
+    public Map<String, OffsetDateTime> findUpdatedAt(Collection<String> ids) {
+        Map<Integer, List<String>> byShard = new HashMap<>();
+        ConsistentHashRing prev = previous;
+        for (String id : ids) {
+            int owner = ring.shardFor(id);
+            byShard.computeIfAbsent(owner, k -> new ArrayList<>()).add(id);
+            if (prev != null && prev.shardFor(id) != owner) {
+                byShard.computeIfAbsent(prev.shardFor(id), k -> new ArrayList<>()).add(id);
+            }
+        }
+        Map<String, OffsetDateTime> out = new ConcurrentHashMap<>();
+        fanOut(byShard.keySet(), s -> {
+            List<String> shardIds = byShard.get(s);
+            String marks = String.join(",", Collections.nCopies(shardIds.size(), "?"));
+            shards.get(s).query("SELECT id, updated_at FROM user_data WHERE id IN (" + marks + ")", rs -> {
+                OffsetDateTime at = rs.getObject(2, OffsetDateTime.class);
+                // mid-rebalance a row can briefly exist on both owners; the newer copy is the live one
+                if (at != null) out.merge(rs.getString(1), at, (a, b) -> a.isAfter(b) ? a : b);
+            }, shardIds.toArray());
+        });
+        return out;
+    }
+
+    @Override
+    public boolean deleteIfVersion(String id, long version) {
+        int owner = ring.shardFor(id);
+        if (shards.get(owner).update("DELETE FROM user_data WHERE id = ? AND version = ?", id, version) > 0) return true;
+        ConsistentHashRing prev = previous;
+        if (prev == null || prev.shardFor(id) == owner) return false;
+        return shards.get(prev.shardFor(id)).update("DELETE FROM user_data WHERE id = ? AND version = ?", id, version) > 0;
+    }
+
+    @Override
+    public long count() {
+        AtomicLong total = new AtomicLong();
+        fanOut(allShards(), s -> {
+            Long n = shards.get(s).queryForObject("SELECT COUNT(*) FROM user_data", Long.class);
+            total.addAndGet(n == null ? 0 : n);
+        });
+        return total.get();
+    }
+
+    /** Rows being moved by a running rebalance may be visited twice. */
+    @Override
+    public void scan(Consumer<UserDataEntity> consumer) {
+        fanOut(allShards(), s -> scanShard(s, page -> page.forEach(consumer)));
+    }
+
+    @Override
+    public void scanUpdatedBefore(OffsetDateTime cutoff, Consumer<UserDataEntity> consumer) {
+        fanOut(allShards(), s -> {
+            String after = "";
+            while (true) {
+                List<UserDataEntity> page = shards.get(s).query("SELECT " + COLUMNS + " FROM user_data "
+                        + "WHERE updated_at < ? AND id > ? ORDER BY id LIMIT ?", ROW_MAPPER, cutoff, after, batchSize);
+                if (page.isEmpty()) return;
+                page.forEach(consumer);
+                after = page.get(page.size() - 1).getId();
+            }
+        });
+    }
+
+    @Override
+    public void scanUpdatedSince(OffsetDateTime since, Consumer<UserDataEntity> consumer) {
+        fanOut(allShards(), s -> {
+            String after = "";
+            while (true) {
+                List<UserDataEntity> page = shards.get(s).query("SELECT " + COLUMNS + " FROM user_data "
+                        + "WHERE updated_at >= ? AND id > ? ORDER BY id LIMIT ?", ROW_MAPPER, since, after, batchSize);
+                if (page.isEmpty()) return;
+                page.forEach(consumer);
+                after = page.get(page.size() - 1).getId();
+            }
+        });
+    }
+
+    /**
+     * Brings the data in line with the configured shard count, in the background.
+     * Safe to call on every start; does nothing when the data already matches.
+     */
+    public void rebalanceAsync() {
+        int stored = storedRingSize();
+        if (stored == shards.size()) return;
+        if (stored > shards.size()) {
+            throw new IllegalStateException("user_data is spread over " + stored
+                    + " shards, removing shards is not supported");
+        }
+        previous = new ConsistentHashRing(stored, virtualNodes);
+        Thread t = new Thread(() -> rebalance(stored), "userdata-rebalance");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void rebalance(int from) {
+        log.info("Rebalancing user_data from {} to {} shards", from, shards.size());
+        AtomicLong moved = new AtomicLong();
+        try {
+            List<Integer> sources = new ArrayList<>();
+            for (int s = 0; s < from; s++) sources.add(s);
+            fanOut(sources, s -> scanShard(s, page -> {
+                for (UserDataEntity row : page) {
+                    int owner = ring.shardFor(row.getId());
+                    if (owner == s) continue;
+                    copyIfAbsent(owner, row);
+                    shards.get(s).update("DELETE FROM user_data WHERE id = ?", row.getId());
+                    moved.incrementAndGet();
+                }
+                pause();
+            }));
+            shards.get(0).update("MERGE INTO user_data_shard_meta (k, v) KEY (k) VALUES ('ring_size', ?)",
+                    Integer.toString(shards.size()));
+            previous = null;
+            log.info("Rebalance finished, moved {} rows", moved.get());
+        } catch (RuntimeException ex) {
+            log.error("Rebalance stopped after moving {} rows, it will resume on next start", moved.get(), ex);
+        }
+    }
+
+    // a newer copy may already have been written to the new owner; never overwrite it
+    private void copyIfAbsent(int shard, UserDataEntity row) {
+        try {
+            shards.get(shard).update("INSERT INTO user_data (" + COLUMNS + ") SELECT ?, ?, ?, ? "
+                            + "WHERE NOT EXISTS (SELECT 1 FROM user_data WHERE id = ?)",
+                    row.getId(), row.getJson(), row.getUpdatedAt(), row.getVersion(), row.getId());
+        } catch (DuplicateKeyException ignored) {
+            // lost the race against a concurrent save, which is the newer copy anyway
+        }
+    }
+
+    private int storedRingSize() {
+        List<String> v = shards.get(0).queryForList("SELECT v FROM user_data_shard_meta WHERE k = 'ring_size'", String.class);
+        // no marker yet: everything still lives in the main database
+        return v.isEmpty() ? 1 : Integer.parseInt(v.get(0));
+    }
+
+    private Optional<UserDataEntity> find(int shard, String id) {
+        return shards.get(shard).query("SELECT " + COLUMNS + " FROM user_data WHERE id = ?", ROW_MAPPER, id)
+                .stream().findFirst();
+    }
+
+    private void scanShard(int shard, Consumer<List<UserDataEntity>> pageConsumer) {
+        String after = "";
+        while (true) {
+            List<UserDataEntity> page = shards.get(shard).query(
+                    "SELECT " + COLUMNS + " FROM user_data WHERE id > ? ORDER BY id LIMIT ?", ROW_MAPPER, after, batchSize);
+            if (page.isEmpty()) return;
+            pageConsumer.accept(page);
+            after = page.get(page.size() - 1).getId();
+        }
+    }
+
+    private void pause() {
+        if (pauseMs <= 0) return;
+        try {
+            Thread.sleep(pauseMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<Integer> allShards() {
+        List<Integer> all = new ArrayList<>(shards.size());
+        for (int s = 0; s < shards.size(); s++) all.add(s);
+        return all;
+    }
+
+    private void fanOut(Collection<Integer> shardIndexes, Consumer<Integer> task) {
+        List<Future<?>> futures = new ArrayList<>(shardIndexes.size());
+        for (Integer s : shardIndexes) {
+            futures.add(fanout.submit(() -> task.accept(s)));
+        }
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for shards", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException re) throw re;
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        fanout.shutdownNow();
+        for (DataSource ds : ownedDataSources) {
+            if (ds instanceof Closeable c) c.close();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.selfimprovementtree.backend.security;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrency limit that follows measured latency (gradient algorithm):
+ * while recent latency stays near the long-run baseline the limit grows by about sqrt(limit),
+ * once it climbs past {@code tolerance} times the baseline the limit shrinks proportionally.
+ * Server errors count as drops and cut the limit multiplicatively (AIMD backoff).
+ */
+public final class AdaptiveConcurrencyLimit {
+    private static final double LONG_WINDOW = 600;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private volatile double limit;
+
+    // guarded by this
+    private double shortRtt;
+    private double longRtt;
+
+    public AdaptiveConcurrencyLimit(String name, int initialLimit, int minLimit, int maxLimit, double tolerance, double smoothing) {
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Takes a slot if fewer than {@code share} of the current limit are in use.
+     * Returns the in-flight count including this request, or -1 when rejected.
+     */
+    public int tryAcquire(double share) {
+        int cap = Math.max(1, (int) (limit * share));
+        while (true) {
+            int n = inflight.get();
+            if (n >= cap) {
+                rejected.increment();
+                return -1;
+            }
+            if (inflight.compareAndSet(n, n + 1)) return n + 1;
+        }
+    }
+
+    /** True when even full-priority traffic would be turned away right now. */
+    public boolean isSaturated() {
+        return inflight.get() >= (int) limit;
+    }
+
+    public void release(long rttNanos, int inflightAtStart, boolean dropped) {
+        inflight.decrementAndGet();
+        update(rttNanos, inflightAtStart, dropped);
+    }
+
+    private synchronized void update(long rttNanos, int inflightAtStart, boolean dropped) {
+        double current = limit;
+        if (dropped) {
+            limit = Math.max(minLimit, current * 0.9);
+            return;
+        }
+        double rtt = rttNanos;
+        shortRtt = shortRtt == 0 ? rtt : shortRtt * 0.9 + rtt * 0.1;
+        longRtt = longRtt == 0 ? rtt : longRtt + (rtt - longRtt) / LONG_WINDOW;
+        // after a long overload the baseline has drifted up; let it come back down quickly
+        if (longRtt > 2 * shortRtt) longRtt *= 0.95;
+        // only grow when the limit is actually what constrains us
+        if (inflightAtStart < current / 2) return;
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+        double target = current * gradient + Math.sqrt(current);
+        limit = Math.max(minLimit, Math.min(maxLimit, current * (1 - smoothing) + target * smoothing));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("limit", (int) limit);
+        m.put("inflight", inflight.get());
+        m.put("rejected", rejected.sum());
+        m.put("shortRttMs", Math.round(shortRtt / 10_000) / 100.0);
+        m.put("longRttMs", Math.round(longRtt / 10_000) / 100.0);
+        return m;
+    }
+}
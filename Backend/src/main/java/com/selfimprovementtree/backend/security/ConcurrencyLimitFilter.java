@@ -0,0 +1,90 @@
+package com.selfimprovementtree.backend.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sheds load on /api/userdata (and /api/bootstrap, which fronts it) before it queues behind Tomcat threads and DB connections.
+ * Reads and writes have separate {@link AdaptiveConcurrencyLimit}s. Guests may only fill
+ * {@code app.limit.guest-share} of a limit, so signed-in accounts keep headroom under pressure:
+ * a guest over its share gets 429, anyone over the full limit gets 503. Streams are not limited.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+    private static final String PREFIX = "/api/userdata/";
+    private static final String BOOTSTRAP = "/api/bootstrap";
+
+    private final JwtService jwtService;
+    private final AdaptiveConcurrencyLimit reads;
+    private final AdaptiveConcurrencyLimit writes;
+
+    @Value("${app.limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.limit.guest-share:0.75}")
+    private double guestShare;
+
+    public ConcurrencyLimitFilter(JwtService jwtService,
+                                  @Value("${app.limit.read.initial:40}") int readInitial,
+                                  @Value("${app.limit.read.max:200}") int readMax,
+                                  @Value("${app.limit.write.initial:20}") int writeInitial,
+                                  @Value("${app.limit.write.max:100}") int writeMax,
+                                  @Value("${app.limit.min:4}") int min,
+                                  @Value("${app.limit.tolerance:1.5}") double tolerance,
+                                  @Value("${app.limit.smoothing:0.2}") double smoothing) {
+        this.jwtService = jwtService;
+        this.reads = new AdaptiveConcurrencyLimit("read", readInitial, min, readMax, tolerance, smoothing);
+        this.writes = new AdaptiveConcurrencyLimit("write", writeInitial, min, writeMax, tolerance, smoothing);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return !enabled || !(path.startsWith(PREFIX) || path.equals(BOOTSTRAP)) || path.endsWith("/stream")
+                || HttpMethod.OPTIONS.matches(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        AdaptiveConcurrencyLimit limit = HttpMethod.GET.matches(request.getMethod()) ? reads : writes;
+        // verified once here; the controller reuses the answer from the request
+        boolean account = jwtService.subjectOf(request) != null;
+        int inflight = limit.tryAcquire(account ? 1.0 : guestShare);
+        if (inflight < 0) {
+            response.setStatus(account || limit.isSaturated() ? 503 : 429);
+            response.setHeader("Retry-After", "1");
+            response.setContentType("application/json");
+            response.getWriter().write("{\"error\":\"OVERLOADED\"}");
+            return;
+        }
+        long start = System.nanoTime();
+        boolean dropped = true;
+        try {
+            chain.doFilter(request, response);
+            dropped = response.getStatus() >= 500;
+        } finally {
+            limit.release(System.nanoTime() - start, inflight, dropped);
+        }
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put(reads.getName(), reads.snapshot());
+        m.put(writes.getName(), writes.snapshot());
+        return m;
+    }
+}
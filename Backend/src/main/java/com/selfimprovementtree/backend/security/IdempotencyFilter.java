@@ -0,0 +1,244 @@
+package com.selfimprovementtree.backend.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Makes retried writes safe: a POST/PUT/PATCH/DELETE under /api/ that carries an {@code Idempotency-Key} header runs
+ * once per key, and retries get the first response again (marked {@code Idempotent-Replayed: true}).
+ *
+ * Keys are scoped to method, path and the Authorization header. A duplicate that arrives while the first request is
+ * still running waits for its response, up to {@code app.idempotency.wait-ms}, then gets 409. The same key with a
+ * different body or query is refused with 422. 5xx and 429 responses are not kept, so those can be retried.
+ * Bodies over {@code max-request-bytes}, chunked ones included, pass through unguarded rather than being buffered.
+ * Runs ahead of {@link ConcurrencyLimitFilter}, so replays and waiting duplicates do not take a slot there.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 5)
+public class IdempotencyFilter extends OncePerRequestFilter {
+    public static final String HEADER = "Idempotency-Key";
+    private static final Set<String> METHODS = Set.of("POST", "PUT", "PATCH", "DELETE");
+    private static final List<String> KEPT_HEADERS = List.of("ETag", "Location");
+
+    private final IdempotencyStore store;
+
+    @Value("${app.idempotency.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.idempotency.wait-ms:10000}")
+    private long waitMs;
+
+    @Value("${app.idempotency.max-request-bytes:1048576}")
+    private int maxRequestBytes;
+
+    @Value("${app.idempotency.max-response-bytes:262144}")
+    private int maxResponseBytes;
+
+    public IdempotencyFilter(IdempotencyStore store) {
+        this.store = store;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return !enabled || request.getHeader(HEADER) == null || !METHODS.contains(request.getMethod())
+                || !path.startsWith("/api/") || path.equals("/api/stripe/webhook")
+                || request.getContentLengthLong() > maxRequestBytes;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String key = request.getHeader(HEADER);
+        if (key.isBlank() || key.length() > 255) {
+            reject(response, 400, "INVALID_IDEMPOTENCY_KEY");
+            return;
+        }
+        // a chunked body reports no length up front; never buffer more than the limit
+        InputStream in = request.getInputStream();
+        byte[] body = in.readNBytes(maxRequestBytes + 1);
+        if (body.length > maxRequestBytes) {
+            chain.doFilter(new CachedBodyRequest(request, body, in), response);
+            return;
+        }
+        String keyHash = sha256(new byte[0], request.getMethod(), request.getRequestURI(), request.getHeader("Authorization"), key);
+        String fingerprint = sha256(body, request.getQueryString());
+
+        while (true) {
+            IdempotencyStore.Claim claim = store.claim(keyHash, fingerprint);
+            if (claim.owner()) {
+                run(new CachedBodyRequest(request, body, null), response, chain, keyHash, claim.entry());
+                return;
+            }
+            if (!claim.entry().fingerprint.equals(fingerprint)) {
+                reject(response, 422, "IDEMPOTENCY_KEY_REUSED");
+                return;
+            }
+            IdempotencyStore.Stored stored;
+            try {
+                stored = claim.entry().result.get(waitMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ex) {
+                response.setHeader("Retry-After", "1");
+                reject(response, 409, "REQUEST_IN_PROGRESS");
+                return;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new ServletException(ex);
+            } catch (ExecutionException ex) {
+                throw new ServletException(ex.getCause());
+            }
+            if (stored != null) {
+                replay(response, stored);
+                return;
+            }
+            // the first attempt was not replayable; compete to run it again
+        }
+    }
+
+    private void run(HttpServletRequest request, HttpServletResponse response, FilterChain chain,
+                     String keyHash, IdempotencyStore.Entry entry) throws ServletException, IOException {
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        IdempotencyStore.Stored stored = null;
+        try {
+            chain.doFilter(request, wrapper);
+            int status = wrapper.getStatus();
+            if (status < 500 && status != 429 && wrapper.getContentSize() <= maxResponseBytes) {
+                Map<String, String> headers = new LinkedHashMap<>();
+                for (String name : KEPT_HEADERS) {
+                    String value = wrapper.getHeader(name);
+                    if (value != null) headers.put(name, value);
+                }
+                stored = new IdempotencyStore.Stored(status, wrapper.getContentType(), headers,
+                        wrapper.getContentAsByteArray());
+            }
+        } finally {
+            store.complete(keyHash, entry, stored);
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    private static void replay(HttpServletResponse response, IdempotencyStore.Stored stored) throws IOException {
+        response.setStatus(stored.status());
+        if (stored.contentType() != null) response.setContentType(stored.contentType());
+        stored.headers().forEach(response::setHeader);
+        response.setHeader("Idempotent-Replayed", "true");
+        response.setContentLength(stored.body().length);
+        response.getOutputStream().write(stored.body());
+    }
+
+    private static void reject(HttpServletResponse response, int status, String error) throws IOException {
+        response.setStatus(status);
+        response.setContentType("application/json");
+        response.getWriter().write("{\"error\":\"" + error + "\"}");
+    }
+
+    private static String sha256(byte[] tail, String... parts) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                // length-prefixed so ("ab", "c") and ("a", "bc") differ
+                byte[] p = part == null ? new byte[0] : part.getBytes(StandardCharsets.UTF_8);
+                md.update((p.length + ":").getBytes(StandardCharsets.US_ASCII));
+                md.update(p);
+            }
+            md.update(tail);
+            return HexFormat.of().formatHex(md.digest());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Replays a body that was read up front to fingerprint it. For a body over the limit, {@code rest} is the
+     * part still unread, served after the bytes already taken.
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final ServletInputStream stream;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body, InputStream rest) {
+            super(request);
+            InputStream in = rest == null ? new ByteArrayInputStream(body)
+                    : new SequenceInputStream(new ByteArrayInputStream(body), rest);
+            this.stream = new ServletInputStream() {
+                private boolean finished;
+
+                @Override
+                public int read() throws IOException {
+                    int b = in.read();
+                    if (b < 0) finished = true;
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int n = in.read(b, off, len);
+                    if (n < 0) finished = true;
+                    return n;
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return finished;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // the bytes are at hand (or a blocking read away), so the listener can read right now
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    try {
+                        listener.onDataAvailable();
+                        listener.onAllDataRead();
+                    } catch (IOException ex) {
+                        listener.onError(ex);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            return stream;
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(stream,
+                    encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8));
+        }
+    }
+}
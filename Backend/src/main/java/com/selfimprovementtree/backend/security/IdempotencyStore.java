@@ -0,0 +1,199 @@
+package com.selfimprovementtree.backend.security;
+
+import com.selfimprovementtree.backend.model.IdempotencyRecord;
+import com.selfimprovementtree.backend.repo.IdempotencyRecordRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Idempotency keys seen recently, each with its response once the first request has completed.
+ *
+ * Entries share one TTL, so insertion order is expiry order: the map is trimmed from the head, for age, for
+ * {@code app.idempotency.max-entries} and for {@code app.idempotency.max-bytes} of retained responses. Keys whose
+ * first request is still running are skipped, not evicted, and do not hold up the entries behind them.
+ * With {@code app.idempotency.persist} completed responses are also written to idempotency_record and looked up
+ * there on a miss, so a restart or a second instance still replays them.
+ */
+@Component
+@Lazy(false) // expired rows are purged on a schedule
+public class IdempotencyStore {
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyStore.class);
+    // key, fingerprint, map node and future, roughly
+    private static final int ENTRY_OVERHEAD = 512;
+
+    /** A response as it went to the first caller. */
+    public record Stored(int status, String contentType, Map<String, String> headers, byte[] body) {}
+
+    /** One key: the request fingerprint it was first used with and the response, pending while in flight. */
+    public static final class Entry {
+        final String fingerprint;
+        final long expiresAt;
+        final CompletableFuture<Stored> result = new CompletableFuture<>();
+        // counted against max-bytes while the entry is in the map
+        int weight = ENTRY_OVERHEAD;
+
+        Entry(String fingerprint, long expiresAt) {
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /** {@code owner} is true for the caller that must run the request and then call {@link #complete}. */
+    public record Claim(Entry entry, boolean owner) {}
+
+    private final IdempotencyRecordRepository repo;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final int maxEntries;
+    private final long maxBytes;
+    private final long ttlMs;
+    private final boolean persist;
+    private long retainedBytes;
+
+    public IdempotencyStore(IdempotencyRecordRepository repo,
+                            @Value("${app.idempotency.max-entries:10000}") int maxEntries,
+                            @Value("${app.idempotency.max-bytes:67108864}") long maxBytes,
+                            @Value("${app.idempotency.ttl-ms:86400000}") long ttlMs,
+                            @Value("${app.idempotency.persist:false}") boolean persist) {
+        this.repo = repo;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.ttlMs = ttlMs;
+        this.persist = persist;
+    }
+
+    public Claim claim(String keyHash, String fingerprint) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            trim(now);
+            Entry e = entries.get(keyHash);
+            if (e != null && e.expiresAt > now) return new Claim(e, false);
+        }
+        Entry loaded = persist ? load(keyHash, now).orElse(null) : null;
+        synchronized (this) {
+            Entry e = entries.get(keyHash);
+            if (e != null && e.expiresAt > now) return new Claim(e, false);
+            remove(keyHash); // re-inserted at the tail, where its expiry belongs
+            if (loaded != null) {
+                loaded.weight += weightOf(loaded.result.join());
+                add(keyHash, loaded);
+                trim(now);
+                return new Claim(loaded, false);
+            }
+            e = new Entry(fingerprint, now + ttlMs);
+            add(keyHash, e);
+            return new Claim(e, true);
+        }
+    }
+
+    /**
+     * Publishes the owner's response to waiting and later duplicates. A null response (not replayable,
+     * e.g. a 5xx) forgets the key instead, and waiters run the request themselves.
+     */
+    public void complete(String keyHash, Entry entry, Stored response) {
+        if (response == null) {
+            synchronized (this) {
+                if (entries.get(keyHash) == entry) remove(keyHash);
+            }
+            entry.result.complete(null);
+            return;
+        }
+        entry.result.complete(response);
+        synchronized (this) {
+            if (entries.get(keyHash) == entry) {
+                int body = weightOf(response);
+                entry.weight += body;
+                retainedBytes += body;
+                trim(System.currentTimeMillis());
+            }
+        }
+        if (!persist) return;
+        try {
+            repo.save(new IdempotencyRecord(keyHash, entry.fingerprint, response.status(), response.contentType(),
+                    formatHeaders(response.headers()), response.body(), entry.expiresAt));
+        } catch (RuntimeException ex) {
+            log.warn("Could not persist idempotency record", ex);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long retainedBytes() {
+        return retainedBytes;
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotency.purge-ms:600000}")
+    public void purge() {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            trim(now);
+        }
+        if (persist) repo.deleteExpired(now);
+    }
+
+    private void trim(long now) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry e = it.next();
+            // a key whose first request is still running stays, or its duplicates would run again
+            if (!e.result.isDone()) continue;
+            if (e.expiresAt > now && entries.size() <= maxEntries && retainedBytes <= maxBytes) break;
+            it.remove();
+            retainedBytes -= e.weight;
+        }
+    }
+
+    private void add(String keyHash, Entry e) {
+        entries.put(keyHash, e);
+        retainedBytes += e.weight;
+    }
+
+    private void remove(String keyHash) {
+        Entry e = entries.remove(keyHash);
+        if (e != null) retainedBytes -= e.weight;
+    }
+
+    private static int weightOf(Stored response) {
+        if (response == null) return 0;
+        int weight = response.body() != null ? response.body().length : 0;
+        for (Map.Entry<String, String> h : response.headers().entrySet()) {
+            weight += h.getKey().length() + h.getValue().length();
+        }
+        return weight;
+    }
+
+    private Optional<Entry> load(String keyHash, long now) {
+        return repo.findById(keyHash).filter(r -> r.getExpiresAt() > now).map(r -> {
+            Entry e = new Entry(r.getFingerprint(), r.getExpiresAt());
+            e.result.complete(new Stored(r.getStatus(), r.getContentType(), parseHeaders(r.getHeaders()), r.getBody()));
+            return e;
+        });
+    }
+
+    private static String formatHeaders(Map<String, String> headers) {
+        StringBuilder sb = new StringBuilder();
+        headers.forEach((name, value) -> sb.append(name).append(": ").append(value).append('\n'));
+        return sb.toString();
+    }
+
+    private static Map<String, String> parseHeaders(String text) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (text == null) return headers;
+        for (String line : text.split("\n")) {
+            int colon = line.indexOf(": ");
+            if (colon > 0) headers.put(line.substring(0, colon), line.substring(colon + 2));
+        }
+        return headers;
+    }
+}
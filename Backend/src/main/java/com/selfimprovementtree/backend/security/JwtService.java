@@ -1,10 +1,16 @@
 package com.selfimprovementtree.backend.security;
 
+import com.selfimprovementtree.backend.service.FlightEvents;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 import javax.crypto.SecretKey;
 import java.time.Instant;
@@ -13,15 +19,20 @@ import java.util.Map;
 
 @Service
 public class JwtService {
+    private static final String VERIFIED = JwtService.class.getName() + ".verified";
+
     private final SecretKey key;
     private final long ttlSeconds;
+    private final TokenEpochs epochs;
 
     public JwtService(
             @Value("${app.jwt.secret:change-me-super-secret-change-me-change-me}") String secret,
-            @Value("${app.jwt.ttlSeconds:2592000}") long ttlSeconds
+            @Value("${app.jwt.ttlSeconds:2592000}") long ttlSeconds,
+            TokenEpochs epochs
     ) {
         this.key = Keys.hmacShaKeyFor(secret.getBytes());
         this.ttlSeconds = ttlSeconds;
+        this.epochs = epochs;
     }
 
     public String generateToken(String subject, Map<String, Object> claims) {
@@ -29,18 +40,82 @@ public class JwtService {
         return Jwts.builder()
                 .setSubject(subject)
                 .addClaims(claims)
+                .claim("ep", epochOf(subject))
                 .setIssuedAt(Date.from(now))
                 .setExpiration(Date.from(now.plusSeconds(ttlSeconds)))
                 .signWith(key, SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    /** Throws if the token is invalid, expired, or older than the user's current token epoch. */
     public String getSubject(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+        FlightEvents.JwtVerify event = new FlightEvents.JwtVerify();
+        event.payloadBytes = token != null ? token.length() : 0;
+        event.begin();
+        try {
+            Claims body = Jwts.parserBuilder()
+                    .setSigningKey(key)
+                    .build()
+                    .parseClaimsJws(token)
+                    .getBody();
+            String subject = body.getSubject();
+            Integer ep = body.get("ep", Integer.class);
+            // tokens issued before epochs existed carry no claim and count as epoch 0
+            if ((ep == null ? 0 : ep) < epochOf(subject)) {
+                event.outcome = "revoked";
+                throw new JwtException("TOKEN_REVOKED");
+            }
+            return subject;
+        } catch (RuntimeException ex) {
+            if ("ok".equals(event.outcome)) event.fail(ex);
+            throw ex;
+        } finally {
+            event.commit();
+        }
+    }
+
+    /**
+     * Subject of a "Bearer ..." header, or null when there is none or it does not verify. The answer is kept on
+     * the current request, so a filter and the controller behind it check the signature once between them.
+     */
+    public String subjectOf(HttpServletRequest request) {
+        String authHeader = request.getHeader("Authorization");
+        if (request.getAttribute(VERIFIED) instanceof Verified v && v.header().equals(authHeader)) return v.subject();
+        String subject = verify(authHeader);
+        if (authHeader != null) request.setAttribute(VERIFIED, new Verified(authHeader, subject));
+        return subject;
+    }
+
+    /** {@link #subjectOf(HttpServletRequest)} for code that only has the header; reuses the request's answer. */
+    public String subjectOf(String authHeader) {
+        RequestAttributes attrs = RequestContextHolder.getRequestAttributes();
+        if (attrs != null && attrs.getAttribute(VERIFIED, RequestAttributes.SCOPE_REQUEST) instanceof Verified v
+                && v.header().equals(authHeader)) {
+            return v.subject();
+        }
+        String subject = verify(authHeader);
+        if (attrs != null && authHeader != null) {
+            attrs.setAttribute(VERIFIED, new Verified(authHeader, subject), RequestAttributes.SCOPE_REQUEST);
+        }
+        return subject;
+    }
+
+    private record Verified(String header, String subject) {}
+
+    private String verify(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) return null;
+        try {
+            return getSubject(authHeader.substring("Bearer ".length()).trim());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private int epochOf(String subject) {
+        try {
+            return epochs.get(Long.parseLong(subject));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
     }
 }
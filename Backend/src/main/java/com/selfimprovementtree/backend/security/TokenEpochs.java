@@ -0,0 +1,113 @@
+package com.selfimprovementtree.backend.security;
+
+import com.selfimprovementtree.backend.repo.AppUserRepository;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * userId -> token epoch, held in memory so token checks need no query.
+ * Only users with a non-zero epoch are stored (open addressing over primitive arrays); a missing id means 0.
+ * Loaded on creation and re-read every {@code app.jwt.epoch-refresh-ms} so bumps made by other instances land too.
+ */
+@Component
+@Lazy(false) // periodic reload is @Scheduled
+public class TokenEpochs {
+    private static final long EMPTY = 0L; // user ids start at 1
+
+    private final AppUserRepository userRepo;
+    private final StampedLock lock = new StampedLock();
+
+    // guarded by lock
+    private long[] keys = new long[16];
+    private int[] values = new int[16];
+    private int size;
+
+    public TokenEpochs(AppUserRepository userRepo) {
+        this.userRepo = userRepo;
+        reload();
+    }
+
+    @Scheduled(initialDelayString = "${app.jwt.epoch-refresh-ms:60000}", fixedDelayString = "${app.jwt.epoch-refresh-ms:60000}")
+    public void reload() {
+        for (AppUserRepository.TokenEpoch e : userRepo.findNonZeroTokenEpochs()) {
+            raise(e.getId(), e.getTokenEpoch());
+        }
+    }
+
+    public int get(long userId) {
+        long stamp = lock.tryOptimisticRead();
+        int v = find(keys, values, userId);
+        if (lock.validate(stamp)) return v;
+        stamp = lock.readLock();
+        try {
+            return find(keys, values, userId);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Revokes every token the user holds; returns the new epoch. */
+    public int bump(long userId) {
+        int epoch = userRepo.bumpTokenEpoch(userId).orElseThrow(() -> new RuntimeException("NOT_FOUND"));
+        raise(userId, epoch);
+        return epoch;
+    }
+
+    /** Epochs only move forward, so a stale reload can never undo a bump. */
+    private void raise(long userId, int epoch) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = slot(keys, userId);
+            if (keys[slot] == userId) {
+                if (epoch > values[slot]) values[slot] = epoch;
+                return;
+            }
+            keys[slot] = userId;
+            values[slot] = epoch;
+            if (++size * 2 > keys.length) grow();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    // optimistic readers may see a torn table; bounded probing keeps that from looping forever
+    private static int find(long[] keys, int[] values, long userId) {
+        int mask = keys.length - 1;
+        int i = mix(userId) & mask;
+        for (int n = 0; n < keys.length; n++, i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == userId) return values.length > i ? values[i] : 0;
+            if (k == EMPTY) return 0;
+        }
+        return 0;
+    }
+
+    private static int slot(long[] keys, long userId) {
+        int mask = keys.length - 1;
+        int i = mix(userId) & mask;
+        while (keys[i] != EMPTY && keys[i] != userId) i = (i + 1) & mask;
+        return i;
+    }
+
+    private static int mix(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,135 @@
+package com.selfimprovementtree.backend.service;
+
+import com.selfimprovementtree.backend.repo.AppUserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Counting Bloom filters over every account's username and email, so availability checks
+ * that come back negative ("definitely free") never query app_user.
+ * Until the first build finishes every name counts as "maybe taken" and callers fall back to the DB.
+ */
+@Service
+public class AccountNameIndex {
+    private static final Logger log = LoggerFactory.getLogger(AccountNameIndex.class);
+
+    private record Filters(CountingBloomFilter usernames, CountingBloomFilter emails) {
+        void add(String username, String email) {
+            usernames.add(username);
+            emails.add(email);
+        }
+    }
+
+    private final AppUserRepository userRepo;
+
+    @Value("${app.auth.names.expected:100000}")
+    private int expected;
+
+    @Value("${app.auth.names.fpp:0.01}")
+    private double fpp;
+
+    private volatile Filters current;
+
+    // guarded by this
+    private Filters building;
+    private boolean restart;
+
+    public AccountNameIndex(AppUserRepository userRepo) {
+        this.userRepo = userRepo;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuildAsync();
+    }
+
+    public void rebuildAsync() {
+        Thread t = new Thread(this::rebuild, "account-names-build");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Scans app_user into fresh filters and swaps them in. The old filters keep answering meanwhile.
+     * A rename seen mid-scan may already be reflected in the scanned rows, so removing the old name from
+     * the new filters could clear a counter some other name needs; the scan is simply repeated instead.
+     */
+    public void rebuild() {
+        synchronized (this) {
+            if (building != null) {
+                restart = true;
+                return;
+            }
+        }
+        while (true) {
+            long started = System.currentTimeMillis();
+            int size = (int) Math.min(Integer.MAX_VALUE / 2, Math.max(expected, 2 * userRepo.count()));
+            Filters fresh = new Filters(new CountingBloomFilter(size, fpp), new CountingBloomFilter(size, fpp));
+            synchronized (this) {
+                building = fresh;
+                restart = false;
+            }
+            int n = 0;
+            try {
+                long after = 0;
+                while (true) {
+                    List<AppUserRepository.AccountNames> page = userRepo.findTop1000ByIdGreaterThanOrderByIdAsc(after);
+                    if (page.isEmpty()) break;
+                    for (AppUserRepository.AccountNames a : page) fresh.add(a.getUsername(), a.getEmail());
+                    n += page.size();
+                    after = page.get(page.size() - 1).getId();
+                }
+            } catch (RuntimeException e) {
+                log.warn("Account name index build failed; availability checks keep using the database", e);
+                synchronized (this) {
+                    building = null;
+                }
+                return;
+            }
+            synchronized (this) {
+                if (!restart) {
+                    current = fresh;
+                    building = null;
+                    log.info("Account name index built over {} accounts in {} ms", n, System.currentTimeMillis() - started);
+                    return;
+                }
+            }
+        }
+    }
+
+    /** False only when no account has this username. */
+    public boolean mayHaveUsername(String username) {
+        Filters f = current;
+        return f == null || f.usernames().mightContain(username);
+    }
+
+    /** False only when no account has this email. */
+    public boolean mayHaveEmail(String email) {
+        Filters f = current;
+        return f == null || f.emails().mightContain(email);
+    }
+
+    /** Call after a new account row is committed. */
+    public synchronized void added(String username, String email) {
+        if (current != null) current.add(username, email);
+        if (building != null) building.add(username, email);
+    }
+
+    /** Call after an account's username changed. */
+    public synchronized void renamed(String oldUsername, String newUsername) {
+        if (current != null) {
+            current.usernames().add(newUsername);
+            current.usernames().remove(oldUsername);
+        }
+        if (building != null) {
+            building.usernames().add(newUsername);
+            restart = true;
+        }
+    }
+}
@@ -5,10 +5,10 @@ import com.selfimprovementtree.backend.model.UserDataEntity;
 import com.selfimprovementtree.backend.model.PendingRegistration;
 import com.selfimprovementtree.backend.model.PendingPasswordReset;
 import com.selfimprovementtree.backend.repo.AppUserRepository;
-import com.selfimprovementtree.backend.repo.UserDataRepository;
 import com.selfimprovementtree.backend.repo.PendingRegistrationRepository;
 import com.selfimprovementtree.backend.repo.PendingPasswordResetRepository;
 import com.selfimprovementtree.backend.security.JwtService;
+import com.selfimprovementtree.backend.security.TokenEpochs;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -21,27 +21,34 @@ import java.util.*;
 @Service
 public class AuthService {
     private final AppUserRepository userRepo;
-    private final UserDataRepository dataRepo;
     private final JwtService jwtService;
     private final PendingRegistrationRepository pendingRepo;
     private final PendingPasswordResetRepository resetRepo;
     private final JavaMailSender mailSender;
+    private final UserDataService userDataService;
+    private final AccountNameIndex names;
+    private final TokenEpochs tokenEpochs;
+    private final EngagementService engagement;
     private final PasswordEncoder encoder = new BCryptPasswordEncoder();
 
-    public AuthService(AppUserRepository userRepo, UserDataRepository dataRepo, JwtService jwtService, PendingRegistrationRepository pendingRepo, PendingPasswordResetRepository resetRepo, JavaMailSender mailSender) {
+    public AuthService(AppUserRepository userRepo, JwtService jwtService, PendingRegistrationRepository pendingRepo, PendingPasswordResetRepository resetRepo, JavaMailSender mailSender, UserDataService userDataService, AccountNameIndex names, TokenEpochs tokenEpochs, EngagementService engagement) {
         this.userRepo = userRepo;
-        this.dataRepo = dataRepo;
         this.jwtService = jwtService;
         this.pendingRepo = pendingRepo;
         this.resetRepo = resetRepo;
         this.mailSender = mailSender;
+        this.userDataService = userDataService;
+        this.names = names;
+        this.tokenEpochs = tokenEpochs;
+        this.engagement = engagement;
     }
 
     public String register(String email, String username, String rawPassword) {
-        userRepo.findByEmail(email).ifPresent(u -> { throw new RuntimeException("EMAIL_TAKEN"); });
-        userRepo.findByUsername(username).ifPresent(u -> { throw new RuntimeException("USERNAME_TAKEN"); });
-        AppUser user = new AppUser(email, username, encoder.encode(rawPassword));
+        if (!isEmailAvailable(email)) throw new RuntimeException("EMAIL_TAKEN");
+        if (!isUsernameAvailable(username)) throw new RuntimeException("USERNAME_TAKEN");
+        AppUser user = new AppUser(email, username, hashPassword(rawPassword));
         userRepo.save(user);
+        names.added(username, email);
         Map<String, Object> claims = new HashMap<>();
         claims.put("email", email);
         claims.put("username", username);
@@ -54,7 +61,7 @@ public class AuthService {
                 : userRepo.findByUsername(usernameOrEmail);
         if (userOpt.isEmpty()) throw new RuntimeException("INVALID_CREDENTIALS");
         AppUser user = userOpt.get();
-        if (!encoder.matches(rawPassword, user.getPasswordHash())) throw new RuntimeException("INVALID_CREDENTIALS");
+        if (!passwordMatches(rawPassword, user.getPasswordHash())) throw new RuntimeException("INVALID_CREDENTIALS");
         Map<String, Object> claims = new HashMap<>();
         claims.put("email", user.getEmail());
         claims.put("username", user.getUsername());
@@ -67,11 +74,12 @@ public class AuthService {
                 : userRepo.findByUsername(usernameOrEmail);
         if (userOpt.isEmpty()) throw new RuntimeException("INVALID_CREDENTIALS");
         AppUser user = userOpt.get();
-        if (!encoder.matches(rawPassword, user.getPasswordHash())) throw new RuntimeException("INVALID_CREDENTIALS");
+        if (!passwordMatches(rawPassword, user.getPasswordHash())) throw new RuntimeException("INVALID_CREDENTIALS");
         String accountId = user.getId().toString();
 
-        Optional<UserDataEntity> guest = dataRepo.findById(guestId);
-        Optional<UserDataEntity> account = dataRepo.findById(accountId);
+        // guest and account rows may live on different shards; the store routes each lookup
+        Optional<UserDataEntity> guest = userDataService.get(guestId);
+        Optional<UserDataEntity> account = userDataService.get(accountId);
 
         String jsonToKeep = null;
         // Prefer progress already linked to the account; only fall back to guest if account has none
@@ -82,12 +90,9 @@ public class AuthService {
         }
 
         if (jsonToKeep != null) {
-            UserDataEntity e = account.orElseGet(UserDataEntity::new);
-            e.setId(accountId);
-            e.setJson(jsonToKeep);
-            e.setUpdatedAt(java.time.OffsetDateTime.now());
-            dataRepo.save(e);
+            userDataService.upsert(accountId, jsonToKeep);
         }
+        engagement.converted(guestId, accountId);
 
         Map<String, Object> claims = new HashMap<>();
         claims.put("email", user.getEmail());
@@ -100,12 +105,12 @@ public class AuthService {
         if (email == null || email.isBlank() || username == null || username.isBlank() || rawPassword == null || rawPassword.length() < 6) {
             throw new RuntimeException("INVALID_INPUT");
         }
-        userRepo.findByEmail(email).ifPresent(u -> { throw new RuntimeException("EMAIL_TAKEN"); });
-        userRepo.findByUsername(username).ifPresent(u -> { throw new RuntimeException("USERNAME_TAKEN"); });
+        if (!isEmailAvailable(email)) throw new RuntimeException("EMAIL_TAKEN");
+        if (!isUsernameAvailable(username)) throw new RuntimeException("USERNAME_TAKEN");
         pendingRepo.findByEmail(email).ifPresent(p -> pendingRepo.delete(p));
         pendingRepo.findByUsername(username).ifPresent(p -> pendingRepo.delete(p));
         String code = generateCode();
-        String hash = encoder.encode(rawPassword);
+        String hash = hashPassword(rawPassword);
         OffsetDateTime now = OffsetDateTime.now();
         OffsetDateTime exp = now.plusMinutes(15);
         PendingRegistration pr = new PendingRegistration(email, username, hash, code, now, exp);
@@ -117,7 +122,7 @@ public class AuthService {
         msg.setFrom("selfimprovementtree@gmail.com");
         msg.setSubject("Self-Improvement Tree: Email verification code");
         msg.setText("Your verification code: " + code + "\n\nIt expires in 15 minutes.");
-        mailSender.send(msg);
+        send("verification", msg);
     }
 
     public void verifyRegistration(String email, String code) {
@@ -129,10 +134,11 @@ public class AuthService {
         if (!pr.getCode().equals(code)) {
             throw new RuntimeException("INVALID_CODE");
         }
-        userRepo.findByEmail(email).ifPresent(u -> { throw new RuntimeException("EMAIL_TAKEN"); });
-        userRepo.findByUsername(pr.getUsername()).ifPresent(u -> { throw new RuntimeException("USERNAME_TAKEN"); });
+        if (!isEmailAvailable(email)) throw new RuntimeException("EMAIL_TAKEN");
+        if (!isUsernameAvailable(pr.getUsername())) throw new RuntimeException("USERNAME_TAKEN");
         AppUser user = new AppUser(email, pr.getUsername(), pr.getPasswordHash());
         userRepo.save(user);
+        names.added(pr.getUsername(), email);
         pendingRepo.delete(pr);
     }
 
@@ -154,7 +160,7 @@ public class AuthService {
         msg.setFrom("selfimprovementtree@gmail.com");
         msg.setSubject("Self-Improvement Tree: Password reset code");
         msg.setText("Your reset code: " + code + "\n\nIt expires in 15 minutes.");
-        mailSender.send(msg);
+        send("reset", msg);
         return email;
     }
 
@@ -176,13 +182,21 @@ public class AuthService {
             throw new RuntimeException("PASSWORD_TOO_SHORT");
         }
         if (np != null && !np.isBlank()) {
-            user.setPasswordHash(encoder.encode(np));
+            user.setPasswordHash(hashPassword(np));
         }
-        if (nu != null && !nu.isBlank() && !nu.equals(user.getUsername())) {
-            userRepo.findByUsername(nu).ifPresent(u -> { throw new RuntimeException("USERNAME_TAKEN"); });
+        String oldUsername = user.getUsername();
+        if (nu != null && !nu.isBlank() && !nu.equals(oldUsername)) {
+            if (!isUsernameAvailable(nu)) throw new RuntimeException("USERNAME_TAKEN");
             user.setUsername(nu);
         }
         userRepo.save(user);
+        if (!oldUsername.equals(user.getUsername())) {
+            names.renamed(oldUsername, user.getUsername());
+        }
+        if (np != null && !np.isBlank()) {
+            // a new password signs out every device; the token returned below carries the new epoch
+            tokenEpochs.bump(user.getId());
+        }
         resetRepo.delete(pr);
         Map<String, Object> claims = new HashMap<>();
         claims.put("email", user.getEmail());
@@ -191,6 +205,63 @@ public class AuthService {
         return Map.of("token", token, "accountId", user.getId().toString(), "username", user.getUsername());
     }
 
+    /** Invalidates every token issued to the user so far, including the one used for this call. */
+    public void logoutAll(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) throw new RuntimeException("UNAUTHORIZED");
+        long userId;
+        try {
+            userId = Long.parseLong(jwtService.getSubject(authHeader.substring("Bearer ".length()).trim()));
+        } catch (Exception e) {
+            throw new RuntimeException("UNAUTHORIZED");
+        }
+        tokenEpochs.bump(userId);
+    }
+
+    /** The Bloom filter answers "free" on its own; only a possible hit is confirmed against app_user. */
+    public boolean isUsernameAvailable(String username) {
+        return !names.mayHaveUsername(username) || userRepo.findByUsername(username).isEmpty();
+    }
+
+    public boolean isEmailAvailable(String email) {
+        return !names.mayHaveEmail(email) || userRepo.findByEmail(email).isEmpty();
+    }
+
+    private String hashPassword(String raw) {
+        FlightEvents.PasswordHash event = new FlightEvents.PasswordHash("encode");
+        event.begin();
+        try {
+            return encoder.encode(raw);
+        } finally {
+            event.commit();
+        }
+    }
+
+    private boolean passwordMatches(String raw, String hash) {
+        FlightEvents.PasswordHash event = new FlightEvents.PasswordHash("matches");
+        event.begin();
+        try {
+            boolean ok = encoder.matches(raw, hash);
+            if (!ok) event.outcome = "mismatch";
+            return ok;
+        } finally {
+            event.commit();
+        }
+    }
+
+    private void send(String kind, SimpleMailMessage msg) {
+        FlightEvents.Mail event = new FlightEvents.Mail(kind);
+        event.payloadBytes = msg.getText() != null ? msg.getText().length() : 0;
+        event.begin();
+        try {
+            mailSender.send(msg);
+        } catch (RuntimeException ex) {
+            event.fail(ex);
+            throw ex;
+        } finally {
+            event.commit();
+        }
+    }
+
     private String generateCode() {
         int n = new Random().nextInt(900000) + 100000; // 6-digit
         return Integer.toString(n);
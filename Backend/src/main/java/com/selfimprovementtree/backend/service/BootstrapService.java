@@ -0,0 +1,234 @@
+package com.selfimprovementtree.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import com.selfimprovementtree.backend.model.AppUser;
+import com.selfimprovementtree.backend.model.TutorialStep;
+import com.selfimprovementtree.backend.model.UserDataEntity;
+import com.selfimprovementtree.backend.repo.AppUserRepository;
+import com.selfimprovementtree.backend.security.JwtService;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the calls a client makes at start-up as one request.
+ *
+ * Operations are grouped by the resource before the dot ("userdata.get" belongs to "userdata"); a group runs
+ * in request order, different groups run concurrently. The Authorization header is parsed once and the
+ * caller's AppUser row is read once, and every operation reuses both. Each result carries its own status,
+ * the same one the standalone endpoint would have answered.
+ */
+@Service
+public class BootstrapService {
+    public static final int MAX_OPS = 16;
+
+    private final JwtService jwtService;
+    private final AppUserRepository userRepo;
+    private final UserDataService userData;
+    private final ObjectMapper mapper;
+    private final FeatureFlagService featureFlags;
+    private final EngagementService engagement;
+    private final ExecutorService pool;
+
+    public BootstrapService(JwtService jwtService, AppUserRepository userRepo, UserDataService userData, ObjectMapper mapper,
+                            FeatureFlagService featureFlags, EngagementService engagement,
+                            @Value("${app.bootstrap.threads:8}") int threads) {
+        this.jwtService = jwtService;
+        this.userRepo = userRepo;
+        this.userData = userData;
+        this.mapper = mapper;
+        this.featureFlags = featureFlags;
+        this.engagement = engagement;
+        AtomicInteger n = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "bootstrap-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /** Shared state for one bootstrap call. Each group owns the fields it changes. */
+    private static final class Context {
+        final String id;
+        final Long principal;
+        final Optional<AppUser> user;
+        final boolean idAllowed;
+        long tutorialBits;
+
+        Context(String id, Long principal, Optional<AppUser> user, boolean idAllowed) {
+            this.id = id;
+            this.principal = principal;
+            this.user = user;
+            this.idAllowed = idAllowed;
+            this.tutorialBits = user.map(AppUser::getTutorialBits).orElse(0L);
+        }
+    }
+
+    /**
+     * @param id  the user data id the userdata.* operations address (account id or guest id)
+     * @param ops operations as sent by the client, e.g. {"op": "userdata.put", "data": {...}, "merge": true}
+     * @return one result per operation, in request order
+     */
+    public List<Map<String, Object>> run(String authHeader, String id, List<JsonNode> ops) {
+        Long principal = principal(authHeader);
+        Optional<AppUser> user = principal != null ? userRepo.findById(principal) : Optional.empty();
+        Context ctx = new Context(id, principal, user, idAllowed(id, principal));
+
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < ops.size(); i++) {
+            String name = ops.get(i).path("op").asText("");
+            int dot = name.indexOf('.');
+            groups.computeIfAbsent(dot < 0 ? name : name.substring(0, dot), k -> new ArrayList<>()).add(i);
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>(ops.size());
+        for (int i = 0; i < ops.size(); i++) results.add(null);
+        List<CompletableFuture<Void>> running = new ArrayList<>();
+        Iterator<List<Integer>> it = groups.values().iterator();
+        while (it.hasNext()) {
+            List<Integer> group = it.next();
+            Runnable task = () -> {
+                for (int i : group) {
+                    Map<String, Object> r = execute(ctx, ops.get(i));
+                    synchronized (results) {
+                        results.set(i, r);
+                    }
+                }
+            };
+            // the last group runs on the request thread instead of waiting idle
+            if (it.hasNext()) running.add(CompletableFuture.runAsync(task, pool));
+            else task.run();
+        }
+        running.forEach(CompletableFuture::join);
+        return results;
+    }
+
+    private Map<String, Object> execute(Context ctx, JsonNode op) {
+        String name = op.path("op").asText("");
+        try {
+            return switch (name) {
+                case "userdata.get" -> userdataGet(ctx);
+                case "userdata.put" -> userdataPut(ctx, op);
+                case "tutorial.get" -> tutorialGet(ctx);
+                case "tutorial.patch" -> tutorialPatch(ctx, op);
+                case "features.get" -> result("features.get", 200,
+                        Map.of("flags", featureFlags.evaluate(ctx.principal != null ? ctx.principal.toString() : ctx.id)));
+                default -> result(name, 400, Map.of("error", "UNKNOWN_OP"));
+            };
+        } catch (RuntimeException ex) {
+            return result(name, 500, Map.of("error", "FAILED"));
+        }
+    }
+
+    private Map<String, Object> userdataGet(Context ctx) {
+        if (ctx.id == null || ctx.id.isBlank()) return result("userdata.get", 400, Map.of("error", "INVALID_INPUT"));
+        if (!ctx.idAllowed) return result("userdata.get", 401, null);
+        engagement.active(ctx.id, ctx.id.equals(String.valueOf(ctx.principal)));
+        Optional<UserDataEntity> e = userData.get(ctx.id);
+        if (e.isEmpty()) return result("userdata.get", 404, null);
+        Map<String, Object> r = result("userdata.get", 200, new RawValue(e.get().getJson()));
+        r.put("version", e.get().getVersion());
+        return r;
+    }
+
+    private Map<String, Object> userdataPut(Context ctx, JsonNode op) {
+        if (ctx.id == null || ctx.id.isBlank() || !op.has("data")) {
+            return result("userdata.put", 400, Map.of("error", "INVALID_INPUT"));
+        }
+        if (!ctx.idAllowed) return result("userdata.put", 401, null);
+        engagement.active(ctx.id, ctx.id.equals(String.valueOf(ctx.principal)));
+        String json;
+        try {
+            json = mapper.writeValueAsString(op.get("data"));
+        } catch (JsonProcessingException ex) {
+            return result("userdata.put", 400, Map.of("error", "INVALID_INPUT"));
+        }
+        UserDataEntity saved;
+        boolean merge = op.path("merge").asBoolean(false);
+        if (merge) {
+            Long base = op.hasNonNull("baseVersion") ? op.get("baseVersion").asLong() : null;
+            try {
+                saved = userData.merge(ctx.id, json, base);
+            } catch (JsonProcessingException ex) {
+                return result("userdata.put", 400, Map.of("error", "INVALID_INPUT"));
+            }
+        } else {
+            saved = userData.upsert(ctx.id, json);
+        }
+        Map<String, Object> r = result("userdata.put", 200, merge ? new RawValue(saved.getJson()) : null);
+        r.put("version", saved.getVersion());
+        return r;
+    }
+
+    private Map<String, Object> tutorialGet(Context ctx) {
+        if (ctx.principal == null) return result("tutorial.get", 401, Map.of("error", "User not authenticated"));
+        if (ctx.user.isEmpty()) return result("tutorial.get", 404, Map.of("error", "User not found"));
+        return result("tutorial.get", 200, TutorialStep.toProgress(ctx.tutorialBits));
+    }
+
+    private Map<String, Object> tutorialPatch(Context ctx, JsonNode op) {
+        if (ctx.principal == null) return result("tutorial.patch", 401, Map.of("error", "User not authenticated"));
+        long set = 0L;
+        long clear = 0L;
+        for (Map.Entry<String, JsonNode> e : op.path("data").properties()) {
+            TutorialStep step = TutorialStep.fromKey(e.getKey());
+            if (step == null || !e.getValue().isBoolean()) continue;
+            if (e.getValue().asBoolean()) set |= step.mask();
+            else clear |= step.mask();
+        }
+        Optional<Long> bits = userRepo.updateTutorialBits(ctx.principal, set, ~clear);
+        if (bits.isEmpty()) return result("tutorial.patch", 404, Map.of("error", "User not found"));
+        ctx.tutorialBits = bits.get();
+        return result("tutorial.patch", 200, TutorialStep.toProgress(ctx.tutorialBits));
+    }
+
+    private static Map<String, Object> result(String op, int status, Object body) {
+        Map<String, Object> r = new LinkedHashMap<>();
+        r.put("op", op);
+        r.put("status", status);
+        if (body != null) r.put("body", body);
+        return r;
+    }
+
+    private Long principal(String authHeader) {
+        String subject = jwtService.subjectOf(authHeader);
+        if (subject == null) return null;
+        try {
+            return Long.parseLong(subject);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /** Same rule as UserDataController: account ids only for their owner, guest ids for anyone. */
+    private boolean idAllowed(String id, Long principal) {
+        if (id == null) return false;
+        long accountId;
+        try {
+            accountId = Long.parseLong(id);
+        } catch (NumberFormatException ex) {
+            return true;
+        }
+        if (principal != null && principal == accountId) return true;
+        return !userRepo.existsById(accountId);
+    }
+}
@@ -0,0 +1,66 @@
+package com.selfimprovementtree.backend.service;
+
+import com.selfimprovementtree.backend.model.Hash64;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter with 4-bit counters (16 per long) so keys can be removed again.
+ * A "no" from {@link #mightContain} is definite as long as every {@link #remove} matches an earlier
+ * {@link #add}; a "yes" may be a false positive. Counters that reach 15 stick there instead of
+ * overflowing. Updates are lock-free CAS on the packed words; reads never block.
+ */
+public final class CountingBloomFilter {
+    private static final int MAX = 15;
+
+    private final AtomicLongArray words;
+    private final int counters;
+    private final int hashes;
+
+    /** Sized for {@code expected} keys at roughly {@code fpp} false positive probability. */
+    public CountingBloomFilter(int expected, double fpp) {
+        long m = (long) Math.ceil(-Math.max(1, expected) * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        counters = (int) Math.min(Integer.MAX_VALUE - 15, Math.max(64, m));
+        hashes = Math.max(1, (int) Math.round((double) counters / Math.max(1, expected) * Math.log(2)));
+        words = new AtomicLongArray((counters + 15) / 16);
+    }
+
+    public void add(String key) {
+        long h1 = hash(key, 0), h2 = hash(key, 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashes; i++) bump(slot(h1, h2, i), 1);
+    }
+
+    public void remove(String key) {
+        long h1 = hash(key, 0), h2 = hash(key, 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashes; i++) bump(slot(h1, h2, i), -1);
+    }
+
+    public boolean mightContain(String key) {
+        long h1 = hash(key, 0), h2 = hash(key, 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashes; i++) {
+            int s = slot(h1, h2, i);
+            if (((words.get(s >>> 4) >>> ((s & 15) << 2)) & 0xF) == 0) return false;
+        }
+        return true;
+    }
+
+    private int slot(long h1, long h2, int i) {
+        return (int) Long.remainderUnsigned(h1 + i * h2, counters);
+    }
+
+    private void bump(int s, int delta) {
+        int idx = s >>> 4, shift = (s & 15) << 2;
+        while (true) {
+            long w = words.get(idx);
+            int c = (int) ((w >>> shift) & 0xF);
+            // saturated counters may stand for more keys than they can count, so they never go down
+            if (c == MAX || (delta < 0 && c == 0)) return;
+            long next = (w & ~(0xFL << shift)) | ((long) (c + delta) << shift);
+            if (words.compareAndSet(idx, w, next)) return;
+        }
+    }
+
+    private static long hash(String key, long seed) {
+        return Hash64.mix(Hash64.fnv1a(Hash64.FNV_OFFSET ^ seed, key));
+    }
+}
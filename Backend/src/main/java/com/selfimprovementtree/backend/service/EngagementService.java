@@ -0,0 +1,186 @@
+package com.selfimprovementtree.backend.service;
+
+import com.selfimprovementtree.backend.model.EngagementSketch;
+import com.selfimprovementtree.backend.repo.EngagementSketchRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Approximate daily, weekly and monthly distinct users, without scanning user_data or keeping ids.
+ *
+ * Every user data request and guest link adds the id to today's (UTC) {@link HyperLogLog} of each metric it
+ * counts for. Days still being written live in memory and are flushed every {@code app.engagement.flush-ms};
+ * a flush merges the stored sketch in before writing back, so several instances end up with the union, and
+ * days older than yesterday are dropped from memory once written. A report merges at most 30 days per metric,
+ * so its cost does not grow with the number of users. Rows older than {@code retention-days} are deleted.
+ */
+@Service
+@Lazy(false) // flush is @Scheduled and ids are counted from the first request
+public class EngagementService {
+    private static final Logger log = LoggerFactory.getLogger(EngagementService.class);
+    private static final long DAY_MS = 86_400_000L;
+    private static final int WEEK = 7;
+    private static final int MONTH = 30;
+
+    public enum Metric {
+        /** any id, account or guest */
+        ACTIVE,
+        ACCOUNTS,
+        GUESTS,
+        /** guest ids linked to an account */
+        CONVERSIONS;
+
+        final String key = name().toLowerCase();
+    }
+
+    private static final Metric[] METRICS = Metric.values();
+
+    private final EngagementSketchRepository repo;
+    private final int retentionDays;
+    private final Map<Integer, Day> days = new ConcurrentHashMap<>();
+    private volatile Day current;
+
+    private static final class Day {
+        final int day;
+        final HyperLogLog[] sketches = new HyperLogLog[METRICS.length];
+
+        Day(int day) {
+            this.day = day;
+            for (int i = 0; i < sketches.length; i++) sketches[i] = new HyperLogLog();
+        }
+    }
+
+    public EngagementService(EngagementSketchRepository repo,
+                             @Value("${app.engagement.retention-days:400}") int retentionDays) {
+        this.repo = repo;
+        this.retentionDays = retentionDays;
+    }
+
+    /** A user data request for {@code id}, which is an account id or a guest id. */
+    public void active(String id, boolean account) {
+        Day d = today();
+        long hash = HyperLogLog.hash((account ? "a:" : "g:") + id);
+        d.sketches[Metric.ACTIVE.ordinal()].add(hash);
+        d.sketches[(account ? Metric.ACCOUNTS : Metric.GUESTS).ordinal()].add(hash);
+    }
+
+    /** Progress of {@code guestId} was linked to {@code accountId}. */
+    public void converted(String guestId, String accountId) {
+        active(accountId, true);
+        today().sketches[Metric.CONVERSIONS.ordinal()].add(HyperLogLog.hash("g:" + guestId));
+    }
+
+    /**
+     * Distinct ids per metric on {@code date}, in the 7 days and in the 30 days ending with it, plus
+     * stickiness (daily over monthly active).
+     */
+    public Map<String, Object> report(LocalDate date) {
+        int end = (int) date.toEpochDay();
+        HyperLogLog[][] windows = new HyperLogLog[3][METRICS.length];
+        for (HyperLogLog[] w : windows) {
+            for (int i = 0; i < w.length; i++) w[i] = new HyperLogLog();
+        }
+        for (EngagementSketch row : repo.findByDayBetween(end - MONTH + 1, end)) {
+            Metric m = metric(row.getMetric());
+            if (m == null) continue;
+            try {
+                fold(windows, end, row.getDay(), m.ordinal(), HyperLogLog.fromBytes(row.getSketch()));
+            } catch (IllegalArgumentException ex) {
+                log.warn("Skipping engagement sketch {}/{}: {}", row.getMetric(), row.getDay(), ex.getMessage());
+            }
+        }
+        // what has not been flushed yet
+        for (Day d : days.values()) {
+            if (d.day > end || d.day <= end - MONTH) continue;
+            for (int i = 0; i < METRICS.length; i++) fold(windows, end, d.day, i, d.sketches[i]);
+        }
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("date", date.toString());
+        body.put("standardError", HyperLogLog.standardError());
+        String[] names = {"day", "week", "month"};
+        long[] activeCounts = new long[3];
+        for (int w = 0; w < 3; w++) {
+            Map<String, Long> counts = new LinkedHashMap<>();
+            for (Metric m : METRICS) counts.put(m.key, windows[w][m.ordinal()].estimate());
+            activeCounts[w] = counts.get(Metric.ACTIVE.key);
+            body.put(names[w], counts);
+        }
+        body.put("stickiness", activeCounts[2] == 0 ? 0.0 : Math.min(1.0, (double) activeCounts[0] / activeCounts[2]));
+        return body;
+    }
+
+    private static void fold(HyperLogLog[][] windows, int end, int day, int metric, HyperLogLog sketch) {
+        windows[2][metric].merge(sketch);
+        if (day > end - WEEK) windows[1][metric].merge(sketch);
+        if (day == end) windows[0][metric].merge(sketch);
+    }
+
+    /** Writes every day held in memory; also the only place days leave memory. */
+    @Scheduled(initialDelayString = "${app.engagement.flush-ms:60000}", fixedDelayString = "${app.engagement.flush-ms:60000}")
+    @PreDestroy
+    public void flush() {
+        int today = epochDay();
+        for (Day d : days.values()) {
+            try {
+                write(d);
+            } catch (RuntimeException ex) {
+                // kept in memory, the next flush tries again
+                log.warn("Engagement flush of day {} failed: {}", d.day, ex.getMessage());
+                continue;
+            }
+            if (d.day < today - 1) days.remove(d.day, d);
+        }
+        repo.deleteOlderThan(today - retentionDays);
+    }
+
+    private void write(Day d) {
+        long now = System.currentTimeMillis();
+        for (Metric m : METRICS) {
+            HyperLogLog sketch = d.sketches[m.ordinal()];
+            EngagementSketch row = repo.findById(new EngagementSketch.Key(m.key, d.day))
+                    .orElseGet(() -> new EngagementSketch(m.key, d.day));
+            if (row.getSketch().length > 0) {
+                try {
+                    sketch.merge(HyperLogLog.fromBytes(row.getSketch()));
+                } catch (IllegalArgumentException ex) {
+                    log.warn("Replacing unreadable engagement sketch {}/{}", m.key, d.day);
+                }
+            }
+            row.setSketch(sketch.toBytes());
+            row.setUpdatedAt(now);
+            repo.save(row);
+        }
+    }
+
+    private Day today() {
+        int day = epochDay();
+        Day d = current;
+        if (d == null || d.day != day) {
+            d = days.computeIfAbsent(day, Day::new);
+            current = d;
+        }
+        return d;
+    }
+
+    private static int epochDay() {
+        return (int) Math.floorDiv(System.currentTimeMillis(), DAY_MS);
+    }
+
+    private static Metric metric(String key) {
+        for (Metric m : METRICS) {
+            if (m.key.equals(key)) return m;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,82 @@
+package com.selfimprovementtree.backend.service;
+
+import com.selfimprovementtree.backend.model.FeatureFlagEntity;
+import com.selfimprovementtree.backend.model.FeatureFlags;
+import com.selfimprovementtree.backend.repo.FeatureFlagRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds the current {@link FeatureFlags} snapshot. Changes go to the feature_flag table and then
+ * replace the snapshot in one volatile write; readers only ever see a complete snapshot.
+ * The table is re-read every {@code app.features.refresh-ms} to pick up changes made elsewhere.
+ */
+@Service
+@Lazy(false) // refresh is @Scheduled
+public class FeatureFlagService {
+    private static final Logger log = LoggerFactory.getLogger(FeatureFlagService.class);
+
+    private final FeatureFlagRepository repo;
+    private volatile FeatureFlags snapshot = FeatureFlags.EMPTY;
+
+    public FeatureFlagService(FeatureFlagRepository repo) {
+        this.repo = repo;
+        reload();
+    }
+
+    public FeatureFlags snapshot() {
+        return snapshot;
+    }
+
+    @Scheduled(initialDelayString = "${app.features.refresh-ms:30000}", fixedDelayString = "${app.features.refresh-ms:30000}")
+    public void reload() {
+        FeatureFlags next = new FeatureFlags(repo.findAll());
+        if (next.version() != snapshot.version()) {
+            snapshot = next;
+            log.info("Feature flags loaded: {} flags, version {}", next.size(), Long.toHexString(next.version()));
+        }
+    }
+
+    /** Flags on for this user, by key. */
+    public Map<String, Boolean> evaluate(String userId) {
+        FeatureFlags flags = snapshot;
+        Map<String, Boolean> out = new LinkedHashMap<>();
+        for (int i = 0; i < flags.size(); i++) {
+            out.put(flags.key(i), flags.isEnabled(i, userId));
+        }
+        return out;
+    }
+
+    public List<FeatureFlagEntity> list() {
+        return repo.findAll();
+    }
+
+    public synchronized FeatureFlagEntity save(String key, boolean enabled, int rolloutPercent, String description) {
+        if (key == null || key.isBlank() || key.length() > 64 || rolloutPercent < 0 || rolloutPercent > 100) {
+            throw new IllegalArgumentException("INVALID_INPUT");
+        }
+        FeatureFlagEntity flag = repo.findById(key).orElseGet(() -> new FeatureFlagEntity(key, enabled, rolloutPercent, description));
+        flag.setEnabled(enabled);
+        flag.setRolloutPercent(rolloutPercent);
+        if (description != null) flag.setDescription(description);
+        flag.setUpdatedAt(OffsetDateTime.now());
+        FeatureFlagEntity saved = repo.save(flag);
+        reload();
+        return saved;
+    }
+
+    public synchronized boolean delete(String key) {
+        if (!repo.existsById(key)) return false;
+        repo.deleteById(key);
+        reload();
+        return true;
+    }
+}
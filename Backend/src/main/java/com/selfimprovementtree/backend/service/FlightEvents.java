@@ -0,0 +1,97 @@
+package com.selfimprovementtree.backend.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Custom Java Flight Recorder events for the calls that usually explain a latency spike: H2 reads and writes of
+ * user data, BCrypt, SMTP, JWT verification and Stripe. Each carries its duration (JFR's own start/end),
+ * a payload size and an outcome, "ok" unless {@link Call#fail} named the exception.
+ * <pre>
+ *   FlightEvents.Mail event = new FlightEvents.Mail("verification");
+ *   event.begin();
+ *   try { ...; event.payloadBytes = n; } catch (RuntimeException ex) { event.fail(ex); throw ex; } finally { event.commit(); }
+ * </pre>
+ * While no recording has an event enabled, begin and commit do nearly nothing. {@link FlightRecordingService} runs one.
+ */
+public final class FlightEvents {
+    public static final String CATEGORY = "Self-Improvement Tree";
+
+    private FlightEvents() {}
+
+    @StackTrace(false)
+    public abstract static class Call extends Event {
+        @Label("Operation")
+        public String operation;
+
+        @Label("Payload")
+        @DataAmount
+        public long payloadBytes;
+
+        @Label("Outcome")
+        public String outcome = "ok";
+
+        Call(String operation) {
+            this.operation = operation;
+        }
+
+        public void fail(Throwable t) {
+            outcome = t.getClass().getSimpleName();
+        }
+    }
+
+    @Name("selfimprovement.UserData")
+    @Label("User Data Access")
+    @Category(CATEGORY)
+    @Description("UserDataService get/upsert/merge/apply; payload is the document length")
+    public static final class UserData extends Call {
+        public UserData(String operation) {
+            super(operation);
+        }
+    }
+
+    @Name("selfimprovement.PasswordHash")
+    @Label("Password Hash")
+    @Category(CATEGORY)
+    @Description("BCrypt encode/matches; the password length is not recorded")
+    public static final class PasswordHash extends Call {
+        public PasswordHash(String operation) {
+            super(operation);
+        }
+    }
+
+    @Name("selfimprovement.Mail")
+    @Label("Mail Send")
+    @Category(CATEGORY)
+    @Description("SMTP send; payload is the message text length")
+    public static final class Mail extends Call {
+        public Mail(String operation) {
+            super(operation);
+        }
+    }
+
+    @Name("selfimprovement.JwtVerify")
+    @Label("JWT Verification")
+    @Category(CATEGORY)
+    @Description("Signature, expiry and epoch check; payload is the token length")
+    public static final class JwtVerify extends Call {
+        public JwtVerify() {
+            super("verify");
+        }
+    }
+
+    @Name("selfimprovement.Stripe")
+    @Label("Stripe Call")
+    @Category(CATEGORY)
+    @Description("Calls to the Stripe API; payload is the response body length")
+    public static final class Stripe extends Call {
+        public Stripe(String operation) {
+            super(operation);
+        }
+    }
+}
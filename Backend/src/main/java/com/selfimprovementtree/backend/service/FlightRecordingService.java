@@ -0,0 +1,89 @@
+package com.selfimprovementtree.backend.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Continuous Java Flight Recorder recording with the JDK's low-overhead "default" settings (GC, threads, I/O,
+ * allocation samples) plus the {@link FlightEvents}. It rolls on disk in JFR's repository, bounded by
+ * {@code app.jfr.max-age} and {@code app.jfr.max-size}; {@link #dump} writes the last minutes to a .jfr file.
+ * Custom events shorter than {@code app.jfr.threshold} are not recorded.
+ */
+@Service
+@Lazy(false) // the recording has to be running before anyone asks for a dump
+public class FlightRecordingService {
+    private static final Logger log = LoggerFactory.getLogger(FlightRecordingService.class);
+    private static final List<Class<? extends FlightEvents.Call>> EVENTS = List.of(FlightEvents.UserData.class,
+            FlightEvents.PasswordHash.class, FlightEvents.Mail.class, FlightEvents.JwtVerify.class, FlightEvents.Stripe.class);
+
+    @Value("${app.jfr.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.jfr.max-age:PT30M}")
+    private Duration maxAge;
+
+    @Value("${app.jfr.max-size:104857600}")
+    private long maxSize;
+
+    @Value("${app.jfr.threshold:PT0.001S}")
+    private Duration threshold;
+
+    private Recording recording;
+
+    @PostConstruct
+    void start() {
+        if (!enabled || !FlightRecorder.isAvailable()) return;
+        try {
+            Recording r = new Recording(Configuration.getConfiguration("default"));
+            r.setName("backend-continuous");
+            r.setToDisk(true);
+            r.setMaxAge(maxAge);
+            r.setMaxSize(maxSize);
+            for (Class<? extends FlightEvents.Call> type : EVENTS) r.enable(type).withThreshold(threshold);
+            r.start();
+            recording = r;
+            log.info("Flight recording started, keeping {} / {} MB", maxAge, maxSize >> 20);
+        } catch (IOException | ParseException | RuntimeException ex) {
+            log.warn("Could not start the flight recording", ex);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (recording != null) recording.close();
+    }
+
+    public boolean isRunning() {
+        return recording != null;
+    }
+
+    /** Writes the last {@code minutes} of recorded data to a temporary .jfr file; the caller deletes it. */
+    public Path dump(int minutes) throws IOException {
+        if (recording == null) throw new IllegalStateException("NOT_RECORDING");
+        Path file = Files.createTempFile("backend-", ".jfr");
+        try (Recording snapshot = FlightRecorder.getFlightRecorder().takeSnapshot()) {
+            snapshot.setMaxAge(Duration.ofMinutes(minutes));
+            snapshot.setMaxSize(maxSize);
+            snapshot.dump(file);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(file);
+            throw ex;
+        }
+        return file;
+    }
+}
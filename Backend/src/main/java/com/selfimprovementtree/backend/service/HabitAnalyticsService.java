@@ -0,0 +1,197 @@
+package com.selfimprovementtree.backend.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.selfimprovementtree.backend.model.HabitStatEntity;
+import com.selfimprovementtree.backend.repo.HabitStatRepository;
+import com.selfimprovementtree.backend.repo.UserDataStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import jakarta.annotation.PreDestroy;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Aggregate habit statistics for dashboards.
+ *
+ * A full rebuild scans all user data and parses documents on a fork-join pool; afterwards the
+ * aggregate is kept current from {@link UserDataChangedEvent}s (old contribution out, new one in)
+ * and flushed to the habit_stat table, which is also what a restart starts from. Reading the stats
+ * never scans. Rows removed without an event (archiving, admin wipes) stay counted until the next rebuild.
+ * A change that lands while a rebuild scans is folded in only if the scan saw an older version of that
+ * document, so nothing is counted both through the scanned row and through its delta.
+ */
+@Service
+@Lazy(false) // keeps the periodic flush scheduled in the faststart profile
+public class HabitAnalyticsService {
+    private static final Logger log = LoggerFactory.getLogger(HabitAnalyticsService.class);
+    private static final int BATCH = 512;
+    private static final int SPLIT_THRESHOLD = 64;
+    // a change is published right after its commit, so one stamped earlier than this before a rebuild
+    // started has been delivered by then
+    private static final long EVENT_SLACK_SECONDS = 60;
+
+    private final UserDataStore store;
+    private final HabitStatRepository statRepo;
+    private final JsonFactory jsonFactory;
+    private final ForkJoinPool pool;
+
+    private HabitStats live = new HabitStats();
+    // changes that arrive while a rebuild is scanning, folded into its result unless the scan already saw them
+    private List<Pending> duringRebuild;
+    private boolean dirty;
+
+    private record Pending(String id, long version, HabitStats delta) {}
+
+    public HabitAnalyticsService(UserDataStore store, HabitStatRepository statRepo, ObjectMapper mapper,
+                                 @Value("${app.analytics.parallelism:0}") int parallelism) {
+        this.store = store;
+        this.statRepo = statRepo;
+        this.jsonFactory = mapper.getFactory();
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Map<String, Long> rows = new HashMap<>();
+        statRepo.findAll().forEach(r -> rows.put(r.getName(), r.getValue()));
+        if (rows.isEmpty()) {
+            Thread t = new Thread(this::rebuild, "habit-stats-rebuild");
+            t.setDaemon(true);
+            t.start();
+            return;
+        }
+        synchronized (this) {
+            live = HabitStats.fromRows(rows);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChange(UserDataChangedEvent event) {
+        HabitStats delta = new HabitStats();
+        delta.addDocument(jsonFactory, event.json());
+        HabitStats old = new HabitStats();
+        old.addDocument(jsonFactory, event.previousJson());
+        delta.add(old, -1);
+        synchronized (this) {
+            live.add(delta, 1);
+            if (duringRebuild != null) duringRebuild.add(new Pending(event.id(), event.version(), delta));
+            dirty = true;
+        }
+    }
+
+    public synchronized Map<String, Object> summary() {
+        return live.summary();
+    }
+
+    /** Recomputes everything from the stored documents. */
+    public void rebuild() {
+        synchronized (this) {
+            if (duringRebuild != null) return; // already running
+            duringRebuild = new ArrayList<>();
+        }
+        long start = System.currentTimeMillis();
+        OffsetDateTime recent = OffsetDateTime.now().minusSeconds(EVENT_SLACK_SECONDS);
+        // versions the scan read of documents written around or during the rebuild; older rows cannot
+        // have a pending change, so memory follows the write rate rather than the table size
+        Map<String, Long> scanned = new ConcurrentHashMap<>();
+        HabitStats fresh = new HabitStats();
+        try {
+            List<String> batch = new ArrayList<>(BATCH);
+            Deque<ForkJoinTask<HabitStats>> inFlight = new ArrayDeque<>();
+            store.scan(e -> {
+                if (e.getUpdatedAt() == null || !e.getUpdatedAt().isBefore(recent)) {
+                    scanned.merge(e.getId(), e.getVersion(), Math::max);
+                }
+                synchronized (batch) {
+                    batch.add(e.getJson());
+                    if (batch.size() < BATCH) return;
+                    List<String> full = new ArrayList<>(batch);
+                    batch.clear();
+                    synchronized (inFlight) {
+                        inFlight.add(pool.submit(new ParseTask(full, 0, full.size())));
+                        // keep memory bounded when parsing is slower than reading
+                        while (inFlight.size() > 2 * pool.getParallelism()) fresh.add(inFlight.poll().join(), 1);
+                    }
+                }
+            });
+            inFlight.add(pool.submit(new ParseTask(batch, 0, batch.size())));
+            while (!inFlight.isEmpty()) fresh.add(inFlight.poll().join(), 1);
+        } catch (RuntimeException ex) {
+            synchronized (this) {
+                duringRebuild = null;
+            }
+            throw ex;
+        }
+        synchronized (this) {
+            for (Pending p : duringRebuild) {
+                Long seen = scanned.get(p.id());
+                if (seen == null || p.version() > seen) fresh.add(p.delta(), 1);
+            }
+            live = fresh;
+            duringRebuild = null;
+            dirty = true;
+        }
+        flush();
+        log.info("Habit stats rebuilt over {} documents in {} ms", fresh.documents, System.currentTimeMillis() - start);
+    }
+
+    @Scheduled(fixedDelayString = "${app.analytics.flush-ms:60000}")
+    public void flush() {
+        HabitStats snapshot;
+        synchronized (this) {
+            if (!dirty) return;
+            snapshot = live.copy();
+            dirty = false;
+        }
+        List<HabitStatEntity> rows = new ArrayList<>();
+        snapshot.toRows().forEach((name, value) -> rows.add(new HabitStatEntity(name, value)));
+        statRepo.saveAll(rows);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private final class ParseTask extends RecursiveTask<HabitStats> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> docs;
+        private final int from;
+        private final int to;
+
+        ParseTask(List<String> docs, int from, int to) {
+            this.docs = docs;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected HabitStats compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                HabitStats s = new HabitStats();
+                for (int i = from; i < to; i++) s.addDocument(jsonFactory, docs.get(i));
+                return s;
+            }
+            int mid = (from + to) >>> 1;
+            ParseTask left = new ParseTask(docs, from, mid);
+            left.fork();
+            HabitStats right = new ParseTask(docs, mid, to).compute();
+            right.add(left.join(), 1);
+            return right;
+        }
+    }
+}
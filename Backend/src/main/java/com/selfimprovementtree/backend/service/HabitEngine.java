@@ -0,0 +1,236 @@
+package com.selfimprovementtree.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.selfimprovementtree.backend.model.GameRules;
+import com.selfimprovementtree.backend.model.UserDataEntity;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Server-side game rules: applies a batch of player actions (habit check-ins, upgrades, shop purchases)
+ * to a user data document using the {@link GameRules} tables.
+ *
+ * A batch is all-or-nothing: the first invalid action throws {@link ActionRejectedException}
+ * and nothing is written. On success only what changed is returned.
+ */
+@Service
+public class HabitEngine {
+    private static final List<String> COUNTERS = List.of("coins", "gems", "exp", "decay");
+
+    private final GameRules rules;
+    private final UserDataService userDataService;
+    private final ObjectMapper mapper;
+
+    public HabitEngine(GameRules rules, UserDataService userDataService, ObjectMapper mapper) {
+        this.rules = rules;
+        this.userDataService = userDataService;
+        this.mapper = mapper;
+    }
+
+    /**
+     * @param today   client's local date (yyyy-MM-dd); a new day resets the daily check maps. May be null.
+     * @param actions e.g. {"type":"checkGood","habitId":"..."}, {"type":"upgrade","habitId":"...","stat":"goldLevel"},
+     *                {"type":"purchase","item":"fertilizer"}
+     * @return {version, delta: {counter: change}, set: {field: new value}}
+     */
+    public Map<String, Object> apply(String id, String today, List<Map<String, String>> actions) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        UserDataEntity saved = userDataService.apply(id, json -> {
+            ObjectNode before = parse(json);
+            ObjectNode doc = before.deepCopy();
+            if (today != null && compare(today, text(doc, "lastOpenDate")) > 0) {
+                doc.put("lastOpenDate", today);
+                doc.set("checkedGoodToday", mapper.createObjectNode());
+                doc.set("checkedBadToday", mapper.createObjectNode());
+            }
+            for (int i = 0; i < actions.size(); i++) {
+                try {
+                    applyOne(doc, actions.get(i));
+                } catch (IllegalArgumentException ex) {
+                    throw new ActionRejectedException(i, ex.getMessage());
+                }
+            }
+            diff(before, doc, result);
+            return write(doc);
+        });
+        result.put("version", saved.getVersion());
+        return result;
+    }
+
+    private void applyOne(ObjectNode doc, Map<String, String> action) {
+        String type = action.getOrDefault("type", "");
+        switch (type) {
+            case "checkGood" -> checkGood(doc, requireHabit(doc, "goodHabits", action.get("habitId")));
+            case "checkBad" -> checkBad(doc, requireHabit(doc, "badHabits", action.get("habitId")));
+            case "upgrade" -> upgrade(doc, action.get("habitId"), action.get("stat"));
+            case "purchase" -> purchase(doc, action.get("item"));
+            default -> throw new IllegalArgumentException("UNKNOWN_ACTION");
+        }
+    }
+
+    private void checkGood(ObjectNode doc, ObjectNode habit) {
+        markChecked(doc, "checkedGoodToday", "good:id:" + habit.get("id").asText());
+        int expGain = GameRules.at(rules.expGainByLevel(), habit.path("expLevel").asInt());
+        int coinGain = GameRules.at(rules.goldGainByLevel(), habit.path("goldLevel").asInt());
+
+        int stage = doc.path("treeStage").asInt(1);
+        int expToLevel = doc.path("expToLevel").asInt(GameRules.at(rules.expToNextStage(), stage - 1));
+        int exp = doc.path("exp").asInt() + expGain;
+        int gems = doc.path("gems").asInt();
+        boolean leveledUp = false;
+        while (exp >= expToLevel && stage < rules.maxTreeStage()) {
+            exp -= expToLevel;
+            stage++;
+            expToLevel = GameRules.at(rules.expToNextStage(), stage - 1);
+            gems += GameRules.at(rules.gemRewardByStage(), stage - 1);
+            leveledUp = true;
+        }
+        if (!leveledUp) exp = Math.min(exp, expToLevel);
+
+        doc.put("exp", exp);
+        doc.put("gems", gems);
+        doc.put("coins", doc.path("coins").asInt() + coinGain);
+        doc.put("treeStage", stage);
+        doc.put("expToLevel", expToLevel);
+    }
+
+    private void checkBad(ObjectNode doc, ObjectNode habit) {
+        markChecked(doc, "checkedBadToday", "bad:id:" + habit.get("id").asText());
+        int decayGain = GameRules.at(rules.decayGainByLevel(), habit.path("decayLevel").asInt());
+        int expLoss = GameRules.at(rules.expLossByLevel(), habit.path("expLossLevel").asInt());
+        doc.put("decay", Math.min(doc.path("decay").asInt() + decayGain, rules.maxDecay()));
+        doc.put("exp", Math.max(doc.path("exp").asInt() - expLoss, 0));
+    }
+
+    private void upgrade(ObjectNode doc, String habitId, String stat) {
+        boolean good = "expLevel".equals(stat) || "goldLevel".equals(stat);
+        boolean bad = "decayLevel".equals(stat) || "expLossLevel".equals(stat);
+        if (!good && !bad) throw new IllegalArgumentException("UNKNOWN_STAT");
+        ObjectNode habit = requireHabit(doc, good ? "goodHabits" : "badHabits", habitId);
+        int level = habit.path(stat).asInt();
+        if (level >= rules.maxHabitLevel()) throw new IllegalArgumentException("MAX_LEVEL");
+        int cost = GameRules.at(good ? rules.goodUpgradeCosts() : rules.badUpgradeCosts(), level);
+        spend(doc, "coins", cost);
+        habit.put(stat, level + 1);
+    }
+
+    private void purchase(ObjectNode doc, String itemName) {
+        GameRules.ShopItem item = itemName != null ? rules.shop().get(itemName) : null;
+        if (item == null) throw new IllegalArgumentException("UNKNOWN_ITEM");
+        int count = item.countField() != null ? doc.path(item.countField()).asInt() : 0;
+        if (item.maxPurchases() != null && count >= item.maxPurchases()) throw new IllegalArgumentException("SOLD_OUT");
+        if (item.costGems() > 0) spend(doc, "gems", item.costGems() + item.costStep() * count);
+        if (item.costCoins() > 0) spend(doc, "coins", item.costCoins() + item.costStep() * count);
+        if (item.countField() != null) doc.put(item.countField(), count + 1);
+        if (item.grantCoins() > 0) doc.put("coins", doc.path("coins").asInt() + item.grantCoins());
+        if (item.grantGems() > 0) doc.put("gems", doc.path("gems").asInt() + item.grantGems());
+        if (item.grantMaxGoodHabits() > 0) {
+            doc.put("maxGoodHabits", doc.path("maxGoodHabits").asInt(1) + item.grantMaxGoodHabits());
+        }
+        if (item.resetDecay()) doc.put("decay", 0);
+    }
+
+    private void spend(ObjectNode doc, String currency, int amount) {
+        int balance = doc.path(currency).asInt();
+        if (balance < amount) throw new IllegalArgumentException("NOT_ENOUGH_" + currency.toUpperCase(Locale.ROOT));
+        doc.put(currency, balance - amount);
+    }
+
+    private void markChecked(ObjectNode doc, String mapField, String key) {
+        JsonNode map = doc.get(mapField);
+        ObjectNode checks = map instanceof ObjectNode o ? o : doc.putObject(mapField);
+        if (checks.path(key).asBoolean()) throw new IllegalArgumentException("ALREADY_CHECKED");
+        checks.put(key, true);
+    }
+
+    private ObjectNode requireHabit(ObjectNode doc, String listField, String habitId) {
+        if (habitId != null) {
+            for (JsonNode h : doc.path(listField)) {
+                if (h instanceof ObjectNode o && habitId.equals(h.path("id").asText(null))) return o;
+            }
+        }
+        throw new IllegalArgumentException("HABIT_NOT_FOUND");
+    }
+
+    private void diff(ObjectNode before, ObjectNode after, Map<String, Object> result) {
+        Map<String, Object> delta = new LinkedHashMap<>();
+        Map<String, JsonNode> set = new LinkedHashMap<>();
+        Iterator<String> names = after.fieldNames();
+        while (names.hasNext()) {
+            String f = names.next();
+            JsonNode a = after.get(f);
+            JsonNode b = before.get(f);
+            if (Objects.equals(a, b)) continue;
+            if (COUNTERS.contains(f) && a.isNumber()) {
+                delta.put(f, a.asLong() - (b != null ? b.asLong() : 0));
+            } else if (a instanceof ArrayNode arr && b instanceof ArrayNode) {
+                set.put(f, changedHabits((ArrayNode) b, arr));
+            } else {
+                set.put(f, a);
+            }
+        }
+        result.put("delta", delta);
+        result.put("set", set);
+    }
+
+    // only the habits that changed, the client patches them by id
+    private ArrayNode changedHabits(ArrayNode before, ArrayNode after) {
+        Map<String, JsonNode> old = new HashMap<>();
+        for (JsonNode h : before) old.put(h.path("id").asText(), h);
+        ArrayNode out = mapper.createArrayNode();
+        for (JsonNode h : after) {
+            if (!h.equals(old.get(h.path("id").asText()))) out.add(h);
+        }
+        return out;
+    }
+
+    private ObjectNode parse(String json) {
+        if (json == null) return rules.defaults().deepCopy();
+        try {
+            JsonNode node = mapper.readTree(json);
+            if (node instanceof ObjectNode o) return o;
+        } catch (JsonProcessingException ignored) {
+            // fall through
+        }
+        throw new ActionRejectedException(-1, "INVALID_STORED_DOCUMENT");
+    }
+
+    private String write(ObjectNode doc) {
+        try {
+            return mapper.writeValueAsString(doc);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode v = node.get(field);
+        return v != null && !v.isNull() ? v.asText() : null;
+    }
+
+    private static int compare(String a, String b) {
+        if (b == null) return a == null ? 0 : 1;
+        return a == null ? -1 : a.compareTo(b);
+    }
+
+    /** A batch was refused; {@code index} is the offending action, -1 for the document itself. */
+    public static class ActionRejectedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int index;
+
+        public ActionRejectedException(int index, String message) {
+            super(message);
+            this.index = index;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.selfimprovementtree.backend.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.selfimprovementtree.backend.model.DayBitmap;
+import com.selfimprovementtree.backend.model.HabitHistoryEntity;
+import com.selfimprovementtree.backend.repo.HabitHistoryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Per-habit check-in history, so days survive the daily reset of checkedGoodToday/checkedBadToday.
+ *
+ * Every {@link UserDataChangedEvent} is compared with the previous document: keys that became checked add the
+ * document's lastOpenDate to that habit's {@link DayBitmap}, keys unchecked on the same day remove it. Current and
+ * best streak are stored next to the bitmap, so {@link #streaks} never decodes one.
+ */
+@Service
+public class HabitHistoryService {
+    private static final Logger log = LoggerFactory.getLogger(HabitHistoryService.class);
+
+    private final HabitHistoryRepository repo;
+    private final JsonFactory jsonFactory;
+
+    public HabitHistoryService(HabitHistoryRepository repo, ObjectMapper mapper) {
+        this.repo = repo;
+        this.jsonFactory = mapper.getFactory();
+    }
+
+    public record Streak(String habitId, String kind, int current, int best, String lastDay, int totalDays) {}
+
+    // UserDataService publishes under the id's write lock, so events of one id arrive in order
+    @EventListener
+    public void onChange(UserDataChangedEvent event) {
+        DayChecks now = DayChecks.read(jsonFactory, event.json());
+        if (now == null) return;
+        DayChecks before = DayChecks.read(jsonFactory, event.previousJson());
+        Set<String> added = new HashSet<>(now.checked);
+        Set<String> removed = new HashSet<>();
+        if (before != null && now.day == before.day) {
+            added.removeAll(before.checked);
+            removed.addAll(before.checked);
+            removed.removeAll(now.checked);
+        }
+        if (added.isEmpty() && removed.isEmpty()) return;
+        try {
+            record(event.id(), (int) now.day, added, removed);
+        } catch (RuntimeException ex) {
+            // the document itself is saved; a missed day only shortens a streak
+            log.warn("Recording habit history for {} failed", event.id(), ex);
+        }
+    }
+
+    /** @param today the caller's local date; a streak is current if its last day is today or yesterday */
+    public List<Streak> streaks(String userId, LocalDate today) {
+        long day = today.toEpochDay();
+        List<Streak> out = new ArrayList<>();
+        for (HabitHistoryRepository.StreakRow r : repo.findStreaksByUserId(userId)) {
+            if (r.getTotalDays() == 0) continue;
+            int current = day - r.getLastDay() <= 1 ? r.getCurrentStreak() : 0;
+            out.add(new Streak(r.getHabitId(), r.getKind(), current, r.getBestStreak(),
+                    LocalDate.ofEpochDay(r.getLastDay()).toString(), r.getTotalDays()));
+        }
+        out.sort(Comparator.comparing(Streak::habitId));
+        return out;
+    }
+
+    /**
+     * Check-ins per day of {@code year}, summed over the user's habits or for one habit only.
+     * Index 0 is January 1st.
+     */
+    public int[] calendar(String userId, String habitId, int year) {
+        LocalDate first = LocalDate.ofYearDay(year, 1);
+        int[] counts = new int[first.lengthOfYear()];
+        int from = (int) first.toEpochDay();
+        List<HabitHistoryEntity> rows = habitId != null
+                ? repo.findById(new HabitHistoryEntity.Key(userId, habitId)).map(List::of).orElse(List.of())
+                : repo.findByUserId(userId);
+        for (HabitHistoryEntity h : rows) DayBitmap.decode(h.getDays()).countInto(from, counts);
+        return counts;
+    }
+
+    public void deleteUsers(Collection<String> userIds) {
+        if (!userIds.isEmpty()) repo.deleteByUserIdIn(userIds);
+    }
+
+    private void record(String userId, int day, Set<String> added, Set<String> removed) {
+        Map<HabitHistoryEntity.Key, String[]> changes = new HashMap<>();
+        for (String key : added) parseKey(key, changes, userId);
+        for (String key : removed) parseKey(key, changes, userId);
+        Map<HabitHistoryEntity.Key, HabitHistoryEntity> rows = new HashMap<>();
+        for (HabitHistoryEntity h : repo.findAllById(changes.keySet())) {
+            rows.put(new HabitHistoryEntity.Key(h.getUserId(), h.getHabitId()), h);
+        }
+        List<HabitHistoryEntity> dirty = new ArrayList<>();
+        for (Map.Entry<HabitHistoryEntity.Key, String[]> c : changes.entrySet()) {
+            String kind = c.getValue()[0];
+            String habitId = c.getValue()[1];
+            boolean add = added.contains(c.getValue()[2]);
+            HabitHistoryEntity h = rows.get(c.getKey());
+            if (h == null) {
+                if (!add) continue;
+                h = new HabitHistoryEntity(userId, habitId, kind);
+            }
+            DayBitmap days = DayBitmap.decode(h.getDays());
+            if (!(add ? days.add(day) : days.remove(day))) continue;
+            h.setDays(days.encode());
+            h.setLastDay(days.isEmpty() ? 0 : days.lastDay());
+            h.setCurrentStreak(days.lastRunLength());
+            h.setBestStreak(days.longestRun());
+            h.setTotalDays(days.cardinality());
+            dirty.add(h);
+        }
+        repo.saveAll(dirty);
+    }
+
+    /** "good:id:abc" -> kind good, habit abc; other keys are ignored. */
+    private static void parseKey(String key, Map<HabitHistoryEntity.Key, String[]> out, String userId) {
+        String kind = key.startsWith("good:id:") ? "good" : key.startsWith("bad:id:") ? "bad" : null;
+        if (kind == null) return;
+        String habitId = key.substring(kind.length() + 4);
+        if (habitId.isEmpty() || habitId.length() > 128) return;
+        out.put(new HabitHistoryEntity.Key(userId, habitId), new String[]{kind, habitId, key});
+    }
+
+    /** The day a document's check maps belong to and the keys checked in them. */
+    private record DayChecks(long day, Set<String> checked) {
+        static DayChecks read(JsonFactory factory, String json) {
+            if (json == null) return null;
+            String date = null;
+            Set<String> checked = new HashSet<>();
+            try (JsonParser p = factory.createParser(json)) {
+                if (p.nextToken() != JsonToken.START_OBJECT) return null;
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = p.currentName();
+                    JsonToken value = p.nextToken();
+                    if ("lastOpenDate".equals(field) && value == JsonToken.VALUE_STRING) {
+                        date = p.getText();
+                    } else if (("checkedGoodToday".equals(field) || "checkedBadToday".equals(field))
+                            && value == JsonToken.START_OBJECT) {
+                        while (p.nextToken() == JsonToken.FIELD_NAME) {
+                            String key = p.currentName();
+                            if (p.nextToken() == JsonToken.VALUE_TRUE) checked.add(key);
+                            else p.skipChildren();
+                        }
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+            } catch (IOException ex) {
+                return null;
+            }
+            long day;
+            try {
+                day = date != null ? LocalDate.parse(date).toEpochDay() : LocalDate.now(ZoneOffset.UTC).toEpochDay();
+            } catch (DateTimeParseException ex) {
+                day = LocalDate.now(ZoneOffset.UTC).toEpochDay();
+            }
+            return day < 0 ? null : new DayChecks(day, checked);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.selfimprovementtree.backend.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Additive aggregate over user data documents, all primitive counters so that contributions can be
+ * added and subtracted (incremental updates) and merged (parallel scans).
+ * Levels and stages outside the tracked range are clamped into the last bucket.
+ */
+public final class HabitStats {
+    static final int LEVELS = 6;  // habit levels 0..5
+    static final int STAGES = 8;  // tree stages 1..7, index 0 unused
+
+    long documents;
+    long expSum;
+    long decaySum;
+    final long[] treeStage = new long[STAGES];
+    final long[] goodByLevel = new long[LEVELS];
+    final long[] goodCheckedByLevel = new long[LEVELS];
+    final long[] badByLevel = new long[LEVELS];
+    final long[] badCheckedByLevel = new long[LEVELS];
+
+    /** this += sign * other */
+    void add(HabitStats o, int sign) {
+        documents += sign * o.documents;
+        expSum += sign * o.expSum;
+        decaySum += sign * o.decaySum;
+        for (int i = 0; i < STAGES; i++) treeStage[i] += sign * o.treeStage[i];
+        for (int i = 0; i < LEVELS; i++) {
+            goodByLevel[i] += sign * o.goodByLevel[i];
+            goodCheckedByLevel[i] += sign * o.goodCheckedByLevel[i];
+            badByLevel[i] += sign * o.badByLevel[i];
+            badCheckedByLevel[i] += sign * o.badCheckedByLevel[i];
+        }
+    }
+
+    HabitStats copy() {
+        HabitStats c = new HabitStats();
+        c.add(this, 1);
+        return c;
+    }
+
+    /**
+     * Adds one document's contribution using a streaming parser (no tree is built).
+     * Malformed documents contribute nothing.
+     */
+    void addDocument(JsonFactory factory, String json) {
+        if (json == null) return;
+        HabitStats one = new HabitStats();
+        List<String> goodIds = new ArrayList<>();
+        List<String> badIds = new ArrayList<>();
+        Set<String> checked = new HashSet<>();
+        try (JsonParser p = factory.createParser(json)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) return;
+            int stage = 1;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                switch (field) {
+                    case "exp" -> one.expSum = value.isNumeric() ? p.getLongValue() : 0;
+                    case "decay" -> one.decaySum = value.isNumeric() ? p.getLongValue() : 0;
+                    case "treeStage" -> stage = value.isNumeric() ? p.getIntValue() : 1;
+                    case "goodHabits" -> readHabits(p, "expLevel", goodIds, one.goodByLevel);
+                    case "badHabits" -> readHabits(p, "decayLevel", badIds, one.badByLevel);
+                    case "checkedGoodToday", "checkedBadToday" -> readChecks(p, checked);
+                    default -> p.skipChildren();
+                }
+            }
+            one.documents = 1;
+            one.treeStage[clamp(stage, 1, STAGES - 1)]++;
+        } catch (IOException ex) {
+            return;
+        }
+        // ids were recorded as "level:id" so checks can be attributed once both parts are known
+        countChecked(goodIds, "good:id:", checked, one.goodCheckedByLevel);
+        countChecked(badIds, "bad:id:", checked, one.badCheckedByLevel);
+        add(one, 1);
+    }
+
+    private static void readHabits(JsonParser p, String levelField, List<String> ids, long[] byLevel) throws IOException {
+        if (p.currentToken() != JsonToken.START_ARRAY) {
+            p.skipChildren();
+            return;
+        }
+        while (p.nextToken() == JsonToken.START_OBJECT) {
+            String id = null;
+            int level = 0;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String f = p.currentName();
+                JsonToken v = p.nextToken();
+                if ("id".equals(f) && v == JsonToken.VALUE_STRING) id = p.getText();
+                else if (levelField.equals(f) && v.isNumeric()) level = p.getIntValue();
+                else p.skipChildren();
+            }
+            level = clamp(level, 0, LEVELS - 1);
+            byLevel[level]++;
+            if (id != null) ids.add(level + ":" + id);
+        }
+    }
+
+    private static void readChecks(JsonParser p, Set<String> checked) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return;
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String key = p.currentName();
+            if (p.nextToken() == JsonToken.VALUE_TRUE) checked.add(key);
+            else p.skipChildren();
+        }
+    }
+
+    private static void countChecked(List<String> levelIds, String prefix, Set<String> checked, long[] out) {
+        for (String levelId : levelIds) {
+            int sep = levelId.indexOf(':');
+            if (checked.contains(prefix + levelId.substring(sep + 1))) {
+                out[Integer.parseInt(levelId, 0, sep, 10)]++;
+            }
+        }
+    }
+
+    private static int clamp(int v, int min, int max) {
+        return Math.max(min, Math.min(v, max));
+    }
+
+    /** Flattens into name -> value rows for the habit_stat table. */
+    Map<String, Long> toRows() {
+        Map<String, Long> rows = new LinkedHashMap<>();
+        rows.put("documents", documents);
+        rows.put("expSum", expSum);
+        rows.put("decaySum", decaySum);
+        for (int i = 1; i < STAGES; i++) rows.put("treeStage." + i, treeStage[i]);
+        for (int i = 0; i < LEVELS; i++) {
+            rows.put("good." + i, goodByLevel[i]);
+            rows.put("goodChecked." + i, goodCheckedByLevel[i]);
+            rows.put("bad." + i, badByLevel[i]);
+            rows.put("badChecked." + i, badCheckedByLevel[i]);
+        }
+        return rows;
+    }
+
+    static HabitStats fromRows(Map<String, Long> rows) {
+        HabitStats s = new HabitStats();
+        s.documents = rows.getOrDefault("documents", 0L);
+        s.expSum = rows.getOrDefault("expSum", 0L);
+        s.decaySum = rows.getOrDefault("decaySum", 0L);
+        for (int i = 1; i < STAGES; i++) s.treeStage[i] = rows.getOrDefault("treeStage." + i, 0L);
+        for (int i = 0; i < LEVELS; i++) {
+            s.goodByLevel[i] = rows.getOrDefault("good." + i, 0L);
+            s.goodCheckedByLevel[i] = rows.getOrDefault("goodChecked." + i, 0L);
+            s.badByLevel[i] = rows.getOrDefault("bad." + i, 0L);
+            s.badCheckedByLevel[i] = rows.getOrDefault("badChecked." + i, 0L);
+        }
+        return s;
+    }
+
+    /** Dashboard view: averages, distribution and per-level check-in rates for today. */
+    Map<String, Object> summary() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("documents", documents);
+        out.put("averageExp", documents == 0 ? 0 : (double) expSum / documents);
+        out.put("averageDecay", documents == 0 ? 0 : (double) decaySum / documents);
+        Map<String, Long> stages = new LinkedHashMap<>();
+        for (int i = 1; i < STAGES; i++) stages.put(Integer.toString(i), treeStage[i]);
+        out.put("treeStageDistribution", stages);
+        out.put("goodHabitCompletionByExpLevel", rates(goodCheckedByLevel, goodByLevel));
+        out.put("badHabitCheckRateByDecayLevel", rates(badCheckedByLevel, badByLevel));
+        return out;
+    }
+
+    private static Map<String, Object> rates(long[] checked, long[] total) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        for (int i = 0; i < total.length; i++) {
+            out.put(Integer.toString(i), Map.of("habits", total[i], "checked", checked[i],
+                    "rate", total[i] == 0 ? 0d : (double) checked[i] / total[i]));
+        }
+        return out;
+    }
+}
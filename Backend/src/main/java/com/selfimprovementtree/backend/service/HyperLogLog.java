@@ -0,0 +1,143 @@
+package com.selfimprovementtree.backend.service;
+
+import com.selfimprovementtree.backend.model.Hash64;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Distinct-count sketch: 2^14 six-bit registers, about 0.8% standard error at any cardinality.
+ *
+ * Two sketches merge by taking the larger register, which gives exactly the sketch of the union, so days fold
+ * into weeks and months without keeping any ids; adding the same key twice changes nothing. Small cardinalities
+ * use linear counting over the empty registers.
+ * {@link #toBytes} picks the smaller of a sparse (index gap, value) list and the packed registers (12 KB).
+ * Adds take the lock only when a register actually grows, which is rare once a key has been seen.
+ */
+public final class HyperLogLog {
+    public static final int PRECISION = 14;
+    private static final int M = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / M);
+    private static final int SPARSE = 0;
+    private static final int DENSE = 1;
+    private static final int PACKED = M * 6 / 8;
+
+    private final byte[] registers = new byte[M];
+
+    public static double standardError() {
+        return 1.04 / Math.sqrt(M);
+    }
+
+    /** {@link Hash64#hash}, so the bits the registers use are well spread even for similar ids. */
+    public static long hash(String key) {
+        return Hash64.hash(key);
+    }
+
+    /** @return whether the sketch changed */
+    public boolean add(long hash) {
+        int index = (int) (hash >>> (64 - PRECISION));
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1);
+        if (registers[index] >= rank) return false;
+        synchronized (this) {
+            if (registers[index] >= rank) return false;
+            registers[index] = rank;
+            return true;
+        }
+    }
+
+    public synchronized void merge(HyperLogLog other) {
+        for (int i = 0; i < M; i++) {
+            if (other.registers[i] > registers[i]) registers[i] = other.registers[i];
+        }
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (int i = 0; i < M; i++) {
+            byte r = registers[i];
+            if (r == 0) zeros++;
+            sum += Double.longBitsToDouble((1023L - r) << 52); // 2^-r
+        }
+        double raw = ALPHA * M * (double) M / sum;
+        // the raw estimate runs high up to a few times m; linear counting over the empty registers does not
+        if (zeros > 0) {
+            double linear = M * Math.log((double) M / zeros);
+            if (linear <= 3 * M) return Math.round(linear);
+        }
+        return Math.round(raw);
+    }
+
+    public synchronized byte[] toBytes() {
+        int used = 0;
+        for (int i = 0; i < M; i++) {
+            if (registers[i] != 0) used++;
+        }
+        // a sparse entry takes at least two bytes
+        if (used * 2 < PACKED) {
+            ByteArrayOutputStream sparse = new ByteArrayOutputStream(2 + used * 3);
+            sparse.write(SPARSE);
+            sparse.write(PRECISION);
+            int last = -1;
+            for (int i = 0; i < M; i++) {
+                if (registers[i] == 0) continue;
+                writeVarint(sparse, i - last - 1);
+                sparse.write(registers[i]);
+                last = i;
+            }
+            if (sparse.size() < 2 + PACKED) return sparse.toByteArray();
+        }
+
+        byte[] out = new byte[2 + PACKED];
+        out[0] = DENSE;
+        out[1] = PRECISION;
+        for (int i = 0; i < M; i++) {
+            int bit = i * 6;
+            int v = registers[i] & 0x3F;
+            out[2 + (bit >>> 3)] |= (byte) (v << (bit & 7));
+            if ((bit & 7) > 2) out[3 + (bit >>> 3)] |= (byte) (v >>> (8 - (bit & 7)));
+        }
+        return out;
+    }
+
+    /** @throws IllegalArgumentException for bytes not written by {@link #toBytes} at this precision */
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        HyperLogLog h = new HyperLogLog();
+        if (bytes == null || bytes.length == 0) return h;
+        if (bytes.length < 2 || bytes[1] != PRECISION) throw new IllegalArgumentException("Unsupported sketch");
+        if (bytes[0] == SPARSE) {
+            int[] pos = {2};
+            int i = -1;
+            while (pos[0] < bytes.length) {
+                i += readVarint(bytes, pos) + 1;
+                h.registers[i] = bytes[pos[0]++];
+            }
+        } else if (bytes[0] == DENSE && bytes.length == 2 + PACKED) {
+            for (int i = 0; i < M; i++) {
+                int bit = i * 6;
+                int v = (bytes[2 + (bit >>> 3)] & 0xFF) >>> (bit & 7);
+                if ((bit & 7) > 2) v |= (bytes[3 + (bit >>> 3)] & 0xFF) << (8 - (bit & 7));
+                h.registers[i] = (byte) (v & 0x3F);
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported sketch");
+        }
+        return h;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int v) {
+        while ((v & ~0x7F) != 0) {
+            out.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    private static int readVarint(byte[] b, int[] pos) {
+        int v = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte x = b[pos[0]++];
+            v |= (x & 0x7F) << shift;
+            if (x >= 0) return v;
+        }
+    }
+}
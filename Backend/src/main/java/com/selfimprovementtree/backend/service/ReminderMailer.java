@@ -0,0 +1,224 @@
+package com.selfimprovementtree.backend.service;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMailMessage;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulk mail delivery for reminders, separate from the one-off sends in {@link AuthService}.
+ *
+ * {@code app.reminders.mail.connections} worker threads each drain up to {@code batch-size} messages from a
+ * bounded queue. With a {@link JavaMailSenderImpl} every worker keeps its own SMTP connection open between
+ * batches and closes it after {@code idle-ms} without mail; other senders get the batch through
+ * {@link JavaMailSender#send(SimpleMailMessage...)}. A shared token bucket keeps the total at {@code max-per-second}.
+ * {@link #enqueue} blocks while the queue is full, which slows the producer down instead of dropping mail.
+ * Each message over a kept connection is a {@link FlightEvents.Mail} "reminder" event, each batch handed to
+ * another sender one "reminder-batch" event.
+ */
+@Component
+public class ReminderMailer {
+    private static final Logger log = LoggerFactory.getLogger(ReminderMailer.class);
+
+    private final JavaMailSender mailSender;
+    private final BlockingQueue<SimpleMailMessage> queue;
+    private final int batchSize;
+    private final double maxPerSecond;
+    private final long idleMs;
+    private final List<Thread> workers = new ArrayList<>();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    // token bucket, guarded by this
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+
+    private volatile boolean running = true;
+
+    public ReminderMailer(JavaMailSender mailSender,
+                          @Value("${app.reminders.mail.connections:4}") int connections,
+                          @Value("${app.reminders.mail.batch-size:50}") int batchSize,
+                          @Value("${app.reminders.mail.max-per-second:20}") double maxPerSecond,
+                          @Value("${app.reminders.mail.queue-size:10000}") int queueSize,
+                          @Value("${app.reminders.mail.idle-ms:30000}") long idleMs) {
+        this.mailSender = mailSender;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.batchSize = batchSize;
+        this.maxPerSecond = maxPerSecond;
+        this.idleMs = idleMs;
+        for (int i = 0; i < connections; i++) {
+            Thread t = new Thread(this::work, "reminder-mail-" + (i + 1));
+            t.setDaemon(true);
+            t.start();
+            workers.add(t);
+        }
+    }
+
+    public void enqueue(SimpleMailMessage message) throws InterruptedException {
+        queue.put(message);
+    }
+
+    public int queued() {
+        return queue.size();
+    }
+
+    public long sent() {
+        return sent.get();
+    }
+
+    public long failed() {
+        return failed.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+    }
+
+    private void work() {
+        List<SimpleMailMessage> batch = new ArrayList<>(batchSize);
+        Connection connection = mailSender instanceof JavaMailSenderImpl impl ? new Connection(impl) : null;
+        long lastSend = 0;
+        try {
+            while (running) {
+                SimpleMailMessage first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    if (connection != null && System.currentTimeMillis() - lastSend > idleMs) connection.close();
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                acquire(batch.size());
+                if (connection != null) connection.send(batch);
+                else send(batch);
+                lastSend = System.currentTimeMillis();
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (connection != null) connection.close();
+        }
+    }
+
+    /** One worker's SMTP connection, opened on first use and reopened after an error. */
+    private final class Connection {
+        private final JavaMailSenderImpl sender;
+        private Transport transport;
+
+        Connection(JavaMailSenderImpl sender) {
+            this.sender = sender;
+        }
+
+        void send(List<SimpleMailMessage> batch) {
+            int done = 0;
+            try {
+                for (SimpleMailMessage simple : batch) {
+                    FlightEvents.Mail event = new FlightEvents.Mail("reminder");
+                    event.payloadBytes = textLength(simple);
+                    event.begin();
+                    try {
+                        if (transport == null || !transport.isConnected()) open();
+                        MimeMessage message = sender.createMimeMessage();
+                        simple.copyTo(new MimeMailMessage(message));
+                        message.saveChanges();
+                        transport.sendMessage(message, message.getAllRecipients());
+                    } catch (MessagingException | MailException ex) {
+                        event.fail(ex);
+                        throw ex;
+                    } finally {
+                        event.commit();
+                    }
+                    done++;
+                }
+                sent.addAndGet(done);
+            } catch (MessagingException | MailException ex) {
+                // the failing message is counted, the rest of the batch goes through a fresh connection
+                sent.addAndGet(done);
+                failed.incrementAndGet();
+                log.warn("Reminder mail failed after {} of {} in batch: {}", done, batch.size(), ex.getMessage());
+                close();
+                if (done + 1 < batch.size()) send(batch.subList(done + 1, batch.size()));
+            }
+        }
+
+        private void open() throws MessagingException {
+            transport = sender.getSession().getTransport(sender.getProtocol() != null ? sender.getProtocol() : "smtp");
+            transport.connect(sender.getHost(), sender.getPort(), sender.getUsername(), sender.getPassword());
+        }
+
+        void close() {
+            if (transport == null) return;
+            try {
+                transport.close();
+            } catch (MessagingException ex) {
+                log.debug("Closing reminder SMTP connection: {}", ex.getMessage());
+            }
+            transport = null;
+        }
+    }
+
+    private void send(List<SimpleMailMessage> batch) {
+        FlightEvents.Mail event = new FlightEvents.Mail("reminder-batch");
+        for (SimpleMailMessage simple : batch) event.payloadBytes += textLength(simple);
+        event.begin();
+        try {
+            mailSender.send(batch.toArray(new SimpleMailMessage[0]));
+            sent.addAndGet(batch.size());
+        } catch (MailSendException ex) {
+            event.fail(ex);
+            // some messages of the batch may have gone out
+            int failures = Math.max(1, ex.getFailedMessages().size());
+            failed.addAndGet(failures);
+            sent.addAndGet(batch.size() - failures);
+            log.warn("Reminder batch: {} of {} messages failed: {}", failures, batch.size(), ex.getMessage());
+        } catch (MailException ex) {
+            event.fail(ex);
+            failed.addAndGet(batch.size());
+            log.warn("Reminder batch of {} failed: {}", batch.size(), ex.getMessage());
+        } finally {
+            event.commit();
+        }
+    }
+
+    private static int textLength(SimpleMailMessage msg) {
+        return msg.getText() != null ? msg.getText().length() : 0;
+    }
+
+    private void acquire(int permits) throws InterruptedException {
+        if (maxPerSecond <= 0) return;
+        while (true) {
+            long waitMs;
+            synchronized (this) {
+                long now = System.nanoTime();
+                // at most one second of burst
+                tokens = Math.min(Math.max(maxPerSecond, batchSize), tokens + (now - refilledAt) / 1e9 * maxPerSecond);
+                refilledAt = now;
+                if (tokens >= permits) {
+                    tokens -= permits;
+                    return;
+                }
+                waitMs = (long) Math.ceil((permits - tokens) / maxPerSecond * 1000);
+            }
+            Thread.sleep(waitMs);
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package com.selfimprovementtree.backend.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.selfimprovementtree.backend.model.HabitReminder;
+import com.selfimprovementtree.backend.repo.HabitReminderRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Daily reminder mails for accounts with unchecked good habits.
+ *
+ * Every enabled schedule sits in a {@link TimingWheel} keyed by account id, loaded page by page at start-up and
+ * then kept current from rows changed since the last poll (and directly by {@link #save}). A one-second tick
+ * moves expired ids to a dispatcher thread, which looks them up in batches through a projection of
+ * {@link HabitReminder} (day, good habits, unchecked good habits), maintained on every user data write,
+ * so no user_data document is read. Mails go out through {@link ReminderMailer}.
+ */
+@Service
+@Lazy(false) // the wheel is loaded at start-up and ticks on a schedule
+public class ReminderService {
+    private static final Logger log = LoggerFactory.getLogger(ReminderService.class);
+    private static final int PAGE = 1000;
+    private static final int MINUTE_BITS = 11;
+
+    public record Settings(boolean enabled, String time, String zone) {}
+
+    private final HabitReminderRepository repo;
+    private final ReminderMailer mailer;
+    private final UserDataService userData;
+    private final JsonFactory jsonFactory;
+
+    @Value("${app.reminders.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.reminders.poll-overlap-ms:5000}")
+    private long pollOverlapMs;
+
+    // at start-up, reminders whose time passed this recently still go out today
+    @Value("${app.reminders.catch-up-ms:900000}")
+    private long catchUpMs;
+
+    @Value("${app.reminders.mail.from:selfimprovementtree@gmail.com}")
+    private String from;
+
+    // guarded by itself
+    private final TimingWheel wheel = new TimingWheel(1000, 5, System.currentTimeMillis());
+    // zone ids interned into the wheel tag next to the minute of day; guarded by wheel
+    private final List<ZoneId> zones = new ArrayList<>();
+    private final Map<ZoneId, Integer> zoneIndex = new HashMap<>();
+    private volatile boolean loaded;
+    private long pollMark;
+
+    // ids due for dispatch, guarded by this
+    private long[] due = new long[1024];
+    private int dueCount;
+    private Thread dispatcher;
+    // one thread, so a later write's counts always land after an earlier one's
+    private final ExecutorService statusUpdates = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "reminder-status");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ReminderService(HabitReminderRepository repo, ReminderMailer mailer, UserDataService userData, ObjectMapper mapper) {
+        this.repo = repo;
+        this.mailer = mailer;
+        this.userData = userData;
+        this.jsonFactory = mapper.getFactory();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) return;
+        dispatcher = new Thread(this::dispatchLoop, "reminder-dispatch");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        Thread loader = new Thread(this::load, "reminder-load");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (dispatcher != null) dispatcher.interrupt();
+        statusUpdates.shutdown();
+    }
+
+    public Optional<Settings> get(long userId) {
+        return repo.findById(userId).map(r -> new Settings(r.isEnabled(),
+                LocalTime.ofSecondOfDay(r.getMinuteOfDay() * 60L).toString(), r.getZone()));
+    }
+
+    /** @throws IllegalArgumentException for a time that is not HH:mm or an unknown zone */
+    public Settings save(long userId, boolean on, String time, String zone) {
+        int minute;
+        ZoneId zoneId;
+        try {
+            LocalTime t = LocalTime.parse(time);
+            minute = t.getHour() * 60 + t.getMinute();
+            zoneId = ZoneId.of(zone);
+        } catch (DateTimeException | NullPointerException ex) {
+            throw new IllegalArgumentException("INVALID_INPUT");
+        }
+        HabitReminder r = repo.findById(userId).orElseGet(() -> new HabitReminder(userId));
+        r.setEnabled(on);
+        r.setMinuteOfDay(minute);
+        r.setZone(zoneId.getId());
+        r.setUpdatedAt(System.currentTimeMillis());
+        // start from the stored document; later writes keep the projection current
+        userData.get(Long.toString(userId)).ifPresent(e -> {
+            int[] status = status(e.getJson());
+            if (status != null) {
+                r.setStatusDay(status[0]);
+                r.setGoodHabits(status[1]);
+                r.setUncheckedGood(status[2]);
+            }
+        });
+        repo.save(r);
+        apply(userId, on, minute, zoneId.getId(), System.currentTimeMillis());
+        return new Settings(on, LocalTime.ofSecondOfDay(minute * 60L).toString(), zoneId.getId());
+    }
+
+    public void delete(long userId) {
+        if (repo.existsById(userId)) repo.deleteById(userId);
+        synchronized (wheel) {
+            wheel.cancel(userId);
+        }
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        synchronized (wheel) {
+            m.put("scheduled", wheel.size());
+        }
+        synchronized (this) {
+            m.put("due", dueCount);
+        }
+        m.put("loaded", loaded);
+        m.put("mailQueued", mailer.queued());
+        m.put("mailSent", mailer.sent());
+        m.put("mailFailed", mailer.failed());
+        return m;
+    }
+
+    /**
+     * Keeps the projection current. Only accounts with a reminder are looked at, and off the writer's thread:
+     * the document is parsed on the status thread, in write order, and the update is a no-op unless the counts
+     * changed.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChange(UserDataChangedEvent event) {
+        long userId;
+        try {
+            userId = Long.parseLong(event.id());
+        } catch (NumberFormatException ex) {
+            return; // guests have no reminders
+        }
+        synchronized (wheel) {
+            if (!wheel.contains(userId)) return;
+        }
+        String json = event.json();
+        statusUpdates.execute(() -> {
+            int[] now = status(json);
+            if (now != null) repo.updateStatus(userId, now[0], now[1], now[2]);
+        });
+    }
+
+    @Scheduled(fixedRate = 1000)
+    public void tick() {
+        if (!enabled) return;
+        long now = System.currentTimeMillis();
+        synchronized (wheel) {
+            wheel.advance(now, (id, tag) -> {
+                addDue(id);
+                // at least a minute on, so a late tick cannot fire the same reminder twice
+                wheel.schedule(id, nextAt(tag, now + 60_000), tag);
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.reminders.poll-ms:30000}")
+    public void poll() {
+        if (!enabled || !loaded) return;
+        long mark = pollMark;
+        for (HabitReminderRepository.Schedule s : repo.findSchedulesUpdatedSince(mark - pollOverlapMs)) {
+            apply(s.userId(), s.enabled(), s.minuteOfDay(), s.zone(), System.currentTimeMillis());
+            mark = Math.max(mark, s.updatedAt());
+        }
+        pollMark = mark;
+    }
+
+    private void load() {
+        long start = System.currentTimeMillis();
+        pollMark = start;
+        long from = start - catchUpMs;
+        long after = 0;
+        int total = 0;
+        while (true) {
+            List<HabitReminderRepository.Schedule> page = repo.pageSchedules(after, Limit.of(PAGE));
+            if (page.isEmpty()) break;
+            for (HabitReminderRepository.Schedule s : page) {
+                apply(s.userId(), s.enabled(), s.minuteOfDay(), s.zone(), from);
+                after = s.userId();
+            }
+            total += page.size();
+        }
+        loaded = true;
+        log.info("Loaded {} reminder schedules in {} ms", total, System.currentTimeMillis() - start);
+    }
+
+    /** Schedules the first occurrence after {@code fromMs}; one already past fires on the next tick. */
+    private void apply(long userId, boolean on, int minute, String zone, long fromMs) {
+        synchronized (wheel) {
+            if (!on) {
+                wheel.cancel(userId);
+                return;
+            }
+            ZoneId zoneId;
+            try {
+                zoneId = ZoneId.of(zone);
+            } catch (DateTimeException ex) {
+                wheel.cancel(userId);
+                return;
+            }
+            int tag = zoneIndex.computeIfAbsent(zoneId, z -> {
+                zones.add(z);
+                return zones.size() - 1;
+            }) << MINUTE_BITS | minute;
+            wheel.schedule(userId, nextAt(tag, fromMs), tag);
+        }
+    }
+
+    /** The first time after {@code afterMs} at which the tag's local minute of day comes round; holds wheel. */
+    private long nextAt(int tag, long afterMs) {
+        ZoneId zone = zones.get(tag >>> MINUTE_BITS);
+        int minute = tag & ((1 << MINUTE_BITS) - 1);
+        ZonedDateTime after = ZonedDateTime.ofInstant(Instant.ofEpochMilli(afterMs), zone);
+        ZonedDateTime at = after.toLocalDate().atTime(minute / 60, minute % 60).atZone(zone);
+        if (!at.isAfter(after)) at = after.toLocalDate().plusDays(1).atTime(minute / 60, minute % 60).atZone(zone);
+        return at.toInstant().toEpochMilli();
+    }
+
+    private synchronized void addDue(long id) {
+        if (dueCount == due.length) due = Arrays.copyOf(due, due.length * 2);
+        due[dueCount++] = id;
+        if (dueCount == 1) notifyAll();
+    }
+
+    private synchronized long[] takeDue() throws InterruptedException {
+        while (dueCount == 0) wait();
+        long[] batch = Arrays.copyOf(due, dueCount);
+        dueCount = 0;
+        if (due.length > 1024) due = new long[1024];
+        return batch;
+    }
+
+    private void dispatchLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                long[] ids = takeDue();
+                for (int i = 0; i < ids.length; i += PAGE) {
+                    List<Long> chunk = new ArrayList<>(Math.min(PAGE, ids.length - i));
+                    for (int j = i; j < Math.min(i + PAGE, ids.length); j++) chunk.add(ids[j]);
+                    dispatch(chunk);
+                }
+            } catch (InterruptedException ex) {
+                return;
+            } catch (RuntimeException ex) {
+                log.warn("Reminder dispatch failed", ex);
+            }
+        }
+    }
+
+    private void dispatch(List<Long> ids) throws InterruptedException {
+        Map<Integer, List<Long>> sentByDay = new HashMap<>();
+        for (HabitReminderRepository.Due d : repo.findDue(ids)) {
+            int today;
+            try {
+                today = (int) LocalDate.now(ZoneId.of(d.zone())).toEpochDay();
+            } catch (DateTimeException ex) {
+                continue;
+            }
+            if (d.lastSentDay() == today || d.email() == null) continue;
+            // a document still on an earlier day has nothing checked today
+            int unchecked = d.statusDay() >= today ? d.uncheckedGood() : d.goodHabits();
+            if (unchecked <= 0) continue;
+            SimpleMailMessage msg = new SimpleMailMessage();
+            msg.setTo(d.email());
+            msg.setFrom(from);
+            msg.setSubject(unchecked == 1
+                    ? "Self-Improvement Tree: 1 habit left today"
+                    : "Self-Improvement Tree: " + unchecked + " habits left today");
+            msg.setText("Your tree is waiting: " + unchecked + (unchecked == 1 ? " habit is" : " habits are")
+                    + " still unchecked today.\n\nYou can change or turn off reminders in the app.");
+            mailer.enqueue(msg);
+            sentByDay.computeIfAbsent(today, k -> new ArrayList<>()).add(d.userId());
+        }
+        sentByDay.forEach((day, sent) -> repo.markSent(sent, day));
+    }
+
+    /** {lastOpenDate as epoch day, good habits, unchecked good habits}, or null if the document is unreadable. */
+    private int[] status(String json) {
+        if (json == null) return null;
+        int day = (int) LocalDate.now(ZoneOffset.UTC).toEpochDay();
+        int good = 0;
+        Set<String> goodIds = new HashSet<>();
+        Set<String> checked = new HashSet<>();
+        try (JsonParser p = jsonFactory.createParser(json)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) return null;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                if ("lastOpenDate".equals(field) && value == JsonToken.VALUE_STRING) {
+                    try {
+                        day = (int) LocalDate.parse(p.getText()).toEpochDay();
+                    } catch (DateTimeParseException ignored) {
+                        // keep today
+                    }
+                } else if ("goodHabits".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (p.nextToken() == JsonToken.START_OBJECT) {
+                        good++;
+                        while (p.nextToken() == JsonToken.FIELD_NAME) {
+                            JsonToken v = p.nextToken();
+                            if ("id".equals(p.currentName()) && v == JsonToken.VALUE_STRING) goodIds.add(p.getText());
+                            else p.skipChildren();
+                        }
+                    }
+                } else if ("checkedGoodToday".equals(field) && value == JsonToken.START_OBJECT) {
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String key = p.currentName();
+                        if (p.nextToken() == JsonToken.VALUE_TRUE && key.startsWith("good:id:")) checked.add(key.substring(8));
+                        else p.skipChildren();
+                    }
+                } else {
+                    p.skipChildren();
+                }
+            }
+        } catch (IOException ex) {
+            return null;
+        }
+        checked.retainAll(goodIds);
+        return new int[]{day, good, Math.max(0, good - checked.size())};
+    }
+}
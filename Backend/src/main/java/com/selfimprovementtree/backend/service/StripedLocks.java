@@ -0,0 +1,23 @@
+package com.selfimprovementtree.backend.service;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed pool of locks indexed by key hash, so writers of the same user data serialize
+ * without a lock object per id (and without holding DB row locks while merging).
+ */
+public final class StripedLocks {
+    private final ReentrantLock[] locks;
+
+    public StripedLocks(int stripes) {
+        int n = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        locks = new ReentrantLock[n];
+        for (int i = 0; i < n; i++) locks[i] = new ReentrantLock();
+    }
+
+    public ReentrantLock get(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return locks[h & (locks.length - 1)];
+    }
+}
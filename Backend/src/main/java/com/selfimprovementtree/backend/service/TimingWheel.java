@@ -0,0 +1,149 @@
+package com.selfimprovementtree.backend.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hierarchical timing wheel of ids with deadlines, not thread-safe.
+ *
+ * Each level has 64 slots; level 0 slots are one tick wide, level n slots 64^n ticks. An id sits at the level of
+ * the highest base-64 digit in which its deadline tick differs from the current tick, in the slot of that digit.
+ * When the lower digits of the current tick roll over to zero, the matching slot one level up is emptied and its
+ * ids move down. Schedule, cancel and expiry are O(1) no matter how many ids are waiting; with 5 levels and
+ * one-second ticks the wheel spans 34 years. Every id carries an int tag for the caller, handed back on expiry.
+ */
+public final class TimingWheel {
+    @FunctionalInterface
+    public interface Expired {
+        void accept(long id, int tag);
+    }
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+
+    private static final class Node {
+        final long id;
+        int tag;
+        long deadlineTick;
+        Node prev;
+        Node next;
+        int bucket = -1;
+
+        Node(long id) {
+            this.id = id;
+        }
+    }
+
+    private final long tickMs;
+    private final int levels;
+    // bucket heads, level * SLOTS + slot
+    private final Node[] buckets;
+    private final Map<Long, Node> nodes = new HashMap<>();
+    private long currentTick;
+
+    public TimingWheel(long tickMs, int levels, long startMs) {
+        this.tickMs = tickMs;
+        this.levels = levels;
+        this.buckets = new Node[levels * SLOTS];
+        this.currentTick = startMs / tickMs;
+    }
+
+    /** Schedules {@code id}, replacing any deadline it had. A deadline in the past expires on the next advance. */
+    public void schedule(long id, long deadlineMs, int tag) {
+        Node n = nodes.get(id);
+        if (n == null) {
+            n = new Node(id);
+            nodes.put(id, n);
+        } else {
+            unlink(n);
+        }
+        n.tag = tag;
+        n.deadlineTick = Math.max(deadlineMs / tickMs, currentTick + 1);
+        place(n);
+    }
+
+    public boolean cancel(long id) {
+        Node n = nodes.remove(id);
+        if (n == null) return false;
+        unlink(n);
+        return true;
+    }
+
+    public boolean contains(long id) {
+        return nodes.containsKey(id);
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Moves the wheel to {@code nowMs}, handing every id whose deadline has passed to {@code expired}
+     * (which may schedule it again). Returns how many expired.
+     */
+    public int advance(long nowMs, Expired expired) {
+        long target = nowMs / tickMs;
+        int fired = 0;
+        while (currentTick < target) {
+            currentTick++;
+            for (int level = 1; level < levels; level++) {
+                if ((currentTick & ((1L << (BITS * level)) - 1)) != 0) break;
+                cascade(level * SLOTS + (int) ((currentTick >>> (BITS * level)) & MASK));
+            }
+            int bucket = (int) (currentTick & MASK);
+            Node n = detach(bucket);
+            while (n != null) {
+                Node next = n.next;
+                n.prev = n.next = null;
+                n.bucket = -1;
+                if (n.deadlineTick > currentTick) {
+                    place(n); // was beyond the top level's span
+                } else {
+                    nodes.remove(n.id);
+                    expired.accept(n.id, n.tag);
+                    fired++;
+                }
+                n = next;
+            }
+        }
+        return fired;
+    }
+
+    private void cascade(int bucket) {
+        Node n = detach(bucket);
+        while (n != null) {
+            Node next = n.next;
+            n.prev = n.next = null;
+            n.bucket = -1;
+            place(n);
+            n = next;
+        }
+    }
+
+    private void place(Node n) {
+        long diff = n.deadlineTick ^ currentTick;
+        int level = diff == 0 ? 0 : Math.min((63 - Long.numberOfLeadingZeros(diff)) / BITS, levels - 1);
+        int bucket = level * SLOTS + (int) ((n.deadlineTick >>> (BITS * level)) & MASK);
+        Node head = buckets[bucket];
+        n.next = head;
+        if (head != null) head.prev = n;
+        buckets[bucket] = n;
+        n.bucket = bucket;
+    }
+
+    private Node detach(int bucket) {
+        Node head = buckets[bucket];
+        buckets[bucket] = null;
+        return head;
+    }
+
+    private void unlink(Node n) {
+        if (n.bucket < 0) return;
+        if (n.prev != null) n.prev.next = n.next;
+        else buckets[n.bucket] = n.next;
+        if (n.next != null) n.next.prev = n.prev;
+        n.prev = n.next = null;
+        n.bucket = -1;
+    }
+}
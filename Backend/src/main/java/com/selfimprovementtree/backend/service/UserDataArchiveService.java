@@ -0,0 +1,100 @@
+package com.selfimprovementtree.backend.service;
+
+import com.selfimprovementtree.backend.model.UserDataEntity;
+import com.selfimprovementtree.backend.repo.UserDataArchive;
+import com.selfimprovementtree.backend.repo.UserDataStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves guest user_data rows that have not been updated for {@code app.archive.after-days}
+ * into {@link UserDataArchive}, then compacts the archive when rows brought back have left enough dead records.
+ * {@link UserDataService#get} brings them back on first access.
+ */
+@Service
+@Lazy(false) // the nightly cron has to be registered under spring.main.lazy-initialization too
+public class UserDataArchiveService {
+    private static final Logger log = LoggerFactory.getLogger(UserDataArchiveService.class);
+    private static final int BATCH = 200;
+
+    private final UserDataStore store;
+    private final UserDataArchive archive;
+    private final UserDataService userData;
+
+    @Value("${app.archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.archive.after-days:30}")
+    private int afterDays;
+
+    @Value("${app.archive.include-accounts:false}")
+    private boolean includeAccounts;
+
+    public UserDataArchiveService(UserDataStore store, UserDataArchive archive, UserDataService userData) {
+        this.store = store;
+        this.archive = archive;
+        this.userData = userData;
+    }
+
+    @Scheduled(cron = "${app.archive.cron:0 30 3 * * *}")
+    public void scheduledRun() {
+        if (!enabled) return;
+        archiveInactive(afterDays);
+        try {
+            if (archive.compactIfNeeded()) log.info("Compacted the user_data archive ({} rows)", archive.size());
+        } catch (IOException ex) {
+            log.warn("Compacting the user_data archive failed", ex);
+        }
+    }
+
+    /** Archives rows idle for at least {@code days} days and returns how many left the hot table. */
+    public synchronized int archiveInactive(int days) {
+        OffsetDateTime cutoff = OffsetDateTime.now().minusDays(days);
+        List<UserDataEntity> batch = new ArrayList<>(BATCH);
+        int[] archived = {0};
+        store.scanUpdatedBefore(cutoff, e -> {
+            if (!includeAccounts && isAccountId(e.getId())) return;
+            synchronized (batch) {
+                batch.add(e);
+                if (batch.size() >= BATCH) {
+                    archived[0] += flush(batch);
+                }
+            }
+        });
+        archived[0] += flush(batch);
+        if (archived[0] > 0) {
+            log.info("Archived {} user_data rows idle since {}", archived[0], cutoff);
+        }
+        return archived[0];
+    }
+
+    private int flush(List<UserDataEntity> batch) {
+        if (batch.isEmpty()) return 0;
+        int moved = 0;
+        try {
+            archive.append(batch);
+            for (UserDataEntity e : batch) {
+                // a write that raced with the scan wins; the stale archived copy is dropped
+                if (userData.evictArchived(e.getId(), e.getVersion())) moved++;
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Archiving user_data failed", ex);
+        }
+        batch.clear();
+        return moved;
+    }
+
+    private static boolean isAccountId(String id) {
+        return !id.isEmpty() && id.chars().allMatch(Character::isDigit);
+    }
+}
@@ -0,0 +1,311 @@
+package com.selfimprovementtree.backend.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.selfimprovementtree.backend.repo.UserDataStore;
+import com.selfimprovementtree.backend.repo.shard.ShardedUserDataStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Online backups of the main H2 database.
+ *
+ * A snapshot is H2's {@code BACKUP TO}, which copies the database while it keeps serving writes, into
+ * {@code snap-<startMillis>.zip}. Between snapshots, user_data rows whose updatedAt is at or after the previous
+ * mark (minus {@code app.backup.overlap-ms}, for writes that committed late) go to gzipped NDJSON deltas
+ * {@code snap-<startMillis>.d<seq>-<untilMillis>.ndjson.gz}, written at most {@code app.backup.max-bytes-per-sec}.
+ * {@link UserDataRestore} rebuilds a database from the newest snapshot plus its deltas.
+ * Deletions are not recorded, so rows removed after a snapshot come back on restore.
+ * Only the main database is covered: with {@code app.userdata.shards} &gt; 1 most rows live in the shard files,
+ * so backups are refused rather than written incomplete.
+ */
+@Service
+@Lazy(false) // snapshot and delta jobs are @Scheduled
+public class UserDataBackupService {
+    private static final Logger log = LoggerFactory.getLogger(UserDataBackupService.class);
+    static final Pattern SNAPSHOT = Pattern.compile("snap-(\\d+)\\.zip");
+    static final Pattern DELTA = Pattern.compile("snap-(\\d+)\\.d(\\d{6})-(\\d+)\\.ndjson\\.gz");
+
+    private final UserDataStore store;
+    private final JdbcTemplate jdbc;
+    private final ObjectMapper mapper;
+    private final boolean sharded;
+
+    @Value("${app.backup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.backup.dir:./data/backup}")
+    private String dir;
+
+    @Value("${app.backup.keep-snapshots:3}")
+    private int keepSnapshots;
+
+    @Value("${app.backup.overlap-ms:30000}")
+    private long overlapMs;
+
+    @Value("${app.backup.max-bytes-per-sec:8388608}")
+    private long maxBytesPerSec;
+
+    // guarded by this; 0 until recovered from the directory listing
+    private long snapshotStart;
+    private long mark;
+    private int seq;
+
+    public UserDataBackupService(UserDataStore store, DataSource dataSource, ObjectMapper mapper) {
+        this.store = store;
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.mapper = mapper;
+        this.sharded = store instanceof ShardedUserDataStore s && s.shardCount() > 1;
+        if (sharded) log.warn("User data is sharded; backups cover only the main database and are disabled");
+    }
+
+    @Scheduled(cron = "${app.backup.snapshot-cron:0 0 4 * * *}")
+    public void scheduledSnapshot() {
+        if (enabled && !sharded) snapshot();
+    }
+
+    @Scheduled(initialDelayString = "${app.backup.delta-ms:300000}", fixedDelayString = "${app.backup.delta-ms:300000}")
+    public void scheduledDelta() {
+        if (enabled && !sharded) delta();
+    }
+
+    /** Takes a new snapshot, starting a new delta chain, and prunes old chains. Returns the snapshot file name. */
+    public synchronized String snapshot() {
+        requireUnsharded();
+        long start = System.currentTimeMillis();
+        Path target = dir().resolve("snap-" + start + ".zip");
+        Path tmp = dir().resolve("snap-" + start + ".zip.tmp");
+        // BACKUP TO takes a literal, not a parameter
+        jdbc.execute("BACKUP TO '" + tmp.toAbsolutePath().toString().replace("'", "''") + "'");
+        move(tmp, target);
+        snapshotStart = start;
+        mark = start;
+        seq = 0;
+        prune();
+        log.info("Backup snapshot {} written in {} ms", target.getFileName(), System.currentTimeMillis() - start);
+        return target.getFileName().toString();
+    }
+
+    /**
+     * Writes the rows changed since the last snapshot or delta. Takes a snapshot instead when there is none yet.
+     * Returns the number of rows written.
+     */
+    public synchronized int delta() {
+        requireUnsharded();
+        if (snapshotStart == 0) recover();
+        if (snapshotStart == 0) {
+            snapshot();
+            return 0;
+        }
+        long until = System.currentTimeMillis();
+        OffsetDateTime since = OffsetDateTime.ofInstant(Instant.ofEpochMilli(mark - overlapMs), ZoneOffset.UTC);
+        int next = seq + 1;
+        Path target = dir().resolve(String.format("snap-%d.d%06d-%d.ndjson.gz", snapshotStart, next, until));
+        Path tmp = dir().resolve(target.getFileName() + ".tmp");
+        int[] rows = {0};
+        try (JsonGenerator gen = mapper.getFactory().createGenerator(
+                new GZIPOutputStream(new Throttled(Files.newOutputStream(tmp), maxBytesPerSec), 65536))) {
+            store.scanUpdatedSince(since, e -> {
+                synchronized (gen) {
+                    try {
+                        gen.writeStartObject();
+                        gen.writeStringField("id", e.getId());
+                        gen.writeNumberField("version", e.getVersion());
+                        gen.writeStringField("updatedAt", e.getUpdatedAt().toString());
+                        gen.writeStringField("json", e.getJson());
+                        gen.writeEndObject();
+                        gen.writeRaw('\n');
+                        rows[0]++;
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }
+            });
+        } catch (IOException | RuntimeException ex) {
+            delete(tmp);
+            throw ex instanceof IOException io ? new UncheckedIOException(io) : (RuntimeException) ex;
+        }
+        if (rows[0] == 0) {
+            // nothing changed; the mark stays so the next window still covers late commits
+            delete(tmp);
+            return 0;
+        }
+        move(tmp, target);
+        seq = next;
+        mark = until;
+        log.info("Backup delta {} with {} rows", target.getFileName(), rows[0]);
+        return rows[0];
+    }
+
+    /** Snapshots and deltas currently on disk, oldest first. */
+    public synchronized List<Map<String, Object>> list() {
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (Path p : files()) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("file", p.getFileName().toString());
+            try {
+                m.put("bytes", Files.size(p));
+            } catch (IOException e) {
+                m.put("bytes", -1);
+            }
+            out.add(m);
+        }
+        return out;
+    }
+
+    private void requireUnsharded() {
+        if (sharded) throw new IllegalStateException("BACKUP_UNSUPPORTED_WITH_SHARDS");
+    }
+
+    /** After a restart: continue the newest chain found on disk. */
+    private void recover() {
+        for (Path p : files()) {
+            String name = p.getFileName().toString();
+            Matcher s = SNAPSHOT.matcher(name);
+            Matcher d = DELTA.matcher(name);
+            if (s.matches()) {
+                snapshotStart = Long.parseLong(s.group(1));
+                mark = snapshotStart;
+                seq = 0;
+            } else if (d.matches() && Long.parseLong(d.group(1)) == snapshotStart) {
+                seq = Integer.parseInt(d.group(2));
+                mark = Long.parseLong(d.group(3));
+            }
+        }
+    }
+
+    private void prune() {
+        List<Long> snapshots = new ArrayList<>();
+        for (Path p : files()) {
+            Matcher s = SNAPSHOT.matcher(p.getFileName().toString());
+            if (s.matches()) snapshots.add(Long.parseLong(s.group(1)));
+        }
+        if (snapshots.size() <= keepSnapshots) return;
+        long oldestKept = snapshots.get(snapshots.size() - Math.max(1, keepSnapshots));
+        for (Path p : files()) {
+            String name = p.getFileName().toString();
+            Matcher s = SNAPSHOT.matcher(name);
+            Matcher d = DELTA.matcher(name);
+            long chain = s.matches() ? Long.parseLong(s.group(1)) : d.matches() ? Long.parseLong(d.group(1)) : Long.MAX_VALUE;
+            if (chain < oldestKept) delete(p);
+        }
+    }
+
+    /** Backup files sorted by chain, then snapshot before its deltas, then delta sequence. */
+    static List<Path> files(Path dir) {
+        if (!Files.isDirectory(dir)) return List.of();
+        try (var stream = Files.list(dir)) {
+            return stream.filter(p -> {
+                        String n = p.getFileName().toString();
+                        return SNAPSHOT.matcher(n).matches() || DELTA.matcher(n).matches();
+                    })
+                    .sorted(Comparator.comparing(UserDataBackupService::sortKey))
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String sortKey(Path p) {
+        String n = p.getFileName().toString();
+        Matcher s = SNAPSHOT.matcher(n);
+        if (s.matches()) return String.format("%020d.%06d", Long.parseLong(s.group(1)), 0);
+        Matcher d = DELTA.matcher(n);
+        d.matches();
+        return String.format("%020d.%s", Long.parseLong(d.group(1)), d.group(2));
+    }
+
+    private List<Path> files() {
+        return files(dir());
+    }
+
+    private Path dir() {
+        Path p = Path.of(dir);
+        try {
+            Files.createDirectories(p);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return p;
+    }
+
+    private static void move(Path from, Path to) {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void delete(Path p) {
+        try {
+            Files.deleteIfExists(p);
+        } catch (IOException e) {
+            log.warn("Could not delete {}", p, e);
+        }
+    }
+
+    /** Caps write throughput so a large delta does not starve the database of disk bandwidth. */
+    private static final class Throttled extends FilterOutputStream {
+        private final long bytesPerSec;
+        private final long started = System.nanoTime();
+        private long written;
+
+        Throttled(OutputStream out, long bytesPerSec) {
+            super(out);
+            this.bytesPerSec = bytesPerSec;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            pace(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            pace(len);
+        }
+
+        private void pace(int n) throws IOException {
+            if (bytesPerSec <= 0) return;
+            written += n;
+            long aheadMs = written * 1000 / bytesPerSec - (System.nanoTime() - started) / 1_000_000;
+            if (aheadMs > 0) {
+                try {
+                    Thread.sleep(aheadMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.selfimprovementtree.backend.service;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Published by {@link UserDataService} after a user_data row has been written.
+ * {@code previousJson} is null when the row did not exist before.
+ */
+public record UserDataChangedEvent(String id, long version, OffsetDateTime updatedAt, String json, String previousJson) {
+}
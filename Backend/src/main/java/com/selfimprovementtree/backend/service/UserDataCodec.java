@@ -0,0 +1,102 @@
+package com.selfimprovementtree.backend.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Converts user data documents between the stored JSON text and the binary wire formats.
+ * Conversions stream token by token (no tree). Encoded copies are cached per id and version, so a document
+ * is converted at most once per write and format; a binary PUT seeds the cache with the bytes it arrived as.
+ * The cache is bounded by total bytes ({@code app.userdata.encoded-cache-bytes}) as well as by entry count.
+ */
+@Component
+public class UserDataCodec {
+    public static final String CBOR_VALUE = "application/cbor";
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+    public static final MediaType CBOR = MediaType.parseMediaType(CBOR_VALUE);
+    public static final MediaType SMILE = MediaType.parseMediaType(SMILE_VALUE);
+
+    private record Encoded(long version, byte[] bytes) {}
+
+    private final JsonFactory json = new JsonFactory();
+    private final CBORFactory cbor = new CBORFactory();
+    private final SmileFactory smile = new SmileFactory();
+    private final Map<String, Encoded> cache = new LinkedHashMap<>(1024, 0.75f, true);
+    private final int maxEntries;
+    private final long maxBytes;
+    private long cachedBytes;
+
+    public UserDataCodec(@Value("${app.userdata.encoded-cache-size:20000}") int maxEntries,
+                         @Value("${app.userdata.encoded-cache-bytes:33554432}") long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /** The stored document in {@code type} (CBOR or Smile). */
+    public byte[] encode(String id, long version, String document, MediaType type) {
+        String key = type.getSubtype() + ':' + id;
+        synchronized (cache) {
+            Encoded hit = cache.get(key);
+            if (hit != null && hit.version() == version) return hit.bytes();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(document.length());
+        try (JsonParser p = json.createParser(document); JsonGenerator g = factory(type).createGenerator(out)) {
+            copy(p, g);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] bytes = out.toByteArray();
+        remember(id, version, type, bytes);
+        return bytes;
+    }
+
+    /** A CBOR or Smile request body as JSON text for storage. */
+    public String decode(byte[] body, MediaType type) throws IOException {
+        StringWriter out = new StringWriter(body.length + body.length / 2);
+        try (JsonParser p = factory(type).createParser(body); JsonGenerator g = json.createGenerator(out)) {
+            copy(p, g);
+        }
+        return out.toString();
+    }
+
+    /** Caches bytes already in hand, e.g. the body of the write that produced {@code version}. */
+    public void remember(String id, long version, MediaType type, byte[] bytes) {
+        // one oversized document should not flush everyone else's
+        if (bytes.length > maxBytes / 16) return;
+        synchronized (cache) {
+            Encoded previous = cache.put(type.getSubtype() + ':' + id, new Encoded(version, bytes));
+            cachedBytes += bytes.length - (previous != null ? previous.bytes().length : 0);
+            Iterator<Encoded> eldest = cache.values().iterator();
+            while (cache.size() > maxEntries || cachedBytes > maxBytes) {
+                cachedBytes -= eldest.next().bytes().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    private JsonFactory factory(MediaType type) {
+        if (CBOR.equalsTypeAndSubtype(type)) return cbor;
+        if (SMILE.equalsTypeAndSubtype(type)) return smile;
+        throw new IllegalArgumentException("Unsupported media type " + type);
+    }
+
+    private static void copy(JsonParser p, JsonGenerator g) throws IOException {
+        if (p.nextToken() == null) throw new IOException("Empty document");
+        g.copyCurrentStructure(p);
+        if (p.nextToken() != null) throw new IOException("Trailing content after document");
+    }
+}
@@ -0,0 +1,188 @@
+package com.selfimprovementtree.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Field-level merge of a device's user data document into the stored one.
+ *
+ * With the common ancestor ("base", the version the device last saw) the merge is three-way:
+ * <ul>
+ *   <li>coins, gems, exp, decay: the device's change is applied as a delta to the stored value</li>
+ *   <li>goodHabits / badHabits: matched by stable {@code id}; per-field three-way, upgrade levels take the max,
+ *       habits added on either side are kept and habits deleted on either side are dropped</li>
+ *   <li>checkedGoodToday / checkedBadToday: union for the same day, otherwise the newer day wins</li>
+ *   <li>lastOpenDate, updatedAt: the later value</li>
+ *   <li>anything else: the device's value if it changed it, the stored value otherwise</li>
+ * </ul>
+ * Without a base the device's values win, but habits and daily checks are still unioned.
+ */
+@Component
+public class UserDataMerger {
+    private static final Set<String> COUNTERS = Set.of("coins", "gems", "exp", "decay");
+    private static final Set<String> HABIT_LISTS = Set.of("goodHabits", "badHabits");
+    private static final Set<String> DAILY_CHECKS = Set.of("checkedGoodToday", "checkedBadToday");
+    private static final Set<String> LATEST = Set.of("lastOpenDate", "updatedAt");
+
+    private final ObjectMapper mapper;
+
+    public UserDataMerger(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /** @param baseJson the document the device started from, or null when unknown */
+    public String merge(String storedJson, String baseJson, String incomingJson) throws JsonProcessingException {
+        JsonNode incoming = mapper.readTree(incomingJson);
+        if (storedJson == null || !incoming.isObject()) return incomingJson;
+        JsonNode stored = mapper.readTree(storedJson);
+        if (!stored.isObject()) return incomingJson;
+        JsonNode base = baseJson != null ? mapper.readTree(baseJson) : null;
+        return mapper.writeValueAsString(mergeDocument((ObjectNode) stored,
+                base != null && base.isObject() ? (ObjectNode) base : null, (ObjectNode) incoming));
+    }
+
+    private ObjectNode mergeDocument(ObjectNode stored, ObjectNode base, ObjectNode incoming) {
+        ObjectNode out = mapper.createObjectNode();
+        boolean sameDay = Objects.equals(text(stored, "lastOpenDate"), text(incoming, "lastOpenDate"));
+        boolean incomingNewerDay = compare(incoming.get("lastOpenDate"), stored.get("lastOpenDate")) > 0;
+
+        Set<String> fields = new LinkedHashSet<>();
+        stored.fieldNames().forEachRemaining(fields::add);
+        incoming.fieldNames().forEachRemaining(fields::add);
+        for (String f : fields) {
+            JsonNode s = stored.get(f);
+            JsonNode i = incoming.get(f);
+            JsonNode b = base != null ? base.get(f) : null;
+            JsonNode merged;
+            if (COUNTERS.contains(f)) {
+                merged = mergeCounter(s, b, i, base != null);
+            } else if (HABIT_LISTS.contains(f)) {
+                merged = mergeHabits(s, b, i, base != null);
+            } else if (DAILY_CHECKS.contains(f)) {
+                merged = sameDay ? union(s, i) : (incomingNewerDay ? i : s);
+            } else if (LATEST.contains(f)) {
+                merged = compare(i, s) >= 0 ? i : s;
+            } else {
+                merged = threeWay(s, b, i, base != null);
+            }
+            if (merged != null) out.set(f, merged);
+        }
+        return out;
+    }
+
+    private JsonNode mergeCounter(JsonNode s, JsonNode b, JsonNode i, boolean haveBase) {
+        if (i == null || !i.isNumber()) return s;
+        if (s == null || !s.isNumber() || !haveBase || b == null || !b.isNumber()) return i;
+        if (s.isIntegralNumber() && b.isIntegralNumber() && i.isIntegralNumber()) {
+            return mapper.getNodeFactory().numberNode(Math.max(0L, s.asLong() + (i.asLong() - b.asLong())));
+        }
+        return mapper.getNodeFactory().numberNode(Math.max(0d, s.asDouble() + (i.asDouble() - b.asDouble())));
+    }
+
+    private JsonNode mergeHabits(JsonNode s, JsonNode b, JsonNode i, boolean haveBase) {
+        if (i == null || !i.isArray()) return s;
+        if (s == null || !s.isArray()) return i;
+        Map<String, JsonNode> stored = byId(s);
+        Map<String, JsonNode> incoming = byId(i);
+        Map<String, JsonNode> base = b != null && b.isArray() ? byId(b) : Map.of();
+
+        ArrayNode out = mapper.createArrayNode();
+        boolean incomingHasLegacy = false;
+        for (JsonNode habit : i) {
+            if (text(habit, "id") == null) incomingHasLegacy = true;
+        }
+        for (JsonNode habit : s) {
+            String id = text(habit, "id");
+            if (id == null || !habit.isObject()) {
+                if (!incomingHasLegacy) out.add(habit);
+                continue;
+            }
+            JsonNode other = incoming.get(id);
+            if (other != null) {
+                out.add(mergeHabit((ObjectNode) habit, (ObjectNode) base.get(id), (ObjectNode) other, haveBase));
+            } else if (!base.containsKey(id)) {
+                out.add(habit); // added by another device
+            } // else deleted by this device
+        }
+        for (JsonNode habit : i) {
+            String id = text(habit, "id");
+            if (id == null) {
+                out.add(habit); // legacy habit the client has not assigned an id yet
+            } else if (!stored.containsKey(id) && !base.containsKey(id)) {
+                out.add(habit); // added by this device; present in base only means deleted elsewhere
+            }
+        }
+        return out;
+    }
+
+    private JsonNode mergeHabit(ObjectNode s, ObjectNode b, ObjectNode i, boolean haveBase) {
+        if (!s.isObject() || !i.isObject()) return i;
+        ObjectNode out = mapper.createObjectNode();
+        Set<String> fields = new LinkedHashSet<>();
+        s.fieldNames().forEachRemaining(fields::add);
+        i.fieldNames().forEachRemaining(fields::add);
+        for (String f : fields) {
+            JsonNode merged = "upgrades".equals(f)
+                    ? maxPerKey(s.get(f), i.get(f))
+                    : threeWay(s.get(f), b != null ? b.get(f) : null, i.get(f), haveBase && b != null);
+            if (merged != null) out.set(f, merged);
+        }
+        return out;
+    }
+
+    // upgrade levels only go up, so the higher level is the newer one
+    private JsonNode maxPerKey(JsonNode s, JsonNode i) {
+        if (s == null || !s.isObject()) return i;
+        if (i == null || !i.isObject()) return s;
+        ObjectNode out = ((ObjectNode) s).deepCopy();
+        i.properties().forEach(e -> {
+            JsonNode cur = out.get(e.getKey());
+            if (cur == null || compare(e.getValue(), cur) > 0) out.set(e.getKey(), e.getValue());
+        });
+        return out;
+    }
+
+    private JsonNode union(JsonNode s, JsonNode i) {
+        if (s == null || !s.isObject()) return i;
+        if (i == null || !i.isObject()) return s;
+        ObjectNode out = ((ObjectNode) s).deepCopy();
+        i.properties().forEach(e -> {
+            if (e.getValue().asBoolean() || !out.has(e.getKey())) out.set(e.getKey(), e.getValue());
+        });
+        return out;
+    }
+
+    private static JsonNode threeWay(JsonNode s, JsonNode b, JsonNode i, boolean haveBase) {
+        if (!haveBase) return i != null ? i : s;
+        if (Objects.equals(i, b)) return s; // untouched by this device (null/null means absent on both)
+        return i;                          // changed, or removed when i is null
+    }
+
+    private static Map<String, JsonNode> byId(JsonNode array) {
+        Map<String, JsonNode> map = new LinkedHashMap<>();
+        for (JsonNode n : array) {
+            String id = text(n, "id");
+            if (id != null && n.isObject()) map.put(id, n);
+        }
+        return map;
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode v = node.get(field);
+        return v != null && !v.isNull() ? v.asText() : null;
+    }
+
+    /** Orders numbers numerically and everything else (ISO dates) as text; null sorts first. */
+    private static int compare(JsonNode a, JsonNode b) {
+        if (a == null || a.isNull()) return (b == null || b.isNull()) ? 0 : -1;
+        if (b == null || b.isNull()) return 1;
+        if (a.isNumber() && b.isNumber()) return Double.compare(a.asDouble(), b.asDouble());
+        return a.asText().compareTo(b.asText());
+    }
+}
@@ -0,0 +1,157 @@
+package com.selfimprovementtree.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Offline restore from {@link UserDataBackupService} files; run with the app stopped:
+ * <pre>
+ *   java -jar backend.jar restore [--backup-dir=./data/backup] [--db=./data/selfimprovement]
+ *                                 [--snapshot=&lt;startMillis&gt;] [--force]
+ * </pre>
+ * Unpacks the snapshot (the newest by default) as the database file, then replays its deltas in order.
+ * An existing database is only replaced with --force and is kept next to it as {@code .before-restore-<millis>}.
+ * Backups cover the main database only, so a snapshot of a sharded store (app.userdata.shards &gt; 1) is refused.
+ */
+public final class UserDataRestore {
+    private static final int BATCH = 500;
+
+    private UserDataRestore() {}
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        for (String a : args) {
+            if (!a.startsWith("--")) continue;
+            int eq = a.indexOf('=');
+            opts.put(eq < 0 ? a.substring(2) : a.substring(2, eq), eq < 0 ? "true" : a.substring(eq + 1));
+        }
+        Path backupDir = Path.of(opts.getOrDefault("backup-dir", "./data/backup"));
+        Path db = Path.of(opts.getOrDefault("db", "./data/selfimprovement"));
+        String snapshot = opts.get("snapshot");
+        boolean force = opts.containsKey("force");
+        restore(backupDir, db, snapshot == null ? null : Long.parseLong(snapshot), force);
+    }
+
+    public static void restore(Path backupDir, Path db, Long snapshot, boolean force) throws IOException, SQLException {
+        List<Path> files = UserDataBackupService.files(backupDir);
+        Long chain = snapshot;
+        if (chain == null) {
+            for (Path p : files) {
+                Matcher s = UserDataBackupService.SNAPSHOT.matcher(p.getFileName().toString());
+                if (s.matches()) chain = Long.parseLong(s.group(1));
+            }
+        }
+        Path zip = backupDir.resolve("snap-" + chain + ".zip");
+        if (chain == null || !Files.exists(zip)) {
+            throw new IllegalArgumentException("No snapshot found in " + backupDir.toAbsolutePath());
+        }
+
+        Path dbFile = Path.of(db + ".mv.db");
+        if (Files.exists(dbFile) && !force) throw new IllegalStateException(dbFile + " exists; pass --force to replace it");
+        Files.createDirectories(dbFile.toAbsolutePath().getParent());
+        // unpacked beside the target first, so a refused snapshot leaves the existing database alone
+        Path staged = Path.of(db + "-restoring");
+        Path stagedFile = Path.of(staged + ".mv.db");
+        Files.deleteIfExists(stagedFile);
+        unpack(zip, stagedFile);
+        try {
+            checkNotSharded(staged);
+        } catch (IllegalStateException | SQLException ex) {
+            Files.deleteIfExists(stagedFile);
+            throw ex;
+        }
+        if (Files.exists(dbFile)) {
+            Path aside = Path.of(dbFile + ".before-restore-" + System.currentTimeMillis());
+            Files.move(dbFile, aside);
+            System.out.println("Moved existing database to " + aside);
+        }
+        Files.move(stagedFile, dbFile);
+        System.out.println("Restored snapshot " + zip.getFileName());
+
+        String url = "jdbc:h2:file:" + db.toAbsolutePath() + ";MODE=PostgreSQL";
+        try (Connection c = DriverManager.getConnection(url, "sa", "")) {
+            c.setAutoCommit(false);
+            ObjectMapper mapper = new ObjectMapper();
+            for (Path p : files) {
+                Matcher d = UserDataBackupService.DELTA.matcher(p.getFileName().toString());
+                if (!d.matches() || Long.parseLong(d.group(1)) != chain) continue;
+                int rows = replay(c, mapper, p);
+                c.commit();
+                System.out.println("Applied " + p.getFileName() + " (" + rows + " rows)");
+            }
+        }
+    }
+
+    /** Rows of a sharded store live mostly in the shard files, which the snapshot does not contain. */
+    private static void checkNotSharded(Path db) throws SQLException {
+        String url = "jdbc:h2:file:" + db.toAbsolutePath() + ";MODE=PostgreSQL";
+        try (Connection c = DriverManager.getConnection(url, "sa", "");
+             ResultSet tables = c.getMetaData().getTables(null, null, "USER_DATA_SHARD_META", null)) {
+            if (!tables.next()) return;
+            try (PreparedStatement ps = c.prepareStatement("SELECT v FROM user_data_shard_meta WHERE k = 'ring_size'");
+                 ResultSet rs = ps.executeQuery()) {
+                if (rs.next() && Integer.parseInt(rs.getString(1)) > 1) {
+                    throw new IllegalStateException("Snapshot is of a sharded user data store; restore is not supported");
+                }
+            }
+        }
+    }
+
+    /** The backup zip holds one {@code .mv.db} file, named after the source database. */
+    private static void unpack(Path zip, Path dbFile) throws IOException {
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(zip))) {
+            ZipEntry e;
+            while ((e = in.getNextEntry()) != null) {
+                if (e.getName().endsWith(".mv.db")) {
+                    Files.copy(in, dbFile);
+                    return;
+                }
+            }
+        }
+        throw new IOException(zip + " contains no .mv.db file");
+    }
+
+    private static int replay(Connection c, ObjectMapper mapper, Path delta) throws IOException, SQLException {
+        int rows = 0;
+        try (InputStream raw = new GZIPInputStream(Files.newInputStream(delta), 65536);
+             BufferedReader in = new BufferedReader(new InputStreamReader(raw, StandardCharsets.UTF_8));
+             PreparedStatement ps = c.prepareStatement(
+                     "MERGE INTO user_data (id, json, updated_at, version) KEY (id) VALUES (?, ?, ?, ?)")) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) continue;
+                JsonNode n = mapper.readTree(line);
+                ps.setString(1, n.get("id").asText());
+                JsonNode json = n.get("json");
+                ps.setString(2, json == null || json.isNull() ? null : json.textValue());
+                ps.setObject(3, OffsetDateTime.parse(n.get("updatedAt").asText()));
+                ps.setLong(4, n.get("version").asLong());
+                ps.addBatch();
+                if (++rows % BATCH == 0) ps.executeBatch();
+            }
+            ps.executeBatch();
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,50 @@
+package com.selfimprovementtree.backend.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU of recently written or served user data documents keyed by id and version.
+ * Gives {@link UserDataMerger} the common ancestor of a device's edit; on a miss the merge
+ * falls back to two-way rules.
+ *
+ * Bounded by the total length of the cached documents ({@code app.merge.revision-cache-chars}) as well as by
+ * entry count, since documents range from a few hundred bytes to tens of kilobytes. A document longer than a
+ * sixteenth of the budget is not cached at all rather than flushing everything else.
+ */
+@Component
+public class UserDataRevisionCache {
+    private final Map<String, String> revisions = new LinkedHashMap<>(1024, 0.75f, true);
+    private final int maxEntries;
+    private final long maxChars;
+    private long chars;
+
+    public UserDataRevisionCache(@Value("${app.merge.revision-cache-size:20000}") int maxEntries,
+                                 @Value("${app.merge.revision-cache-chars:32000000}") long maxChars) {
+        this.maxEntries = maxEntries;
+        this.maxChars = maxChars;
+    }
+
+    public synchronized void put(String id, long version, String json) {
+        if (json == null || json.length() > maxChars / 16) return;
+        String previous = revisions.put(key(id, version), json);
+        chars += json.length() - (previous != null ? previous.length() : 0);
+        Iterator<String> eldest = revisions.values().iterator();
+        while (revisions.size() > maxEntries || chars > maxChars) {
+            chars -= eldest.next().length();
+            eldest.remove();
+        }
+    }
+
+    public synchronized String get(String id, long version) {
+        return revisions.get(key(id, version));
+    }
+
+    private static String key(String id, long version) {
+        return id + '@' + version;
+    }
+}
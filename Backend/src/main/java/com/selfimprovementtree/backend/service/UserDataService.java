@@ -1,29 +1,188 @@
 package com.selfimprovementtree.backend.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.selfimprovementtree.backend.model.UserDataEntity;
-import com.selfimprovementtree.backend.repo.UserDataRepository;
+import com.selfimprovementtree.backend.repo.UserDataArchive;
+import com.selfimprovementtree.backend.repo.UserDataStore;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.OffsetDateTime;
 import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
 
 @Service
 public class UserDataService {
-    private final UserDataRepository repo;
+    private final UserDataStore repo;
+    private final UserDataArchive archive;
+    private final ApplicationEventPublisher events;
+    private final UserDataMerger merger;
+    private final UserDataRevisionCache revisions;
+    // serializes writers of the same id; read-modify-write happens in Java, not under a DB lock
+    private final StripedLocks locks = new StripedLocks(1024);
 
-    public UserDataService(UserDataRepository repo) {
+    public UserDataService(UserDataStore repo, UserDataArchive archive, ApplicationEventPublisher events,
+                           UserDataMerger merger, UserDataRevisionCache revisions) {
         this.repo = repo;
+        this.archive = archive;
+        this.events = events;
+        this.merger = merger;
+        this.revisions = revisions;
     }
 
     public Optional<UserDataEntity> get(String id) {
-        return repo.findById(id);
+        FlightEvents.UserData event = new FlightEvents.UserData("get");
+        event.begin();
+        try {
+            Optional<UserDataEntity> hot = load(id);
+            if (hot.isEmpty()) event.outcome = "not_found";
+            else if (hot.get().getJson() != null) event.payloadBytes = hot.get().getJson().length();
+            return hot;
+        } catch (RuntimeException ex) {
+            event.fail(ex);
+            throw ex;
+        } finally {
+            event.commit();
+        }
     }
 
+    /** Replaces the whole document (last writer wins). */
     public UserDataEntity upsert(String id, String json) {
-        UserDataEntity entity = repo.findById(id).orElse(new UserDataEntity());
+        FlightEvents.UserData event = new FlightEvents.UserData("upsert");
+        event.payloadBytes = json != null ? json.length() : 0;
+        event.begin();
+        ReentrantLock lock = locks.get(id);
+        lock.lock();
+        try {
+            return write(load(id).orElse(new UserDataEntity()), id, json);
+        } catch (RuntimeException ex) {
+            event.fail(ex);
+            throw ex;
+        } finally {
+            lock.unlock();
+            event.commit();
+        }
+    }
+
+    /**
+     * Merges a device's document into the stored one field by field (see {@link UserDataMerger}).
+     *
+     * @param baseVersion the version the device's copy was derived from, null if unknown
+     */
+    public UserDataEntity merge(String id, String json, Long baseVersion) throws JsonProcessingException {
+        FlightEvents.UserData event = new FlightEvents.UserData("merge");
+        event.payloadBytes = json != null ? json.length() : 0;
+        event.begin();
+        ReentrantLock lock = locks.get(id);
+        lock.lock();
+        try {
+            Optional<UserDataEntity> stored = load(id);
+            if (stored.isEmpty()) return write(new UserDataEntity(), id, json);
+            UserDataEntity entity = stored.get();
+            if (baseVersion != null && baseVersion == entity.getVersion()) {
+                return write(entity, id, json); // nobody else wrote since, plain fast-forward
+            }
+            String base = baseVersion != null ? revisions.get(id, baseVersion) : null;
+            if (base == null) event.outcome = "two_way";
+            return write(entity, id, merger.merge(entity.getJson(), base, json));
+        } catch (RuntimeException | JsonProcessingException ex) {
+            event.fail(ex);
+            throw ex;
+        } finally {
+            lock.unlock();
+            event.commit();
+        }
+    }
+
+    /**
+     * Read-modify-write under the id's lock. {@code change} gets the stored document (null if none)
+     * and returns the new one; returning the same string skips the write, throwing aborts it.
+     */
+    public UserDataEntity apply(String id, UnaryOperator<String> change) {
+        FlightEvents.UserData event = new FlightEvents.UserData("apply");
+        event.begin();
+        ReentrantLock lock = locks.get(id);
+        lock.lock();
+        try {
+            UserDataEntity entity = load(id).orElse(new UserDataEntity());
+            String current = entity.getJson();
+            String next = change.apply(current);
+            if (next == null || next.equals(current)) {
+                event.outcome = "unchanged";
+                return entity;
+            }
+            event.payloadBytes = next.length();
+            return write(entity, id, next);
+        } catch (RuntimeException ex) {
+            event.fail(ex);
+            throw ex;
+        } finally {
+            lock.unlock();
+            event.commit();
+        }
+    }
+
+    /**
+     * Second half of archiving a row the archive already holds a copy of: deletes the hot row if it is still at
+     * {@code version}, under the writers' lock so no write can land between the check and the delete. A row that
+     * moved on stays hot and its archived copy is dropped. Returns whether the row left the hot table.
+     */
+    public boolean evictArchived(String id, long version) throws IOException {
+        ReentrantLock lock = locks.get(id);
+        lock.lock();
+        try {
+            if (repo.deleteIfVersion(id, version)) return true;
+            archive.remove(id);
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private UserDataEntity write(UserDataEntity entity, String id, String json) {
+        String previousJson = entity.getJson();
         entity.setId(id);
         entity.setJson(json);
         entity.setUpdatedAt(OffsetDateTime.now());
-        return repo.save(entity);
+        entity.setVersion(entity.getVersion() + 1);
+        UserDataEntity saved = repo.save(entity);
+        // the hot row is now the truth; an archived copy must never be rehydrated over a later delete
+        if (archive.contains(id)) {
+            try {
+                archive.remove(id);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Dropping archived user data " + id + " failed", ex);
+            }
+        }
+        revisions.put(id, saved.getVersion(), json);
+        events.publishEvent(new UserDataChangedEvent(id, saved.getVersion(), saved.getUpdatedAt(), json, previousJson));
+        return saved;
+    }
+
+    private Optional<UserDataEntity> load(String id) {
+        Optional<UserDataEntity> hot = repo.findById(id);
+        if (hot.isEmpty() && archive.contains(id)) hot = rehydrate(id);
+        // whatever a device reads may later come back as the base of a merge
+        hot.ifPresent(e -> revisions.put(id, e.getVersion(), e.getJson()));
+        return hot;
+    }
+
+    // rare (first visit of a returning guest), so a single lock is enough
+    private synchronized Optional<UserDataEntity> rehydrate(String id) {
+        Optional<UserDataEntity> hot = repo.findById(id);
+        if (hot.isPresent()) return hot;
+        try {
+            Optional<UserDataEntity> archived = archive.read(id);
+            if (archived.isPresent()) {
+                repo.save(archived.get());
+                archive.remove(id);
+            }
+            return archived;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Reading archived user data " + id + " failed", ex);
+        }
     }
 }
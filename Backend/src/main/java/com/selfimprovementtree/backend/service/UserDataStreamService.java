@@ -0,0 +1,211 @@
+package com.selfimprovementtree.backend.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes user_data change notices to Server-Sent Events subscribers.
+ *
+ * Idle connections only cost an {@link SseEmitter} (async servlet, no thread) plus a tiny
+ * {@link Subscriber}; sends go through a small shared pool. Each subscriber buffers at most
+ * {@code app.stream.buffer-size} notices and drops the oldest when a slow client falls behind,
+ * which is safe because every notice carries the latest version.
+ */
+@Service
+@Lazy(false) // heartbeats are @Scheduled; a lazy bean would never register them
+public class UserDataStreamService {
+
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger count = new AtomicInteger();
+    private final ExecutorService sender;
+    private final long timeoutMs;
+    private final long heartbeatMs;
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final int inlineMaxBytes;
+
+    public UserDataStreamService(
+            @Value("${app.stream.timeout-ms:1800000}") long timeoutMs,
+            @Value("${app.stream.heartbeat-ms:25000}") long heartbeatMs,
+            @Value("${app.stream.buffer-size:8}") int bufferSize,
+            @Value("${app.stream.max-subscribers:50000}") int maxSubscribers,
+            @Value("${app.stream.inline-max-bytes:4096}") int inlineMaxBytes,
+            @Value("${app.stream.sender-threads:2}") int senderThreads
+    ) {
+        this.timeoutMs = timeoutMs;
+        this.heartbeatMs = heartbeatMs;
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.inlineMaxBytes = inlineMaxBytes;
+        this.sender = Executors.newFixedThreadPool(senderThreads, r -> {
+            Thread t = new Thread(r, "userdata-sse");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Registers a new subscriber for the given user data id.
+     * Returns null when the registry is full; the caller should answer 503.
+     *
+     * @param includeData whether notices should carry the full document when it is small enough
+     */
+    public SseEmitter subscribe(String id, boolean includeData) {
+        if (count.incrementAndGet() > maxSubscribers) {
+            count.decrementAndGet();
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber sub = new Subscriber(id, emitter, includeData);
+        subscribers.computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet()).add(sub);
+        emitter.onCompletion(() -> remove(sub));
+        emitter.onTimeout(() -> remove(sub));
+        emitter.onError(e -> remove(sub));
+        return emitter;
+    }
+
+    public int subscriberCount() {
+        return count.get();
+    }
+
+    // after commit when published inside a transaction, immediately otherwise
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChange(UserDataChangedEvent event) {
+        Set<Subscriber> subs = subscribers.get(event.id());
+        if (subs == null) return;
+        for (Subscriber sub : subs) {
+            sub.enqueue(event);
+        }
+    }
+
+    /** Keeps proxies from closing idle connections and evicts clients that went away. */
+    @Scheduled(fixedDelayString = "${app.stream.heartbeat-ms:25000}")
+    public void heartbeat() {
+        long cutoff = System.currentTimeMillis() - heartbeatMs;
+        for (Set<Subscriber> subs : subscribers.values()) {
+            for (Subscriber sub : subs) {
+                if (sub.lastSentAt < cutoff) {
+                    sender.execute(sub::ping);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+        for (Set<Subscriber> subs : subscribers.values()) {
+            for (Subscriber sub : subs) {
+                sub.emitter.complete();
+            }
+        }
+    }
+
+    private void remove(Subscriber sub) {
+        if (!sub.closed.compareAndSet(false, true)) return;
+        count.decrementAndGet();
+        subscribers.computeIfPresent(sub.id, (k, subs) -> {
+            subs.remove(sub);
+            return subs.isEmpty() ? null : subs;
+        });
+    }
+
+    private Map<String, Object> notice(UserDataChangedEvent event, boolean includeData) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("id", event.id());
+        body.put("version", event.version());
+        body.put("updatedAt", event.updatedAt().toString());
+        if (includeData && event.json() != null && event.json().length() <= inlineMaxBytes) {
+            body.put("json", event.json());
+        }
+        return body;
+    }
+
+    private final class Subscriber {
+        final String id;
+        final SseEmitter emitter;
+        final boolean includeData;
+        final AtomicBoolean draining = new AtomicBoolean();
+        final AtomicBoolean closed = new AtomicBoolean();
+        // allocated on first notice; most subscribers sit idle
+        ArrayDeque<UserDataChangedEvent> pending;
+        volatile long lastSentAt = System.currentTimeMillis();
+
+        Subscriber(String id, SseEmitter emitter, boolean includeData) {
+            this.id = id;
+            this.emitter = emitter;
+            this.includeData = includeData;
+        }
+
+        void enqueue(UserDataChangedEvent event) {
+            synchronized (this) {
+                if (pending == null) pending = new ArrayDeque<>(bufferSize);
+                if (pending.size() >= bufferSize) pending.pollFirst();
+                pending.addLast(event);
+            }
+            if (draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        void drain() {
+            try {
+                while (true) {
+                    UserDataChangedEvent next;
+                    synchronized (this) {
+                        next = pending.pollFirst();
+                    }
+                    if (next == null) break;
+                    send(SseEmitter.event()
+                            .name("userdata")
+                            .id(Long.toString(next.version()))
+                            .data(notice(next, includeData), MediaType.APPLICATION_JSON));
+                }
+            } finally {
+                draining.set(false);
+            }
+            // an enqueue may have slipped in between the last poll and the flag reset
+            boolean more;
+            synchronized (this) {
+                more = !pending.isEmpty();
+            }
+            if (more && draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        void ping() {
+            send(SseEmitter.event().comment("hb"));
+        }
+
+        private void send(SseEmitter.SseEventBuilder event) {
+            if (closed.get()) return;
+            try {
+                synchronized (emitter) {
+                    emitter.send(event);
+                }
+                lastSentAt = System.currentTimeMillis();
+            } catch (IOException | IllegalStateException e) {
+                remove(this);
+                emitter.completeWithError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.selfimprovementtree.backend.bench;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+/**
+ * Inserts accounts with a daily reminder straight into the H2 file, app stopped. All reminders are set to the
+ * same UTC minute, {@code leadMinutes} after seeding finishes.
+ * Each account has 3 good habits with 2 unchecked today, so every reminder is due a mail.
+ * Not a unit test; used by ./reminder-benchmark.sh.
+ * <pre>
+ *   java ... ReminderSeed &lt;db path&gt; &lt;count&gt; &lt;leadMinutes&gt;
+ * </pre>
+ */
+public final class ReminderSeed {
+    private static final int BATCH = 5000;
+
+    public static void main(String[] args) throws Exception {
+        String db = args[0];
+        int count = Integer.parseInt(args[1]);
+        int lead = Integer.parseInt(args[2]);
+        int today = (int) LocalDate.now(ZoneOffset.UTC).toEpochDay();
+        long start = System.currentTimeMillis();
+        int minute;
+        try (Connection c = DriverManager.getConnection("jdbc:h2:file:" + db + ";MODE=PostgreSQL", "sa", "")) {
+            c.setAutoCommit(false);
+            long firstId;
+            try (Statement s = c.createStatement(); ResultSet rs = s.executeQuery("select coalesce(max(id), 0) from app_user")) {
+                rs.next();
+                firstId = rs.getLong(1) + 1;
+            }
+            try (PreparedStatement users = c.prepareStatement(
+                         "insert into app_user (id, email, username, password_hash) values (?, ?, ?, 'x')");
+                 PreparedStatement reminders = c.prepareStatement(
+                         "insert into habit_reminder (user_id, enabled, minute_of_day, zone, updated_at, status_day, "
+                                 + "good_habits, unchecked_good, last_sent_day) values (?, true, 0, 'UTC', ?, ?, 3, 2, 0)")) {
+                for (int i = 0; i < count; i++) {
+                    long id = firstId + i;
+                    users.setLong(1, id);
+                    users.setString(2, "bench" + id + "@example.test");
+                    users.setString(3, "bench" + id);
+                    users.addBatch();
+                    reminders.setLong(1, id);
+                    reminders.setLong(2, start);
+                    reminders.setInt(3, today);
+                    reminders.addBatch();
+                    if ((i + 1) % BATCH == 0 || i == count - 1) {
+                        users.executeBatch();
+                        reminders.executeBatch();
+                        c.commit();
+                    }
+                }
+            }
+            try (Statement s = c.createStatement()) {
+                // the identity column must continue after the ids used here
+                s.execute("alter table app_user alter column id restart with " + (firstId + count));
+                ZonedDateTime at = ZonedDateTime.now(ZoneOffset.UTC).plusMinutes(lead);
+                minute = at.getHour() * 60 + at.getMinute();
+                s.execute("update habit_reminder set minute_of_day = " + minute + " where user_id >= " + firstId);
+            }
+            c.commit();
+        }
+        System.out.printf("Seeded %d reminders at %02d:%02d UTC in %d ms%n", count, minute / 60, minute % 60,
+                System.currentTimeMillis() - start);
+    }
+
+    private ReminderSeed() {}
+}
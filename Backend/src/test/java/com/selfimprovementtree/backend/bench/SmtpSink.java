@@ -0,0 +1,92 @@
+package com.selfimprovementtree.backend.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local SMTP stand-in that accepts and discards everything, counting messages and connections.
+ * Prints "messages connections" once a second. Not a unit test; used by ./reminder-benchmark.sh.
+ * <pre>
+ *   java ... SmtpSink [port=2525] [delayMsPerMessage=0]
+ * </pre>
+ */
+public final class SmtpSink {
+    private static final AtomicLong messages = new AtomicLong();
+    private static final AtomicInteger connections = new AtomicInteger();
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 2525;
+        long delayMs = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        ExecutorService pool = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "smtp-sink");
+            t.setDaemon(true);
+            return t;
+        });
+        Thread reporter = new Thread(() -> {
+            while (true) {
+                System.out.println(messages.get() + " " + connections.get());
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        reporter.setDaemon(true);
+        reporter.start();
+        try (ServerSocket server = new ServerSocket(port)) {
+            while (true) {
+                Socket s = server.accept();
+                connections.incrementAndGet();
+                pool.execute(() -> session(s, delayMs));
+            }
+        }
+    }
+
+    private static void session(Socket socket, long delayMs) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             OutputStream out = socket.getOutputStream()) {
+            reply(out, "220 sink ESMTP");
+            String line;
+            while ((line = in.readLine()) != null) {
+                String cmd = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                switch (cmd) {
+                    case "EHLO", "HELO" -> reply(out, "250 sink");
+                    case "DATA" -> {
+                        reply(out, "354 end with <CRLF>.<CRLF>");
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            // discard
+                        }
+                        if (delayMs > 0) Thread.sleep(delayMs);
+                        messages.incrementAndGet();
+                        reply(out, "250 queued");
+                    }
+                    case "QUIT" -> {
+                        reply(out, "221 bye");
+                        return;
+                    }
+                    default -> reply(out, "250 ok"); // MAIL, RCPT, RSET, NOOP
+                }
+            }
+        } catch (IOException | InterruptedException ignored) {
+            // client went away
+        }
+    }
+
+    private static void reply(OutputStream out, String line) throws IOException {
+        out.write((line + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private SmtpSink() {}
+}
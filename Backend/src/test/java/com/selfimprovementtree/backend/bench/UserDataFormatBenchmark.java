@@ -0,0 +1,122 @@
+package com.selfimprovementtree.backend.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.selfimprovementtree.backend.service.UserDataCodec;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bytes on the wire and encode/decode time of a user data document as JSON, CBOR and Smile.
+ * Not a unit test; run through ./format-benchmark.sh [habits] [days].
+ *
+ * "encode"/"decode" are what a client pays (tree to bytes, bytes to tree); "convert" is what the server pays
+ * once per write to turn the stored JSON text into the binary form.
+ */
+public final class UserDataFormatBenchmark {
+    private static final int WARMUP = 2_000;
+    private static final int ITERATIONS = 5_000;
+
+    public static void main(String[] args) throws IOException {
+        int habits = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int days = args.length > 1 ? Integer.parseInt(args[1]) : 90;
+        ObjectMapper json = new ObjectMapper();
+        JsonNode doc = document(json, habits, days);
+        String text = json.writeValueAsString(doc);
+        UserDataCodec codec = new UserDataCodec(0, 0);
+
+        System.out.printf("document: %d habits, %d days of history%n", habits, days);
+        System.out.printf("%-6s %9s %9s %11s %11s %11s%n", "format", "bytes", "gzip", "encode us", "decode us", "convert us");
+        run("json", json, doc, codec, text, null);
+        run("cbor", new CBORMapper(), doc, codec, text, UserDataCodec.CBOR);
+        run("smile", new SmileMapper(), doc, codec, text, UserDataCodec.SMILE);
+    }
+
+    private static void run(String name, ObjectMapper mapper, JsonNode doc, UserDataCodec codec, String text, MediaType type)
+            throws IOException {
+        byte[] bytes = mapper.writeValueAsBytes(doc);
+        long sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += mapper.writeValueAsBytes(doc).length;
+            sink += mapper.readTree(bytes).size();
+            if (type != null) sink += codec.encode("bench", i, text, type).length;
+        }
+        long t0 = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) sink += mapper.writeValueAsBytes(doc).length;
+        long t1 = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) sink += mapper.readTree(bytes).size();
+        long t2 = System.nanoTime();
+        // distinct versions so every call converts instead of hitting the cache
+        for (int i = 0; i < ITERATIONS && type != null; i++) sink += codec.encode("bench", -1 - i, text, type).length;
+        long t3 = System.nanoTime();
+        System.out.printf("%-6s %9d %9d %11.1f %11.1f %11s%n", name, bytes.length, gzip(bytes),
+                (t1 - t0) / 1e3 / ITERATIONS, (t2 - t1) / 1e3 / ITERATIONS,
+                type == null ? "-" : String.format("%.1f", (t3 - t2) / 1e3 / ITERATIONS));
+        if (sink == 42) System.out.println();
+    }
+
+    /** Shaped like what the app stores: profile, habits with per-day history, inventory and settings. */
+    private static JsonNode document(ObjectMapper mapper, int habits, int days) {
+        Random rnd = new Random(7);
+        ObjectNode root = mapper.createObjectNode();
+        root.put("schemaVersion", 3);
+        ObjectNode profile = root.putObject("profile");
+        profile.put("name", "Player One");
+        profile.put("level", 14);
+        profile.put("xp", 12_840);
+        profile.put("coins", 530);
+        profile.put("treeStage", "sapling");
+        ArrayNode list = root.putArray("habits");
+        LocalDate start = LocalDate.of(2026, 1, 1);
+        for (int h = 0; h < habits; h++) {
+            ObjectNode habit = list.addObject();
+            habit.put("id", "h-" + Long.toHexString(rnd.nextLong()));
+            habit.put("name", "Habit number " + h);
+            habit.put("type", h % 3 == 0 ? "bad" : "good");
+            habit.put("difficulty", 1 + rnd.nextInt(3));
+            habit.put("streak", rnd.nextInt(40));
+            habit.put("bestStreak", 40 + rnd.nextInt(60));
+            habit.put("createdAt", start.toString());
+            ArrayNode history = habit.putArray("history");
+            for (int d = 0; d < days; d++) {
+                if (rnd.nextInt(10) < 7) {
+                    ObjectNode day = history.addObject();
+                    day.put("date", start.plusDays(d).toString());
+                    day.put("count", 1 + rnd.nextInt(2));
+                }
+            }
+        }
+        ArrayNode inventory = root.putArray("inventory");
+        for (int i = 0; i < 30; i++) {
+            ObjectNode item = inventory.addObject();
+            item.put("sku", "item-" + i);
+            item.put("qty", rnd.nextInt(5));
+            item.put("equipped", rnd.nextBoolean());
+        }
+        ObjectNode settings = root.putObject("settings");
+        settings.put("theme", "dark");
+        settings.put("notifications", true);
+        settings.put("reminderTime", "08:30");
+        settings.put("weekStartsOn", 1);
+        return root;
+    }
+
+    private static int gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(bytes);
+        }
+        return out.size();
+    }
+
+    private UserDataFormatBenchmark() {}
+}
@@ -0,0 +1,206 @@
+package com.selfimprovementtree.backend.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DayBitmapTest {
+    private static final int RUNS = 0;
+    private static final int BITS = 1;
+
+    private static int day(int year, int month, int dayOfMonth) {
+        return (int) LocalDate.of(year, month, dayOfMonth).toEpochDay();
+    }
+
+    private static DayBitmap of(int... days) {
+        DayBitmap set = new DayBitmap();
+        for (int d : days) set.add(d);
+        return set;
+    }
+
+    private static void assertSameDays(DayBitmap expected, DayBitmap actual) {
+        assertEquals(expected.cardinality(), actual.cardinality());
+        assertArrayEquals(expected.encode(), actual.encode());
+    }
+
+    @Test
+    void addMergesAdjacentRuns() {
+        DayBitmap set = of(10, 11, 13, 14);
+        assertEquals(2, set.longestRun());
+        assertTrue(set.add(12));
+        assertEquals(5, set.longestRun());
+        assertEquals(5, set.cardinality());
+        assertFalse(set.add(12));
+        assertFalse(set.add(10));
+
+        assertTrue(set.add(9)); // extends the run to the left
+        assertTrue(set.add(15)); // and to the right
+        assertEquals(7, set.longestRun());
+        assertEquals(7, set.lastRunLength());
+        assertEquals(15, set.lastDay());
+    }
+
+    @Test
+    void addOutOfOrderKeepsRunsSorted() {
+        DayBitmap set = of(30, 10, 20, 11, 29, 21);
+        for (int d : new int[] {10, 11, 20, 21, 29, 30}) assertTrue(set.contains(d));
+        assertFalse(set.contains(12));
+        assertFalse(set.contains(28));
+        assertEquals(30, set.lastDay());
+        assertEquals(2, set.lastRunLength());
+    }
+
+    @Test
+    void removeSplitsAndShrinksRuns() {
+        DayBitmap set = of(1, 2, 3, 4, 5);
+        assertTrue(set.remove(3));
+        assertFalse(set.contains(3));
+        assertEquals(2, set.longestRun());
+        assertEquals(2, set.lastRunLength());
+        assertEquals(4, set.cardinality());
+
+        assertTrue(set.remove(1)); // start of a run
+        assertTrue(set.remove(5)); // end of a run
+        assertTrue(set.contains(2));
+        assertTrue(set.contains(4));
+        assertEquals(4, set.lastDay());
+        assertEquals(1, set.lastRunLength());
+
+        assertTrue(set.remove(2)); // single-day run
+        assertTrue(set.remove(4));
+        assertTrue(set.isEmpty());
+        assertFalse(set.remove(4));
+        assertEquals(0, set.lastRunLength());
+        assertEquals(0, set.longestRun());
+    }
+
+    @Test
+    void removeThenAddRestoresOneRun() {
+        DayBitmap set = of(1, 2, 3, 4, 5);
+        set.remove(3);
+        set.add(3);
+        assertSameDays(of(1, 2, 3, 4, 5), set);
+        assertEquals(5, set.longestRun());
+    }
+
+    @Test
+    void daysInARowEncodeAsRuns() {
+        DayBitmap set = new DayBitmap();
+        for (int d = day(2024, 1, 1); d <= day(2024, 12, 31); d++) set.add(d);
+        byte[] bytes = set.encode();
+        assertEquals(RUNS, bytes[0]);
+        assertTrue(bytes.length <= 6, "one run, got " + bytes.length + " bytes");
+
+        DayBitmap back = DayBitmap.decode(bytes);
+        assertEquals(366, back.cardinality());
+        assertEquals(366, back.longestRun());
+        assertArrayEquals(bytes, back.encode());
+    }
+
+    @Test
+    void everyOtherDayEncodesAsBits() {
+        DayBitmap set = new DayBitmap();
+        for (int d = day(2024, 1, 1); d <= day(2024, 12, 31); d += 2) set.add(d);
+        byte[] bytes = set.encode();
+        assertEquals(BITS, bytes[0]);
+
+        DayBitmap back = DayBitmap.decode(bytes);
+        assertEquals(set.cardinality(), back.cardinality());
+        for (int d = day(2023, 12, 30); d <= day(2025, 1, 2); d++) assertEquals(set.contains(d), back.contains(d));
+        assertArrayEquals(bytes, back.encode());
+    }
+
+    @Test
+    void randomSetsRoundTripInBothForms() {
+        Random random = new Random(42);
+        int base = day(2020, 1, 1);
+        boolean sawRuns = false;
+        boolean sawBits = false;
+        for (int trial = 0; trial < 200; trial++) {
+            TreeSet<Integer> expected = new TreeSet<>();
+            DayBitmap set = new DayBitmap();
+            double density = random.nextDouble();
+            int span = 1 + random.nextInt(800);
+            for (int i = 0; i < span; i++) {
+                if (random.nextDouble() < density) {
+                    expected.add(base + i);
+                    set.add(base + i);
+                }
+            }
+            byte[] bytes = set.encode();
+            if (bytes.length > 0 && bytes[0] == RUNS) sawRuns = true;
+            if (bytes.length > 0 && bytes[0] == BITS) sawBits = true;
+
+            DayBitmap back = DayBitmap.decode(bytes);
+            assertEquals(expected.size(), back.cardinality());
+            for (int d = base - 1; d <= base + span; d++) assertEquals(expected.contains(d), back.contains(d));
+        }
+        assertTrue(sawRuns);
+        assertTrue(sawBits);
+    }
+
+    @Test
+    void emptyAndNullDecodeToEmpty() {
+        assertTrue(DayBitmap.decode(null).isEmpty());
+        assertTrue(DayBitmap.decode(new byte[0]).isEmpty());
+        assertTrue(DayBitmap.decode(new DayBitmap().encode()).isEmpty());
+    }
+
+    @Test
+    void streakAcrossNewYear() {
+        DayBitmap set = new DayBitmap();
+        for (int d = day(2024, 12, 20); d <= day(2025, 1, 5); d++) set.add(d);
+        assertEquals(day(2025, 1, 5), set.lastDay());
+        assertEquals(17, set.lastRunLength());
+        assertEquals(17, set.longestRun());
+
+        set.remove(day(2025, 1, 1));
+        assertEquals(4, set.lastRunLength());
+        assertEquals(12, set.longestRun());
+    }
+
+    @Test
+    void countIntoClipsRunsAtTheWindow() {
+        // a run from late 2024 into 2025, counted into a 2025-only window
+        DayBitmap set = new DayBitmap();
+        for (int d = day(2024, 12, 29); d <= day(2025, 1, 3); d++) set.add(d);
+        set.add(day(2025, 12, 31));
+        set.add(day(2026, 1, 1));
+
+        int from = day(2025, 1, 1);
+        int[] counts = new int[365];
+        set.countInto(from, counts);
+        assertEquals(1, counts[0]);
+        assertEquals(1, counts[2]);
+        assertEquals(0, counts[3]);
+        assertEquals(1, counts[364]);
+        int total = 0;
+        for (int c : counts) total += c;
+        assertEquals(4, total);
+
+        // the same window again adds on top
+        set.countInto(from, counts);
+        assertEquals(2, counts[0]);
+    }
+
+    @Test
+    void countIntoLeapYear() {
+        DayBitmap set = new DayBitmap();
+        for (int d = day(2024, 1, 1); d <= day(2024, 12, 31); d++) set.add(d);
+        int[] counts = new int[366];
+        set.countInto(day(2024, 1, 1), counts);
+        for (int c : counts) assertEquals(1, c);
+
+        int[] before = new int[10];
+        set.countInto(day(2023, 12, 23), before);
+        assertEquals(0, before[8]);
+        assertEquals(1, before[9]);
+    }
+}
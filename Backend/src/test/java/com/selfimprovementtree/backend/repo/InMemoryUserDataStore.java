@@ -0,0 +1,91 @@
+package com.selfimprovementtree.backend.repo;
+
+import com.selfimprovementtree.backend.model.UserDataEntity;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * {@link UserDataStore} over a sorted map for tests that need a store but not a database.
+ * Rows go in and come out as copies, like detached JPA entities.
+ */
+public class InMemoryUserDataStore implements UserDataStore {
+    private final Map<String, UserDataEntity> rows = new TreeMap<>();
+
+    private static UserDataEntity copy(UserDataEntity e) {
+        UserDataEntity c = new UserDataEntity(e.getId(), e.getJson(), e.getUpdatedAt());
+        c.setVersion(e.getVersion());
+        return c;
+    }
+
+    @Override
+    public synchronized Optional<UserDataEntity> findById(String id) {
+        return Optional.ofNullable(rows.get(id)).map(InMemoryUserDataStore::copy);
+    }
+
+    @Override
+    public synchronized UserDataEntity save(UserDataEntity entity) {
+        rows.put(entity.getId(), copy(entity));
+        return copy(entity);
+    }
+
+    @Override
+    public synchronized void deleteAllById(Collection<String> ids) {
+        ids.forEach(rows::remove);
+    }
+
+    @Override
+    public synchronized boolean deleteIfVersion(String id, long version) {
+        UserDataEntity e = rows.get(id);
+        if (e == null || e.getVersion() != version) return false;
+        rows.remove(id);
+        return true;
+    }
+
+    @Override
+    public synchronized Map<String, OffsetDateTime> findUpdatedAt(Collection<String> ids) {
+        Map<String, OffsetDateTime> out = new HashMap<>();
+        for (String id : ids) {
+            UserDataEntity e = rows.get(id);
+            if (e != null) out.put(id, e.getUpdatedAt());
+        }
+        return out;
+    }
+
+    @Override
+    public synchronized long count() {
+        return rows.size();
+    }
+
+    @Override
+    public void scan(Consumer<UserDataEntity> consumer) {
+        snapshot().forEach(consumer);
+    }
+
+    @Override
+    public void scanUpdatedBefore(OffsetDateTime cutoff, Consumer<UserDataEntity> consumer) {
+        for (UserDataEntity e : snapshot()) {
+            if (e.getUpdatedAt() != null && e.getUpdatedAt().isBefore(cutoff)) consumer.accept(e);
+        }
+    }
+
+    @Override
+    public void scanUpdatedSince(OffsetDateTime since, Consumer<UserDataEntity> consumer) {
+        for (UserDataEntity e : snapshot()) {
+            if (e.getUpdatedAt() != null && !e.getUpdatedAt().isBefore(since)) consumer.accept(e);
+        }
+    }
+
+    // consumers may write back, as they can against the real stores
+    private synchronized Collection<UserDataEntity> snapshot() {
+        Collection<UserDataEntity> out = new ArrayList<>();
+        rows.values().forEach(e -> out.add(copy(e)));
+        return out;
+    }
+}
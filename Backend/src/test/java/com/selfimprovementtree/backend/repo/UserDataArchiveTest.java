@@ -0,0 +1,183 @@
+package com.selfimprovementtree.backend.repo;
+
+import com.selfimprovementtree.backend.model.UserDataEntity;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserDataArchiveTest {
+    private static final long SEGMENT_BYTES = 1 << 20;
+
+    @TempDir
+    Path dir;
+
+    private static UserDataEntity row(String id, String json, long version) {
+        UserDataEntity e = new UserDataEntity(id, json, OffsetDateTime.of(2025, 1, 2, 3, 4, 5, 0, ZoneOffset.UTC));
+        e.setVersion(version);
+        return e;
+    }
+
+    @Test
+    void readsBackWhatWasArchived() throws IOException {
+        try (UserDataArchive archive = new UserDataArchive(dir, SEGMENT_BYTES)) {
+            archive.append(List.of(row("guest-a", "{\"a\":1}", 3), row("guest-b", "{\"b\":2}", 7)));
+        }
+        try (UserDataArchive archive = new UserDataArchive(dir, SEGMENT_BYTES)) {
+            assertEquals(2, archive.size());
+            UserDataEntity b = archive.read("guest-b").orElseThrow();
+            assertEquals("{\"b\":2}", b.getJson());
+            assertEquals(7, b.getVersion());
+            assertEquals(OffsetDateTime.of(2025, 1, 2, 3, 4, 5, 0, ZoneOffset.UTC), b.getUpdatedAt());
+
+            archive.remove("guest-a");
+            assertFalse(archive.contains("guest-a"));
+        }
+        try (UserDataArchive archive = new UserDataArchive(dir, SEGMENT_BYTES)) {
+            assertFalse(archive.contains("guest-a"));
+            assertTrue(archive.contains("guest-b"));
+        }
+    }
+
+    @Test
+    void tornIndexEntryIsCutBeforeNewEntries() throws IOException {
+        try (UserDataArchive archive = new UserDataArchive(dir, SEGMENT_BYTES)) {
+            archive.append(List.of(row("guest-a", "{\"a\":1}", 1), row("guest-b", "{\"b\":2}", 1)));
+        }
+        // a crash in the middle of writing guest-b's index entry
+        try (FileChannel idx = FileChannel.open(dir.resolve("archive.idx"), StandardOpenOption.WRITE)) {
+            idx.truncate(idx.size() - 5);
+        }
+        try (UserDataArchive archive = new UserDataArchive(dir, SEGMENT_BYTES)) {
+            assertEquals(1, archive.size());
+            archive.append(List.of(row("guest-c", "{\"c\":3}", 4)));
+        }
+        try (UserDataArchive archive = new UserDataArchive(dir, SEGMENT_BYTES)) {
+            assertEquals(2, archive.size());
+            assertEquals("{\"a\":1}", archive.read("guest-a").orElseThrow().getJson());
+            assertEquals("{\"c\":3}", archive.read("guest-c").orElseThrow().getJson());
+            assertFalse(archive.contains("guest-b"));
+        }
+    }
+
+    @Test
+    void nullJsonStaysNull() throws IOException {
+        try (UserDataArchive archive = new UserDataArchive(dir, SEGMENT_BYTES)) {
+            archive.append(List.of(row("guest-null", null, 1), row("guest-empty", "", 1)));
+        }
+        try (UserDataArchive archive = new UserDataArchive(dir, SEGMENT_BYTES)) {
+            assertNull(archive.read("guest-null").orElseThrow().getJson());
+            assertEquals("", archive.read("guest-empty").orElseThrow().getJson());
+        }
+    }
+
+    @Test
+    void compactionKeepsLiveRowsAndDropsDeadSegments() throws IOException {
+        String big = "{\"pad\":\"" + "x".repeat(2000) + "\"}";
+        try (UserDataArchive archive = new UserDataArchive(dir, 4096)) {
+            assertFalse(archive.compactIfNeeded());
+            for (int round = 0; round < 5; round++) {
+                List<UserDataEntity> rows = new ArrayList<>();
+                for (int i = 0; i < 50; i++) rows.add(row("guest-" + i, big + round, round + 1));
+                archive.append(rows);
+            }
+            for (int i = 0; i < 40; i++) archive.remove("guest-" + i);
+            long segmentsBefore = segmentCount();
+
+            assertTrue(archive.compactIfNeeded());
+            assertEquals(10, archive.size());
+            assertTrue(segmentCount() < segmentsBefore);
+            assertFalse(archive.compactIfNeeded());
+            assertEquals(big + 4, archive.read("guest-45").orElseThrow().getJson());
+            assertEquals(5, archive.read("guest-45").orElseThrow().getVersion());
+
+            archive.append(List.of(row("guest-new", "{}", 1)));
+        }
+        try (UserDataArchive archive = new UserDataArchive(dir, 4096)) {
+            assertEquals(11, archive.size());
+            assertFalse(archive.contains("guest-3"));
+            assertEquals(big + 4, archive.read("guest-49").orElseThrow().getJson());
+            assertEquals("{}", archive.read("guest-new").orElseThrow().getJson());
+        }
+        try (DataInputStream idx = new DataInputStream(Files.newInputStream(dir.resolve("archive.idx")))) {
+            idx.readInt();
+            int entries = 0;
+            while (idx.available() > 0) {
+                idx.readUTF();
+                idx.readInt();
+                idx.readLong();
+                idx.readInt();
+                entries++;
+            }
+            assertEquals(11, entries);
+        }
+    }
+
+    @Test
+    void oldIndexLogIsRewrittenOnOpen() throws IOException {
+        try (UserDataArchive archive = new UserDataArchive(dir, SEGMENT_BYTES)) {
+            archive.append(List.of(row("guest-old", "{\"o\":1}", 2)));
+        }
+        // the log as written before entries carried a record length: id, segment, offset
+        try (DataOutputStream idx = new DataOutputStream(Files.newOutputStream(dir.resolve("archive.idx")))) {
+            idx.writeUTF("guest-old");
+            idx.writeInt(0);
+            idx.writeLong(0);
+        }
+        try (UserDataArchive archive = new UserDataArchive(dir, SEGMENT_BYTES)) {
+            assertEquals("{\"o\":1}", archive.read("guest-old").orElseThrow().getJson());
+        }
+        try (UserDataArchive archive = new UserDataArchive(dir, SEGMENT_BYTES)) {
+            assertEquals(2, archive.read("guest-old").orElseThrow().getVersion());
+        }
+    }
+
+    @Test
+    void indexMatchesAMapUnderRandomAppendsAndRemoves() throws IOException {
+        Random random = new Random(3);
+        Map<String, Long> expected = new HashMap<>();
+        try (UserDataArchive archive = new UserDataArchive(dir, 1 << 16)) {
+            for (int step = 0; step < 3000; step++) {
+                String id = "guest-" + random.nextInt(500);
+                if (random.nextInt(3) == 0) {
+                    archive.remove(id);
+                    expected.remove(id);
+                } else {
+                    archive.append(List.of(row(id, "{}", step)));
+                    expected.put(id, (long) step);
+                }
+                if (step % 1000 == 999) archive.compact();
+            }
+            assertEquals(expected.size(), archive.size());
+            for (int i = 0; i < 500; i++) {
+                String id = "guest-" + i;
+                assertEquals(expected.containsKey(id), archive.contains(id), id);
+                if (expected.containsKey(id)) assertEquals(expected.get(id), archive.read(id).orElseThrow().getVersion());
+            }
+        }
+    }
+
+    private long segmentCount() throws IOException {
+        try (var files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".seg")).count();
+        }
+    }
+}
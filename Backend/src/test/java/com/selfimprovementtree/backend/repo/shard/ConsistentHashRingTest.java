@@ -0,0 +1,65 @@
+package com.selfimprovementtree.backend.repo.shard;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashRingTest {
+    private static final int VIRTUAL_NODES = 128;
+    private static final int KEYS = 100_000;
+
+    private static String key(int i) {
+        return i % 2 == 0 ? "guest-" + i : String.valueOf(i); // guest ids and numeric account ids
+    }
+
+    @Test
+    void lookupsAreStable() {
+        ConsistentHashRing a = new ConsistentHashRing(4, VIRTUAL_NODES);
+        ConsistentHashRing b = new ConsistentHashRing(4, VIRTUAL_NODES);
+        for (int i = 0; i < KEYS; i++) {
+            int shard = a.shardFor(key(i));
+            assertTrue(shard >= 0 && shard < 4);
+            assertEquals(shard, a.shardFor(key(i)));
+            assertEquals(shard, b.shardFor(key(i)));
+        }
+    }
+
+    @Test
+    void singleShardTakesEverything() {
+        ConsistentHashRing ring = new ConsistentHashRing(1, VIRTUAL_NODES);
+        for (int i = 0; i < 1000; i++) assertEquals(0, ring.shardFor(key(i)));
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(0, VIRTUAL_NODES));
+    }
+
+    @Test
+    void keysSpreadEvenly() {
+        int shards = 8;
+        ConsistentHashRing ring = new ConsistentHashRing(shards, VIRTUAL_NODES);
+        int[] counts = new int[shards];
+        for (int i = 0; i < KEYS; i++) counts[ring.shardFor(key(i))]++;
+        double fair = (double) KEYS / shards;
+        for (int c : counts) assertTrue(c > fair * 0.7 && c < fair * 1.3, "shard holds " + c + " of " + KEYS);
+    }
+
+    @Test
+    void addingAShardMovesAboutOneNthToIt() {
+        for (int shards = 1; shards <= 8; shards++) {
+            ConsistentHashRing before = new ConsistentHashRing(shards, VIRTUAL_NODES);
+            ConsistentHashRing after = new ConsistentHashRing(shards + 1, VIRTUAL_NODES);
+            int moved = 0;
+            for (int i = 0; i < KEYS; i++) {
+                int from = before.shardFor(key(i));
+                int to = after.shardFor(key(i));
+                if (from == to) continue;
+                // keys only ever move onto the new shard, never between old ones
+                assertEquals(shards, to, "key " + key(i) + " moved from " + from + " to " + to);
+                moved++;
+            }
+            double expected = (double) KEYS / (shards + 1);
+            assertTrue(moved > expected * 0.7 && moved < expected * 1.3,
+                    "moved " + moved + " keys going to " + (shards + 1) + " shards");
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.selfimprovementtree.backend.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdempotencyFilterTest {
+    private final AtomicInteger runs = new AtomicInteger();
+    private IdempotencyFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new IdempotencyFilter(new IdempotencyStore(null, 1000, Long.MAX_VALUE, 86_400_000L, false));
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "waitMs", 5_000L);
+        ReflectionTestUtils.setField(filter, "maxRequestBytes", 1024);
+        ReflectionTestUtils.setField(filter, "maxResponseBytes", 4096);
+    }
+
+    private static MockHttpServletRequest request(String key, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/userdata/guest-1");
+        request.addHeader(IdempotencyFilter.HEADER, key);
+        request.addHeader("Authorization", "Bearer t");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        request.setContentType("application/json");
+        return request;
+    }
+
+    /** Echoes the body it read back with the given status and the run number. */
+    private FilterChain echo(int status) {
+        return (req, res) -> {
+            int run = runs.incrementAndGet();
+            String body = new String(req.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            ((HttpServletResponse) res).setStatus(status);
+            ((HttpServletResponse) res).setHeader("ETag", "\"" + run + "\"");
+            res.setContentType("application/json");
+            res.getWriter().write("{\"run\":" + run + ",\"body\":" + body + "}");
+        };
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest request, FilterChain chain) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    @Test
+    void retryGetsTheFirstResponse() throws Exception {
+        MockHttpServletResponse first = send(request("k1", "{\"a\":1}"), echo(201));
+        MockHttpServletResponse retry = send(request("k1", "{\"a\":1}"), echo(201));
+        assertEquals(1, runs.get());
+        assertEquals(201, retry.getStatus());
+        assertEquals(first.getContentAsString(), retry.getContentAsString());
+        assertEquals("{\"run\":1,\"body\":{\"a\":1}}", retry.getContentAsString());
+        assertEquals("\"1\"", retry.getHeader("ETag"));
+        assertEquals("true", retry.getHeader("Idempotent-Replayed"));
+        assertNull(first.getHeader("Idempotent-Replayed"));
+    }
+
+    @Test
+    void reusedKeyWithAnotherBodyIsRefused() throws Exception {
+        send(request("k1", "{\"a\":1}"), echo(200));
+        MockHttpServletResponse reused = send(request("k1", "{\"a\":2}"), echo(200));
+        assertEquals(422, reused.getStatus());
+        assertTrue(reused.getContentAsString().contains("IDEMPOTENCY_KEY_REUSED"));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void keysAreScopedToTheCaller() throws Exception {
+        send(request("k1", "{}"), echo(200));
+        MockHttpServletRequest other = request("k1", "{}");
+        other.removeHeader("Authorization");
+        other.addHeader("Authorization", "Bearer someone-else");
+        send(other, echo(200));
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void serverErrorsAreNotKept() throws Exception {
+        MockHttpServletResponse failed = send(request("k1", "{}"), echo(503));
+        assertEquals(503, failed.getStatus());
+        MockHttpServletResponse retry = send(request("k1", "{}"), echo(200));
+        assertEquals(200, retry.getStatus());
+        assertNull(retry.getHeader("Idempotent-Replayed"));
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void duplicateWaitsForTheRunningRequest() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FilterChain slow = (req, res) -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            echo(200).doFilter(req, res);
+        };
+        MockHttpServletResponse[] first = new MockHttpServletResponse[1];
+        Thread owner = new Thread(() -> {
+            try {
+                first[0] = send(request("k1", "{}"), slow);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        owner.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        MockHttpServletResponse[] duplicate = new MockHttpServletResponse[1];
+        Thread waiter = new Thread(() -> {
+            try {
+                duplicate[0] = send(request("k1", "{}"), echo(200));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        waiter.start();
+        Thread.sleep(200);
+        release.countDown();
+        owner.join(5_000);
+        waiter.join(5_000);
+
+        assertEquals(1, runs.get());
+        assertEquals(first[0].getContentAsString(), duplicate[0].getContentAsString());
+        assertEquals("true", duplicate[0].getHeader("Idempotent-Replayed"));
+    }
+
+    @Test
+    void duplicateGivesUpAfterTheWait() throws Exception {
+        ReflectionTestUtils.setField(filter, "waitMs", 100L);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread owner = new Thread(() -> {
+            try {
+                send(request("k1", "{}"), (req, res) -> {
+                    started.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        owner.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        MockHttpServletResponse duplicate = send(request("k1", "{}"), echo(200));
+        release.countDown();
+        owner.join(5_000);
+        assertEquals(409, duplicate.getStatus());
+        assertEquals("1", duplicate.getHeader("Retry-After"));
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    void oversizedBodiesPassThroughUnguarded() throws Exception {
+        String big = "\"" + "x".repeat(2000) + "\"";
+        MockHttpServletResponse first = send(request("k1", big), echo(200));
+        MockHttpServletResponse second = send(request("k1", big), echo(200));
+        assertEquals(2, runs.get());
+        assertTrue(first.getContentAsString().contains(big));
+        assertNull(second.getHeader("Idempotent-Replayed"));
+    }
+
+    @Test
+    void blankKeyIsRejected() throws Exception {
+        MockHttpServletResponse response = send(request(" ", "{}"), echo(200));
+        assertEquals(400, response.getStatus());
+        assertEquals(0, runs.get());
+    }
+}
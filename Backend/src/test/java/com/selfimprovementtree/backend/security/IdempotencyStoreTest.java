@@ -0,0 +1,90 @@
+package com.selfimprovementtree.backend.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdempotencyStoreTest {
+    private static final long DAY = 86_400_000L;
+
+    private static IdempotencyStore.Stored response(int bodyBytes) {
+        return new IdempotencyStore.Stored(200, "application/json", Map.of(), new byte[bodyBytes]);
+    }
+
+    private static void run(IdempotencyStore store, String key, int bodyBytes) {
+        IdempotencyStore.Claim claim = store.claim(key, "fp");
+        assertTrue(claim.owner(), key);
+        store.complete(key, claim.entry(), response(bodyBytes));
+    }
+
+    @Test
+    void duplicatesShareTheFirstEntry() {
+        IdempotencyStore store = new IdempotencyStore(null, 100, Long.MAX_VALUE, DAY, false);
+        IdempotencyStore.Claim first = store.claim("k", "fp");
+        IdempotencyStore.Claim second = store.claim("k", "other");
+        assertTrue(first.owner());
+        assertFalse(second.owner());
+        assertSame(first.entry(), second.entry());
+        assertEquals("fp", second.entry().fingerprint);
+
+        store.complete("k", first.entry(), response(10));
+        assertEquals(10, second.entry().result.join().body().length);
+    }
+
+    @Test
+    void unreplayableResponsesForgetTheKey() {
+        IdempotencyStore store = new IdempotencyStore(null, 100, Long.MAX_VALUE, DAY, false);
+        IdempotencyStore.Claim first = store.claim("k", "fp");
+        store.complete("k", first.entry(), null);
+        assertEquals(0, store.size());
+        assertEquals(0, store.retainedBytes());
+        assertTrue(store.claim("k", "fp").owner());
+    }
+
+    @Test
+    void retainedBytesAreCapped() {
+        IdempotencyStore store = new IdempotencyStore(null, 1000, 100_000, DAY, false);
+        for (int i = 0; i < 50; i++) run(store, "k" + i, 10_000);
+        assertTrue(store.retainedBytes() <= 100_000, store.retainedBytes() + " bytes retained");
+        assertTrue(store.size() < 10);
+        // the newest keys are the ones kept
+        assertFalse(store.claim("k49", "fp").owner());
+        assertTrue(store.claim("k0", "fp").owner());
+    }
+
+    @Test
+    void entryCountIsCapped() {
+        IdempotencyStore store = new IdempotencyStore(null, 5, Long.MAX_VALUE, DAY, false);
+        for (int i = 0; i < 20; i++) run(store, "k" + i, 1);
+        assertEquals(5, store.size());
+    }
+
+    @Test
+    void aRunningKeyAtTheHeadDoesNotBlockEviction() {
+        IdempotencyStore store = new IdempotencyStore(null, 5, 20_000, DAY, false);
+        IdempotencyStore.Claim running = store.claim("slow", "fp");
+        for (int i = 0; i < 20; i++) run(store, "k" + i, 2_000);
+        assertTrue(store.size() <= 5);
+        assertTrue(store.retainedBytes() <= 20_000);
+        // still in flight, so its duplicates still wait for it
+        IdempotencyStore.Claim duplicate = store.claim("slow", "fp");
+        assertFalse(duplicate.owner());
+        assertSame(running.entry(), duplicate.entry());
+
+        store.complete("slow", running.entry(), response(1));
+        assertFalse(store.claim("slow", "fp").owner());
+    }
+
+    @Test
+    void expiredKeysRunAgain() throws InterruptedException {
+        IdempotencyStore store = new IdempotencyStore(null, 100, Long.MAX_VALUE, 50, false);
+        run(store, "k", 1);
+        Thread.sleep(100);
+        assertTrue(store.claim("k", "fp").owner());
+    }
+}
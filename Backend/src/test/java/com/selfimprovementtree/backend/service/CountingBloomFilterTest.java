@@ -0,0 +1,119 @@
+package com.selfimprovementtree.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CountingBloomFilterTest {
+
+    private static String name(int i) {
+        return "user" + i + "@example.com";
+    }
+
+    @Test
+    void addThenRemove() {
+        CountingBloomFilter filter = new CountingBloomFilter(1000, 0.01);
+        assertFalse(filter.mightContain("alice"));
+        filter.add("alice");
+        assertTrue(filter.mightContain("alice"));
+        filter.remove("alice");
+        assertFalse(filter.mightContain("alice"));
+    }
+
+    @Test
+    void countsRepeatedAdds() {
+        CountingBloomFilter filter = new CountingBloomFilter(1000, 0.01);
+        filter.add("alice");
+        filter.add("alice");
+        filter.remove("alice");
+        assertTrue(filter.mightContain("alice"));
+        filter.remove("alice");
+        assertFalse(filter.mightContain("alice"));
+    }
+
+    @Test
+    void removingFromEmptyCountersDoesNotWrap() {
+        CountingBloomFilter filter = new CountingBloomFilter(1000, 0.01);
+        filter.remove("bob");
+        assertFalse(filter.mightContain("bob"));
+        filter.add("bob");
+        assertTrue(filter.mightContain("bob"));
+    }
+
+    @Test
+    void noFalseNegativesForInsertedNames() {
+        int n = 20_000;
+        double fpp = 0.01;
+        CountingBloomFilter filter = new CountingBloomFilter(n, fpp);
+        for (int i = 0; i < n; i++) filter.add(name(i));
+        for (int i = 0; i < n; i++) assertTrue(filter.mightContain(name(i)), name(i));
+
+        // half of them leave again; the rest are still found and the others mostly are not
+        for (int i = 0; i < n; i += 2) filter.remove(name(i));
+        int falsePositives = 0;
+        for (int i = 0; i < n; i++) {
+            if (i % 2 == 1) assertTrue(filter.mightContain(name(i)), name(i));
+            else if (filter.mightContain(name(i))) falsePositives++;
+        }
+        assertTrue(falsePositives < 3 * fpp * n / 2, falsePositives + " false positives");
+
+        int unseen = 0;
+        for (int i = n; i < 2 * n; i++) if (filter.mightContain(name(i))) unseen++;
+        assertTrue(unseen < 3 * fpp * n, unseen + " false positives among names never added");
+    }
+
+    @Test
+    void saturatedCountersNeverDropToAFalseNegative() {
+        // far more keys than a four-key filter is sized for, so most counters stick at 15
+        CountingBloomFilter filter = new CountingBloomFilter(4, 0.1);
+        int n = 500;
+        for (int i = 0; i < n; i++) filter.add(name(i));
+        for (int i = 1; i < n; i++) filter.remove(name(i));
+        assertTrue(filter.mightContain(name(0)));
+
+        // removing the same keys again must not wear a stuck counter down either
+        for (int i = 1; i < n; i++) filter.remove(name(i));
+        assertTrue(filter.mightContain(name(0)));
+    }
+
+    @Test
+    void saturationFromRepeatsOfOneKey() {
+        CountingBloomFilter filter = new CountingBloomFilter(1000, 0.01);
+        for (int i = 0; i < 20; i++) filter.add("carol");
+        for (int i = 0; i < 20; i++) filter.remove("carol");
+        // the counters reached 15 after 15 adds and lost the rest of the count; they stay set
+        assertTrue(filter.mightContain("carol"));
+    }
+
+    @Test
+    void concurrentAddsAreAllCounted() throws InterruptedException {
+        int threads = 8;
+        int perThread = 5_000;
+        CountingBloomFilter filter = new CountingBloomFilter(threads * perThread, 0.01);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int from = t * perThread;
+            workers.add(new Thread(() -> IntStream.range(from, from + perThread).forEach(i -> filter.add(name(i)))));
+        }
+        workers.forEach(Thread::start);
+        for (Thread w : workers) w.join();
+        for (int i = 0; i < threads * perThread; i++) assertTrue(filter.mightContain(name(i)), name(i));
+
+        // concurrent removes are not lost either; only counters that saturated stay set
+        workers.clear();
+        for (int t = 0; t < threads; t++) {
+            int from = t * perThread;
+            workers.add(new Thread(() -> IntStream.range(from, from + perThread).forEach(i -> filter.remove(name(i)))));
+        }
+        workers.forEach(Thread::start);
+        for (Thread w : workers) w.join();
+        int left = 0;
+        for (int i = 0; i < threads * perThread; i++) if (filter.mightContain(name(i))) left++;
+        assertTrue(left < threads * perThread / 100, left + " names still reported");
+    }
+}
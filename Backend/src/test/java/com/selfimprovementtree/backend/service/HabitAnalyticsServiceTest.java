@@ -0,0 +1,135 @@
+package com.selfimprovementtree.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.selfimprovementtree.backend.model.HabitStatEntity;
+import com.selfimprovementtree.backend.model.UserDataEntity;
+import com.selfimprovementtree.backend.repo.HabitStatRepository;
+import com.selfimprovementtree.backend.repo.InMemoryUserDataStore;
+import com.selfimprovementtree.backend.repo.UserDataArchive;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HabitAnalyticsServiceTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+    // the habit_stat table
+    private final List<HabitStatEntity> statRows = new ArrayList<>();
+    private final List<HabitAnalyticsService> services = new ArrayList<>();
+    private Runnable duringScan;
+    private final InMemoryUserDataStore store = new InMemoryUserDataStore() {
+        @Override
+        public void scan(Consumer<UserDataEntity> consumer) {
+            super.scan(e -> {
+                consumer.accept(e);
+                Runnable r = duringScan;
+                duringScan = null;
+                if (r != null) r.run();
+            });
+        }
+    };
+    private UserDataArchive archive;
+    private HabitAnalyticsService analytics;
+    private UserDataService userData;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        archive = new UserDataArchive(dir, 1 << 20);
+        analytics = service();
+        userData = new UserDataService(store, archive, event -> {
+            if (event instanceof UserDataChangedEvent e) analytics.onChange(e);
+        }, new UserDataMerger(mapper), new UserDataRevisionCache(100, 1_000_000));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        services.forEach(HabitAnalyticsService::shutdown);
+        archive.close();
+    }
+
+    private HabitAnalyticsService service() {
+        HabitStatRepository repo = (HabitStatRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{HabitStatRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "findAll" -> new ArrayList<>(statRows);
+                    case "saveAll" -> {
+                        statRows.clear();
+                        ((Iterable<?>) args[0]).forEach(r -> statRows.add((HabitStatEntity) r));
+                        yield args[0];
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        HabitAnalyticsService s = new HabitAnalyticsService(store, repo, mapper, 2);
+        services.add(s);
+        return s;
+    }
+
+    /** What a rebuild over the store as it is now reports. */
+    private Map<String, Object> rescanned() {
+        HabitAnalyticsService fresh = service();
+        fresh.rebuild();
+        return fresh.summary();
+    }
+
+    private static String doc(int exp, int stage, boolean checked) {
+        return "{\"exp\":" + exp + ",\"treeStage\":" + stage + ",\"goodHabits\":[{\"id\":\"h1\",\"expLevel\":" + stage
+                + "}],\"checkedGoodToday\":{" + (checked ? "\"good:id:h1\":true" : "") + "}}";
+    }
+
+    @Test
+    void writesKeepTheAggregateEqualToARebuild() {
+        for (int i = 0; i < 20; i++) userData.upsert("u" + i, doc(i, 1, false));
+        analytics.rebuild();
+        assertEquals(rescanned(), analytics.summary());
+
+        for (int i = 0; i < 20; i += 2) userData.upsert("u" + i, doc(i * 10, 2 + i % 5, i % 4 == 0));
+        userData.upsert("new", doc(5, 3, true));
+        userData.apply("u1", json -> json.replace("\"exp\":1", "\"exp\":100"));
+        assertEquals(rescanned(), analytics.summary());
+        assertEquals(21L, analytics.summary().get("documents"));
+    }
+
+    @Test
+    void changesDuringARebuildAreCountedOnce() {
+        for (int i = 0; i < 10; i++) userData.upsert("u" + i, doc(i, 1, false));
+        UserDataEntity u5 = store.findById("u5").orElseThrow();
+        String u5Before = doc(0, 1, false);
+        duringScan = () -> {
+            // already scanned, and not yet scanned but past the scan's copy
+            userData.upsert("u0", doc(70, 4, true));
+            userData.upsert("u9", doc(90, 5, true));
+            // the event of a write the scan already read, delivered late
+            analytics.onChange(new UserDataChangedEvent("u5", u5.getVersion(), OffsetDateTime.now(), u5.getJson(),
+                    u5Before));
+        };
+        analytics.rebuild();
+
+        assertEquals(rescanned(), analytics.summary());
+        assertEquals(10L, analytics.summary().get("documents"));
+    }
+
+    @Test
+    void restartStartsFromTheFlushedRows() {
+        for (int i = 0; i < 5; i++) userData.upsert("u" + i, doc(i, 2, i % 2 == 0));
+        analytics.rebuild();
+        userData.upsert("u1", doc(40, 3, true));
+        analytics.flush();
+
+        HabitAnalyticsService restarted = service();
+        restarted.load();
+        assertEquals(analytics.summary(), restarted.summary());
+    }
+}
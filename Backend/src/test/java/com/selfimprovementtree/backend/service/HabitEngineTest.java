@@ -0,0 +1,212 @@
+package com.selfimprovementtree.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.selfimprovementtree.backend.config.GameRulesConfig;
+import com.selfimprovementtree.backend.repo.InMemoryUserDataStore;
+import com.selfimprovementtree.backend.repo.UserDataArchive;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/** Pins the balance in game-rules.json as the engine applies it. */
+class HabitEngineTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private UserDataArchive archive;
+    private UserDataService userData;
+    private HabitEngine engine;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        archive = new UserDataArchive(dir, 1 << 20);
+        userData = new UserDataService(new InMemoryUserDataStore(), archive, event -> {},
+                new UserDataMerger(mapper), new UserDataRevisionCache(100, 1_000_000));
+        engine = new HabitEngine(new GameRulesConfig().gameRules(mapper, new ClassPathResource("game-rules.json")),
+                userData, mapper);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        archive.close();
+    }
+
+    /** Single quotes for readability. */
+    private void seed(String id, String doc) {
+        userData.upsert(id, doc.replace('\'', '"'));
+    }
+
+    private JsonNode doc(String id) throws IOException {
+        return mapper.readTree(userData.get(id).orElseThrow().getJson());
+    }
+
+    private long version(String id) {
+        return userData.get(id).orElseThrow().getVersion();
+    }
+
+    /** Type first, then field/value pairs. */
+    private static Map<String, String> action(String type, String... fields) {
+        Map<String, String> a = new LinkedHashMap<>();
+        a.put("type", type);
+        for (int i = 0; i < fields.length; i += 2) a.put(fields[i], fields[i + 1]);
+        return a;
+    }
+
+    private HabitEngine.ActionRejectedException rejected(String id, String today, List<Map<String, String>> actions) {
+        return assertThrows(HabitEngine.ActionRejectedException.class, () -> engine.apply(id, today, actions));
+    }
+
+    @Test
+    void goodCheckInPaysByLevel() throws IOException {
+        seed("u", "{'coins':0,'gems':0,'exp':0,'treeStage':1,'expToLevel':40,"
+                + "'goodHabits':[{'id':'h1'},{'id':'h2','expLevel':1,'goldLevel':5}]}");
+        Map<String, Object> result = engine.apply("u", null,
+                List.of(action("checkGood", "habitId", "h1"), action("checkGood", "habitId", "h2")));
+
+        JsonNode doc = doc("u");
+        assertEquals(10 + 20, doc.get("exp").asInt());
+        assertEquals(10 + 100, doc.get("coins").asInt());
+        assertEquals(true, doc.get("checkedGoodToday").get("good:id:h2").asBoolean());
+        assertEquals(Map.of("exp", 30L, "coins", 110L), result.get("delta"));
+        assertEquals(version("u"), result.get("version"));
+    }
+
+    @Test
+    void expCarriesOverThroughSeveralStages() throws IOException {
+        // level 9 is clamped to the last entry, 200 exp: 40 to stage 2, 100 to stage 3, 60 left of 160
+        seed("u", "{'gems':0,'exp':0,'treeStage':1,'expToLevel':40,'goodHabits':[{'id':'h1','expLevel':9}]}");
+        engine.apply("u", null, List.of(action("checkGood", "habitId", "h1")));
+
+        JsonNode doc = doc("u");
+        assertEquals(3, doc.get("treeStage").asInt());
+        assertEquals(60, doc.get("exp").asInt());
+        assertEquals(160, doc.get("expToLevel").asInt());
+        assertEquals(1 + 2, doc.get("gems").asInt());
+    }
+
+    @Test
+    void lastStageIsTheCeiling() throws IOException {
+        seed("u", "{'gems':0,'exp':350,'treeStage':6,'expToLevel':400,'goodHabits':[{'id':'h1','expLevel':4}]}");
+        engine.apply("u", null, List.of(action("checkGood", "habitId", "h1")));
+
+        JsonNode doc = doc("u");
+        assertEquals(7, doc.get("treeStage").asInt());
+        assertEquals(50, doc.get("exp").asInt());
+        assertEquals(0, doc.get("expToLevel").asInt());
+        assertEquals(6, doc.get("gems").asInt());
+    }
+
+    @Test
+    void badCheckInAddsDecayUpToTheCapAndCostsExp() throws IOException {
+        seed("u", "{'exp':5,'decay':190,"
+                + "'badHabits':[{'id':'b1'},{'id':'b2','decayLevel':5,'expLossLevel':5}]}");
+        engine.apply("u", null, List.of(action("checkBad", "habitId", "b2")));
+        assertEquals(192, doc("u").get("decay").asInt());
+        assertEquals(5, doc("u").get("exp").asInt());
+
+        engine.apply("u", null, List.of(action("checkBad", "habitId", "b1")));
+        assertEquals(200, doc("u").get("decay").asInt()); // 212, capped
+        assertEquals(0, doc("u").get("exp").asInt());
+    }
+
+    @Test
+    void upgradesCostTheirLevelsPrice() throws IOException {
+        // good: 10 + 50 + 100 + 500 + 1000, bad: 10 + 20 + 50 + 100 + 200
+        seed("u", "{'coins':2040,'goodHabits':[{'id':'h1'}],'badHabits':[{'id':'b1'}]}");
+        List<Map<String, String>> actions = new ArrayList<>();
+        for (int i = 0; i < 5; i++) actions.add(action("upgrade", "habitId", "h1", "stat", "goldLevel"));
+        for (int i = 0; i < 5; i++) actions.add(action("upgrade", "habitId", "b1", "stat", "expLossLevel"));
+        engine.apply("u", null, actions);
+
+        JsonNode doc = doc("u");
+        assertEquals(0, doc.get("coins").asInt());
+        assertEquals(5, doc.get("goodHabits").get(0).get("goldLevel").asInt());
+        assertEquals(5, doc.get("badHabits").get(0).get("expLossLevel").asInt());
+
+        HabitEngine.ActionRejectedException ex =
+                rejected("u", null, List.of(action("upgrade", "habitId", "h1", "stat", "goldLevel")));
+        assertEquals("MAX_LEVEL", ex.getMessage());
+    }
+
+    @Test
+    void shopPricesRiseWithEachCalendar() throws IOException {
+        engine.apply("fresh", null, List.of(action("purchase", "item", "calendar")));
+        JsonNode doc = doc("fresh"); // from the defaults: 10 gems, one good habit slot
+        assertEquals(0, doc.get("gems").asInt());
+        assertEquals(1, doc.get("calendarBoughtCount").asInt());
+        assertEquals(2, doc.get("maxGoodHabits").asInt());
+
+        seed("u", "{'gems':90,'calendarBoughtCount':1,'maxGoodHabits':2}");
+        engine.apply("u", null, List.of(action("purchase", "item", "calendar"),
+                action("purchase", "item", "calendar"), action("purchase", "item", "calendar")));
+        assertEquals(0, doc("u").get("gems").asInt()); // 20 + 30 + 40
+        assertEquals(5, doc("u").get("maxGoodHabits").asInt());
+
+        seed("u", "{'gems':1000,'calendarBoughtCount':5}");
+        assertEquals("SOLD_OUT", rejected("u", null, List.of(action("purchase", "item", "calendar"))).getMessage());
+    }
+
+    @Test
+    void invalidActionRejectsTheWholeBatch() throws IOException {
+        seed("u", "{'coins':1649,'goodHabits':[{'id':'h1'}],'checkedGoodToday':{}}");
+        long before = version("u");
+
+        List<Map<String, String>> twice = List.of(action("checkGood", "habitId", "h1"),
+                action("checkGood", "habitId", "h1"));
+        HabitEngine.ActionRejectedException ex = rejected("u", null, twice);
+        assertEquals(1, ex.getIndex());
+        assertEquals("ALREADY_CHECKED", ex.getMessage());
+
+        // 1649 + 10 from the check-in is one coin short of the 1660 the five upgrades cost
+        List<Map<String, String>> upgrades = new ArrayList<>();
+        upgrades.add(action("checkGood", "habitId", "h1"));
+        for (int i = 0; i < 5; i++) upgrades.add(action("upgrade", "habitId", "h1", "stat", "expLevel"));
+        ex = rejected("u", null, upgrades);
+        assertEquals(5, ex.getIndex());
+        assertEquals("NOT_ENOUGH_COINS", ex.getMessage());
+
+        ex = rejected("u", null, List.of(action("checkGood", "habitId", "h1"), action("dance")));
+        assertEquals(1, ex.getIndex());
+        assertEquals("UNKNOWN_ACTION", ex.getMessage());
+        assertEquals("HABIT_NOT_FOUND",
+                rejected("u", null, List.of(action("checkGood", "habitId", "nope"))).getMessage());
+
+        JsonNode doc = doc("u");
+        assertEquals(before, version("u"));
+        assertEquals(1649, doc.get("coins").asInt());
+        assertEquals(0, doc.get("checkedGoodToday").size());
+        assertEquals(0, doc.get("goodHabits").get(0).path("expLevel").asInt());
+    }
+
+    @Test
+    void aNewDayClearsTheDailyChecks() throws IOException {
+        seed("u", "{'coins':0,'lastOpenDate':'2025-03-01','goodHabits':[{'id':'h1'}],'badHabits':[{'id':'b1'}],"
+                + "'checkedGoodToday':{'good:id:h1':true},'checkedBadToday':{'bad:id:b1':true}}");
+        List<Map<String, String>> check = List.of(action("checkGood", "habitId", "h1"));
+        assertEquals("ALREADY_CHECKED", rejected("u", "2025-03-01", check).getMessage());
+        // a device still on yesterday does not roll the day back
+        assertEquals("ALREADY_CHECKED", rejected("u", "2025-02-28", check).getMessage());
+
+        Map<String, Object> result = engine.apply("u", "2025-03-02", check);
+        JsonNode doc = doc("u");
+        assertEquals("2025-03-02", doc.get("lastOpenDate").asText());
+        assertEquals(true, doc.get("checkedGoodToday").get("good:id:h1").asBoolean());
+        assertEquals(0, doc.get("checkedBadToday").size());
+        assertEquals(10, doc.get("coins").asInt());
+        assertEquals("2025-03-02", ((JsonNode) ((Map<?, ?>) result.get("set")).get("lastOpenDate")).asText());
+    }
+}
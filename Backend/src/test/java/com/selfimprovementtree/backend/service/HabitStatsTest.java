@@ -0,0 +1,93 @@
+package com.selfimprovementtree.backend.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HabitStatsTest {
+    private static final String DOC = json("{'exp':120,'decay':30,'treeStage':3,"
+            + "'goodHabits':[{'id':'h1'},{'id':'h2','expLevel':2},{'id':'h3','expLevel':9},{'name':'no id'}],"
+            + "'badHabits':[{'id':'b1','decayLevel':1,'upgrades':{'x':1}}],"
+            + "'checkedGoodToday':{'good:id:h2':true,'good:id:h3':false,'good:id:gone':true},"
+            + "'checkedBadToday':{'bad:id:b1':true}}");
+
+    private final JsonFactory factory = new ObjectMapper().getFactory();
+
+    /** Single quotes for readability. */
+    private static String json(String s) {
+        return s.replace('\'', '"');
+    }
+
+    private HabitStats of(String... docs) {
+        HabitStats s = new HabitStats();
+        for (String doc : docs) s.addDocument(factory, doc);
+        return s;
+    }
+
+    @Test
+    void parsesCountersStagesLevelsAndChecks() {
+        HabitStats s = of(DOC);
+        assertEquals(1, s.documents);
+        assertEquals(120, s.expSum);
+        assertEquals(30, s.decaySum);
+        assertArrayEquals(new long[]{0, 0, 0, 1, 0, 0, 0, 0}, s.treeStage);
+        // level 9 lands in the last bucket; a habit without an id is counted but can never be checked
+        assertArrayEquals(new long[]{2, 0, 1, 0, 0, 1}, s.goodByLevel);
+        assertArrayEquals(new long[]{0, 0, 1, 0, 0, 0}, s.goodCheckedByLevel);
+        assertArrayEquals(new long[]{0, 1, 0, 0, 0, 0}, s.badByLevel);
+        assertArrayEquals(new long[]{0, 1, 0, 0, 0, 0}, s.badCheckedByLevel);
+    }
+
+    @Test
+    void stagesAreClampedAndDefaultToOne() {
+        HabitStats s = of(json("{'treeStage':12}"), json("{'treeStage':0}"), json("{'exp':'lots'}"), "{}");
+        assertEquals(4, s.documents);
+        assertEquals(0, s.expSum);
+        assertEquals(3, s.treeStage[1]);
+        assertEquals(1, s.treeStage[7]);
+    }
+
+    @Test
+    void malformedDocumentsContributeNothing() {
+        HabitStats s = of(null, "[1,2]", "not json", json("{'exp':5,'decay':"), json("{'exp':5,'treeStage':2"));
+        assertEquals(new HabitStats().toRows(), s.toRows());
+    }
+
+    @Test
+    void replacingAContributionMatchesRescanning() {
+        String before = json("{'exp':10,'treeStage':1,'goodHabits':[{'id':'h1'}],'checkedGoodToday':{}}");
+        String after = json("{'exp':50,'treeStage':2,'goodHabits':[{'id':'h1','expLevel':1}],"
+                + "'checkedGoodToday':{'good:id:h1':true}}");
+
+        HabitStats live = of(DOC, before);
+        HabitStats delta = of(after);
+        delta.add(of(before), -1);
+        live.add(delta, 1);
+
+        assertEquals(of(DOC, after).toRows(), live.toRows());
+    }
+
+    @Test
+    void rowsRoundTrip() {
+        HabitStats s = of(DOC, json("{'treeStage':7,'decay':4}"));
+        assertEquals(s.toRows(), HabitStats.fromRows(s.toRows()).toRows());
+        assertEquals(s.toRows(), s.copy().toRows());
+    }
+
+    @Test
+    void summaryReportsAveragesAndRates() {
+        Map<String, Object> summary = of(DOC, json("{'exp':0,'decay':10}")).summary();
+        assertEquals(2L, summary.get("documents"));
+        assertEquals(60.0, summary.get("averageExp"));
+        assertEquals(20.0, summary.get("averageDecay"));
+        assertEquals(Map.of("habits", 1L, "checked", 1L, "rate", 1.0),
+                ((Map<?, ?>) summary.get("goodHabitCompletionByExpLevel")).get("2"));
+        assertEquals(Map.of("habits", 2L, "checked", 0L, "rate", 0.0),
+                ((Map<?, ?>) summary.get("goodHabitCompletionByExpLevel")).get("0"));
+    }
+}
@@ -0,0 +1,127 @@
+package com.selfimprovementtree.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTest {
+    private static final int M = 1 << HyperLogLog.PRECISION;
+    private static final int MAX_RANK = 64 - HyperLogLog.PRECISION + 1;
+
+    /** A hash that lands in register {@code index} with exactly {@code rank}. */
+    private static long hashFor(int index, int rank) {
+        long rest = rank == MAX_RANK ? 0 : 1L << (64 - HyperLogLog.PRECISION - rank);
+        return ((long) index << (64 - HyperLogLog.PRECISION)) | rest;
+    }
+
+    /** Register {@code index} holds exactly {@code rank}; the probe raises it by one. */
+    private static void assertRegister(HyperLogLog h, int index, int rank) {
+        assertFalse(h.add(hashFor(index, rank)), "register " + index + " below " + rank);
+        if (rank < MAX_RANK) assertTrue(h.add(hashFor(index, rank + 1)), "register " + index + " above " + rank);
+    }
+
+    private static HyperLogLog sketchOf(int from, int to) {
+        HyperLogLog h = new HyperLogLog();
+        for (int i = from; i < to; i++) h.add(HyperLogLog.hash("user-" + i));
+        return h;
+    }
+
+    private static void assertWithinStandardErrors(long actual, int expected, double errors) {
+        double bound = errors * HyperLogLog.standardError() * expected;
+        assertTrue(Math.abs(actual - expected) <= bound, "estimate " + actual + " for " + expected);
+    }
+
+    @Test
+    void addIsIdempotent() {
+        HyperLogLog h = new HyperLogLog();
+        assertTrue(h.add(hashFor(5, 3)));
+        assertFalse(h.add(hashFor(5, 3)));
+        assertFalse(h.add(hashFor(5, 2)));
+        assertTrue(h.add(hashFor(5, 4)));
+    }
+
+    @Test
+    void sparseRoundTrip() {
+        HyperLogLog h = new HyperLogLog();
+        // gaps of 0, 1 and more than 127 registers exercise the one- and two-byte varints
+        int[] indexes = {0, 1, 3, 200, 201, 5000, M - 1};
+        for (int k = 0; k < indexes.length; k++) h.add(hashFor(indexes[k], 1 + k * 7));
+        byte[] bytes = h.toBytes();
+        assertEquals(0, bytes[0]);
+        assertTrue(bytes.length < 2 + M * 6 / 8);
+
+        HyperLogLog back = HyperLogLog.fromBytes(bytes);
+        assertArrayEquals(bytes, back.toBytes());
+        for (int k = 0; k < indexes.length; k++) assertRegister(back, indexes[k], 1 + k * 7);
+        assertTrue(back.add(hashFor(2, 1)), "register 2 is empty");
+    }
+
+    @Test
+    void denseRoundTripAcrossByteBoundaries() {
+        // every register set, with values using all six bits, so each of the four bit offsets
+        // (0, 6, 4, 2 within a byte) carries a value that spills into the next byte when the offset is above 2
+        HyperLogLog h = new HyperLogLog();
+        for (int i = 0; i < M; i++) h.add(hashFor(i, rankAt(i)));
+        byte[] bytes = h.toBytes();
+        assertEquals(1, bytes[0]);
+        assertEquals(2 + M * 6 / 8, bytes.length);
+
+        HyperLogLog back = HyperLogLog.fromBytes(bytes);
+        assertArrayEquals(bytes, back.toBytes());
+        for (int i = 0; i < M; i++) assertRegister(back, i, rankAt(i));
+    }
+
+    private static int rankAt(int i) {
+        int[] ranks = {MAX_RANK, 1, 32, 31, 42, 21, 48, 7, 15};
+        return ranks[i % ranks.length];
+    }
+
+    @Test
+    void emptyAndForeignBytes() {
+        assertEquals(0, HyperLogLog.fromBytes(null).estimate());
+        assertEquals(0, HyperLogLog.fromBytes(new byte[0]).estimate());
+        assertEquals(0, HyperLogLog.fromBytes(new HyperLogLog().toBytes()).estimate());
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[] {0, 12}));
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[] {1, HyperLogLog.PRECISION, 0}));
+    }
+
+    @Test
+    void mergeEqualsSketchOfTheUnion() {
+        HyperLogLog a = sketchOf(0, 30_000);
+        HyperLogLog b = sketchOf(20_000, 50_000);
+        a.merge(b);
+        assertArrayEquals(sketchOf(0, 50_000).toBytes(), a.toBytes());
+
+        // merging again, or with an empty sketch, changes nothing
+        byte[] before = a.toBytes();
+        a.merge(b);
+        a.merge(new HyperLogLog());
+        assertArrayEquals(before, a.toBytes());
+    }
+
+    @Test
+    void estimateAtSmallCardinality() {
+        assertWithinStandardErrors(sketchOf(0, 1_000).estimate(), 1_000, 3);
+        assertEquals(0, new HyperLogLog().estimate());
+        assertEquals(1, sketchOf(0, 1).estimate());
+    }
+
+    @Test
+    void estimateAroundTheLinearCountingSwitch() {
+        // linear counting is used up to about 3m distinct keys, the raw estimate above
+        for (int n : new int[] {10_000, 40_000, 50_000, 60_000, 100_000}) {
+            assertWithinStandardErrors(sketchOf(0, n).estimate(), n, 3);
+        }
+    }
+
+    @Test
+    void estimateAtLargeCardinality() {
+        HyperLogLog h = sketchOf(0, 1_000_000);
+        assertWithinStandardErrors(h.estimate(), 1_000_000, 3);
+        assertWithinStandardErrors(HyperLogLog.fromBytes(h.toBytes()).estimate(), 1_000_000, 3);
+    }
+}
@@ -0,0 +1,172 @@
+package com.selfimprovementtree.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+    private static final long W = 64;
+
+    /** Steps one tick at a time and records the tick each id fired at; fails on a second firing. */
+    private static final class Recorder {
+        final TimingWheel wheel;
+        final Map<Long, Long> firedAt = new HashMap<>();
+        final Map<Long, Integer> tags = new HashMap<>();
+        long now;
+
+        Recorder(TimingWheel wheel, long now) {
+            this.wheel = wheel;
+            this.now = now;
+        }
+
+        void stepTo(long target) {
+            while (now < target) {
+                now++;
+                wheel.advance(now, (id, tag) -> {
+                    assertNull(firedAt.put(id, now), "id " + id + " fired twice");
+                    tags.put(id, tag);
+                });
+            }
+        }
+    }
+
+    @Test
+    void firesEachIdExactlyOnceAtItsDeadline() {
+        long start = 5 * W * W + 17; // not aligned to any level
+        TimingWheel wheel = new TimingWheel(1, 3, start);
+        long[] offsets = {1, 2, W - 1, W, W + 1, W * W - 1, W * W, W * W + 1, W * W * W - 1};
+        for (int i = 0; i < offsets.length; i++) wheel.schedule(i, start + offsets[i], i * 10);
+        assertEquals(offsets.length, wheel.size());
+
+        Recorder r = new Recorder(wheel, start);
+        r.stepTo(start + W * W * W);
+        for (int i = 0; i < offsets.length; i++) {
+            assertEquals(start + offsets[i], r.firedAt.get((long) i), "offset " + offsets[i]);
+            assertEquals(i * 10, r.tags.get((long) i));
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void deadlinesPastTheTopLevelArePlacedAgain() {
+        // three levels span 64^3 ticks; these sit clamped in the top level and go round it more than once
+        long start = 123;
+        TimingWheel wheel = new TimingWheel(1, 3, start);
+        long[] offsets = {W * W * W, W * W * W + 1, W * W * W + 5, 2 * W * W * W + W + 3, 3 * W * W * W - 1};
+        for (int i = 0; i < offsets.length; i++) wheel.schedule(i, start + offsets[i], 0);
+
+        Recorder r = new Recorder(wheel, start);
+        r.stepTo(start + 3 * W * W * W);
+        for (int i = 0; i < offsets.length; i++) {
+            assertEquals(start + offsets[i], r.firedAt.get((long) i), "offset " + offsets[i]);
+        }
+    }
+
+    @Test
+    void firesAtTheFullSpanOfFiveLevels() {
+        // 64^5 + k with five levels; advanced in big steps, checking nothing fires a tick early
+        long start = 1;
+        TimingWheel wheel = new TimingWheel(1, 5, start);
+        long[] deadlines = {start + 1, start + W, start + W * W, start + W * W * W * W * W + 7};
+        for (int i = 0; i < deadlines.length; i++) wheel.schedule(i, deadlines[i], 0);
+
+        List<Long> fired = new ArrayList<>();
+        for (int i = 0; i < deadlines.length; i++) {
+            wheel.advance(deadlines[i] - 1, (id, tag) -> fired.add(id));
+            assertEquals(i, fired.size(), "fired early before deadline " + i);
+            wheel.advance(deadlines[i], (id, tag) -> fired.add(id));
+            assertEquals(List.of((long) i), fired.subList(i, fired.size()));
+        }
+    }
+
+    @Test
+    void pastDeadlinesFireOnTheNextTick() {
+        TimingWheel wheel = new TimingWheel(1000, 5, 50_000);
+        wheel.schedule(1, 0, 0);
+        wheel.schedule(2, 50_000, 0);
+        wheel.schedule(3, 50_999, 0); // same tick as now
+        List<Long> fired = new ArrayList<>();
+        assertEquals(0, wheel.advance(50_999, (id, tag) -> fired.add(id)));
+        assertEquals(3, wheel.advance(51_000, (id, tag) -> fired.add(id)));
+        assertEquals(3, fired.size());
+    }
+
+    @Test
+    void cancelAndReschedule() {
+        long start = 1000;
+        TimingWheel wheel = new TimingWheel(1, 4, start);
+        wheel.schedule(1, start + 10, 1);
+        wheel.schedule(2, start + 10, 2);
+        wheel.schedule(3, start + 5000, 3);
+        wheel.schedule(4, start + 20, 4);
+
+        assertTrue(wheel.cancel(2));
+        assertFalse(wheel.cancel(2));
+        assertFalse(wheel.contains(2));
+        wheel.schedule(3, start + 30, 33); // moved from level 2 down to level 0
+        wheel.schedule(4, start + 9000, 44); // moved up
+        wheel.schedule(1, start + 10, 11); // same slot, new tag
+        assertEquals(3, wheel.size());
+
+        Recorder r = new Recorder(wheel, start);
+        r.stepTo(start + 10_000);
+        assertEquals(Map.of(1L, start + 10, 3L, start + 30, 4L, start + 9000), r.firedAt);
+        assertEquals(Map.of(1L, 11, 3L, 33, 4L, 44), r.tags);
+    }
+
+    @Test
+    void expiredCallbackMayScheduleAgain() {
+        TimingWheel wheel = new TimingWheel(1, 3, 0);
+        wheel.schedule(7, 100, 0);
+        List<Long> at = new ArrayList<>();
+        for (long t = 1; t <= 1000; t++) {
+            long now = t;
+            wheel.advance(now, (id, tag) -> {
+                at.add(now);
+                if (at.size() < 3) wheel.schedule(id, now + 100, tag);
+            });
+        }
+        assertEquals(List.of(100L, 200L, 300L), at);
+        assertFalse(wheel.contains(7));
+    }
+
+    @Test
+    void randomSchedulesCancelsAndReschedules() {
+        Random random = new Random(7);
+        long start = random.nextInt(1 << 20);
+        TimingWheel wheel = new TimingWheel(1, 3, start);
+        long horizon = 2 * W * W * W;
+        Map<Long, Long> expected = new HashMap<>();
+        Recorder r = new Recorder(wheel, start);
+        for (long id = 0; id < 5000; id++) {
+            long deadline = start + 1 + (long) (random.nextDouble() * random.nextDouble() * horizon);
+            wheel.schedule(id, deadline, 0);
+            expected.put(id, deadline);
+        }
+        // a stretch of time passes, then some ids are cancelled or moved
+        r.stepTo(start + W * W + 3);
+        for (long id = 0; id < 5000; id += 3) {
+            if (r.firedAt.containsKey(id)) continue;
+            if (random.nextBoolean()) {
+                assertTrue(wheel.cancel(id));
+                expected.remove(id);
+            } else {
+                long deadline = r.now + 1 + random.nextInt((int) horizon);
+                wheel.schedule(id, deadline, 0);
+                expected.put(id, deadline);
+            }
+        }
+        r.stepTo(start + 4 * horizon);
+        assertEquals(expected, r.firedAt);
+        assertEquals(0, wheel.size());
+    }
+}
@@ -0,0 +1,96 @@
+package com.selfimprovementtree.backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** A snapshot and deltas taken under continuous writes restore every write acknowledged before the last delta. */
+@SpringBootTest
+class UserDataBackupServiceTest {
+    private static final int IDS = 200;
+
+    @TempDir
+    static Path dir;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> "jdbc:h2:file:" + dir.resolve("db").toAbsolutePath() + ";MODE=PostgreSQL");
+        registry.add("app.backup.dir", () -> dir.resolve("backup").toString());
+        registry.add("app.archive.dir", () -> dir.resolve("archive").toString());
+        registry.add("app.backup.enabled", () -> "false"); // only the explicit calls below
+    }
+
+    @Autowired
+    UserDataService userData;
+
+    @Autowired
+    UserDataBackupService backup;
+
+    private record Row(long version, String json) {}
+
+    @Test
+    void restoreHasEveryWriteAcknowledgedBeforeTheLastDelta() throws Exception {
+        // latest acknowledged write of each id
+        Map<String, Row> acked = new ConcurrentHashMap<>();
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            Random random = new Random(36);
+            for (int n = 0; !stop.get(); n++) {
+                String id = "backup-" + (n < IDS ? n : random.nextInt(IDS));
+                String json = "{\"n\":" + n + "}";
+                acked.put(id, new Row(userData.upsert(id, json).getVersion(), json));
+            }
+        }, "backup-test-writer");
+        writer.start();
+        Map<String, Row> beforeLastDelta;
+        try {
+            while (acked.size() < IDS) Thread.sleep(10);
+            backup.snapshot();
+            Thread.sleep(200);
+            assertTrue(backup.delta() > 0);
+            Thread.sleep(200);
+            beforeLastDelta = new HashMap<>(acked);
+            assertTrue(backup.delta() > 0);
+            Thread.sleep(100);
+        } finally {
+            stop.set(true);
+            writer.join();
+        }
+
+        Path restored = dir.resolve("restored");
+        UserDataRestore.restore(dir.resolve("backup"), restored, null, false);
+
+        Map<String, Row> rows = new HashMap<>();
+        try (Connection c = DriverManager.getConnection("jdbc:h2:file:" + restored.toAbsolutePath() + ";MODE=PostgreSQL", "sa", "");
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT id, version, json FROM user_data WHERE id LIKE 'backup-%'")) {
+            while (rs.next()) rows.put(rs.getString(1), new Row(rs.getLong(2), rs.getString(3)));
+        }
+        assertEquals(IDS, beforeLastDelta.size());
+        beforeLastDelta.forEach((id, expected) -> {
+            Row row = rows.get(id);
+            assertNotNull(row, id);
+            // a later write may have made it into the last delta as well
+            assertTrue(row.version() >= expected.version(), id + " restored at " + row.version() + " < " + expected.version());
+            if (row.version() == expected.version()) assertEquals(expected.json(), row.json(), id);
+        });
+    }
+}
@@ -0,0 +1,165 @@
+package com.selfimprovementtree.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class UserDataMergerTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final UserDataMerger merger = new UserDataMerger(mapper);
+
+    private JsonNode merge(String stored, String base, String incoming) throws JsonProcessingException {
+        return mapper.readTree(merger.merge(json(stored), base != null ? json(base) : null, json(incoming)));
+    }
+
+    /** Single quotes for readability. */
+    private static String json(String s) {
+        return s.replace('\'', '"');
+    }
+
+    private static List<String> ids(JsonNode habits) {
+        List<String> ids = new ArrayList<>();
+        habits.forEach(h -> ids.add(h.path("id").asText()));
+        return ids;
+    }
+
+    @Test
+    void countersApplyTheDevicesDelta() throws JsonProcessingException {
+        JsonNode out = merge(
+                "{'coins':150,'gems':4,'exp':12.5,'decay':3}",
+                "{'coins':100,'gems':5,'exp':10.0,'decay':3}",
+                "{'coins':120,'gems':2,'exp':11.0,'decay':3}");
+        assertEquals(170, out.get("coins").asLong()); // +20 on top of the other device's +50
+        assertEquals(1, out.get("gems").asLong());
+        assertEquals(13.5, out.get("exp").asDouble(), 1e-9);
+        assertEquals(3, out.get("decay").asLong());
+    }
+
+    @Test
+    void countersNeverGoNegative() throws JsonProcessingException {
+        JsonNode out = merge("{'coins':10}", "{'coins':100}", "{'coins':0}");
+        assertEquals(0, out.get("coins").asLong());
+    }
+
+    @Test
+    void counterMissingFromTheDeviceKeepsTheStoredValue() throws JsonProcessingException {
+        JsonNode out = merge("{'coins':10,'gems':3}", "{'coins':10,'gems':3}", "{'coins':11}");
+        assertEquals(11, out.get("coins").asLong());
+        assertEquals(3, out.get("gems").asLong());
+    }
+
+    @Test
+    void habitsMergeById() throws JsonProcessingException {
+        String base = "{'goodHabits':["
+                + "{'id':'h1','name':'Run','count':1},{'id':'h2','name':'Read'},{'id':'h3','name':'Cook'}]}";
+        // another device bumped h1's count, deleted h3 and added h4
+        String stored = "{'goodHabits':["
+                + "{'id':'h1','name':'Run','count':5},{'id':'h2','name':'Read'},{'id':'h4','name':'Swim'}]}";
+        // this device renamed h1, deleted h2 and added h5
+        String incoming = "{'goodHabits':["
+                + "{'id':'h1','name':'Jog','count':1},{'id':'h3','name':'Cook'},{'id':'h5','name':'Stretch'}]}";
+
+        JsonNode habits = merge(stored, base, incoming).get("goodHabits");
+        assertEquals(List.of("h1", "h4", "h5"), ids(habits));
+        assertEquals("Jog", habits.get(0).get("name").asText());
+        assertEquals(5, habits.get(0).get("count").asInt());
+    }
+
+    @Test
+    void upgradeLevelsTakeTheMaximum() throws JsonProcessingException {
+        JsonNode out = merge(
+                "{'badHabits':[{'id':'b1','upgrades':{'shield':2,'roots':1}}]}",
+                "{'badHabits':[{'id':'b1','upgrades':{'shield':1,'roots':1}}]}",
+                "{'badHabits':[{'id':'b1','upgrades':{'shield':1,'roots':3,'bark':1}}]}");
+        JsonNode upgrades = out.get("badHabits").get(0).get("upgrades");
+        assertEquals(2, upgrades.get("shield").asInt());
+        assertEquals(3, upgrades.get("roots").asInt());
+        assertEquals(1, upgrades.get("bark").asInt());
+    }
+
+    @Test
+    void legacyHabitsWithoutIdsComeFromTheDevice() throws JsonProcessingException {
+        JsonNode out = merge(
+                "{'goodHabits':[{'name':'old stored'},{'id':'h1','name':'Run'}]}",
+                null,
+                "{'goodHabits':[{'name':'old incoming'},{'id':'h1','name':'Run'}]}");
+        JsonNode habits = out.get("goodHabits");
+        assertEquals(2, habits.size());
+        assertEquals("h1", habits.get(0).get("id").asText());
+        assertEquals("old incoming", habits.get(1).get("name").asText());
+    }
+
+    @Test
+    void dailyChecksUnionOnTheSameDay() throws JsonProcessingException {
+        JsonNode out = merge(
+                "{'lastOpenDate':'2025-03-01','checkedGoodToday':{'h1':true,'h3':false}}",
+                "{'lastOpenDate':'2025-03-01','checkedGoodToday':{}}",
+                "{'lastOpenDate':'2025-03-01','checkedGoodToday':{'h1':false,'h2':true}}");
+        JsonNode checks = out.get("checkedGoodToday");
+        assertEquals(3, checks.size());
+        assertEquals(true, checks.get("h1").asBoolean());
+        assertEquals(true, checks.get("h2").asBoolean());
+        assertEquals(false, checks.get("h3").asBoolean());
+    }
+
+    @Test
+    void dailyChecksOfANewerDayReplaceTheOldOnes() throws JsonProcessingException {
+        JsonNode newer = merge(
+                "{'lastOpenDate':'2025-03-01','checkedBadToday':{'b1':true}}",
+                null,
+                "{'lastOpenDate':'2025-03-02','checkedBadToday':{'b2':true}}");
+        assertEquals("2025-03-02", newer.get("lastOpenDate").asText());
+        assertFalse(newer.get("checkedBadToday").has("b1"));
+        assertEquals(true, newer.get("checkedBadToday").get("b2").asBoolean());
+
+        // a device still on yesterday neither rolls the date back nor brings back yesterday's checks
+        JsonNode older = merge(
+                "{'lastOpenDate':'2025-03-02','checkedBadToday':{'b2':true}}",
+                null,
+                "{'lastOpenDate':'2025-03-01','checkedBadToday':{'b1':true}}");
+        assertEquals("2025-03-02", older.get("lastOpenDate").asText());
+        assertFalse(older.get("checkedBadToday").has("b1"));
+    }
+
+    @Test
+    void otherFieldsTakeTheDevicesChangesOnly() throws JsonProcessingException {
+        JsonNode out = merge(
+                "{'theme':'dark','sound':true,'lang':'de'}",
+                "{'theme':'light','sound':true,'lang':'en'}",
+                "{'theme':'light','lang':'fr'}");
+        assertEquals("dark", out.get("theme").asText()); // untouched on this device
+        assertEquals("fr", out.get("lang").asText());     // changed on this device
+        assertFalse(out.has("sound"));                    // removed on this device
+    }
+
+    @Test
+    void withoutABaseTheDeviceWinsButHabitsAreUnioned() throws JsonProcessingException {
+        JsonNode out = merge(
+                "{'coins':150,'theme':'dark','sound':true,"
+                        + "'goodHabits':[{'id':'h1','name':'Run','count':5},{'id':'h4','name':'Swim'}]}",
+                null,
+                "{'coins':120,'theme':'light',"
+                        + "'goodHabits':[{'id':'h1','name':'Jog'},{'id':'h5','name':'Stretch'}]}");
+        assertEquals(120, out.get("coins").asLong());
+        assertEquals("light", out.get("theme").asText());
+        assertEquals(true, out.get("sound").asBoolean()); // absent on the device, so kept
+        JsonNode habits = out.get("goodHabits");
+        assertEquals(List.of("h1", "h4", "h5"), ids(habits));
+        assertEquals("Jog", habits.get(0).get("name").asText());
+        assertEquals(5, habits.get(0).get("count").asInt());
+    }
+
+    @Test
+    void nothingStoredOrNotAnObjectTakesTheDevicesDocument() throws JsonProcessingException {
+        assertEquals("{\"coins\":1}", merger.merge(null, null, "{\"coins\":1}"));
+        assertEquals("[1,2]", merger.merge("{\"coins\":1}", null, "[1,2]"));
+        assertEquals("{\"coins\":1}", merger.merge("[]", null, "{\"coins\":1}"));
+    }
+}
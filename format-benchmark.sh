@@ -0,0 +1,11 @@
+#!/bin/bash
+
+# Compares JSON, CBOR and Smile for a user data document: bytes (raw and gzipped) and encode/decode time.
+# See UserDataFormatBenchmark for what each column measures.
+#
+# Usage: ./format-benchmark.sh [habits] [days]   (default 20 habits with 90 days of history)
+
+cd "$(dirname "$0")/Backend"
+mvn -B -q test-compile dependency:build-classpath -Dmdep.outputFile=target/bench-classpath.txt || exit 1
+java -cp "target/test-classes:target/classes:$(cat target/bench-classpath.txt)" \
+    com.selfimprovementtree.backend.bench.UserDataFormatBenchmark "$@"
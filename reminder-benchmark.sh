@@ -0,0 +1,67 @@
+#!/bin/bash
+
+# End-to-end load test of the reminder subsystem against a local SMTP stand-in (SmtpSink).
+# Seeds N accounts whose reminders all fall in the same minute, starts the app pointed at the sink and reports
+# how long loading the timing wheel took and how fast the mails were delivered.
+#
+# Usage: ./reminder-benchmark.sh [accounts] [mails-per-second]   (default 200000 accounts, 5000/s)
+
+cd "$(dirname "$0")/Backend"
+COUNT=${1:-200000}
+RATE=${2:-5000}
+LEAD=${BENCH_LEAD_MINUTES:-2}
+PORT=${BENCH_PORT:-18080}
+SMTP_PORT=${BENCH_SMTP_PORT:-2525}
+DIR=target/reminder-bench
+DB="$DIR/selfimprovement"
+
+mvn -B -q test-compile dependency:build-classpath -Dmdep.outputFile=target/bench-classpath.txt || exit 1
+CP="target/test-classes:target/classes:$(cat target/bench-classpath.txt)"
+rm -rf "$DIR" && mkdir -p "$DIR"
+
+app() {
+    java -cp "$CP" com.selfimprovementtree.backend.BackendApplication \
+        --server.port=$PORT --spring.datasource.url="jdbc:h2:file:./$DB;MODE=PostgreSQL" \
+        --app.backup.enabled=false "$@" > "$DIR/app.log" 2>&1 &
+    APP=$!
+    until curl -sf "localhost:$PORT/api/stripe/health" > /dev/null; do
+        if ! kill -0 $APP 2>/dev/null; then echo "App failed, see $DIR/app.log"; exit 1; fi
+        sleep 0.5
+    done
+}
+
+echo "Creating schema"
+app --app.reminders.enabled=false
+kill $APP; wait $APP 2>/dev/null
+
+java -cp "$CP" com.selfimprovementtree.backend.bench.ReminderSeed "./$DB" "$COUNT" "$LEAD" || exit 1
+
+java -cp "$CP" com.selfimprovementtree.backend.bench.SmtpSink "$SMTP_PORT" > "$DIR/sink.log" &
+SINK=$!
+trap 'kill $APP $SINK 2>/dev/null' EXIT
+
+app --spring.mail.host=localhost --spring.mail.port=$SMTP_PORT \
+    --spring.mail.properties.mail.smtp.auth=false --spring.mail.properties.mail.smtp.starttls.enable=false \
+    --app.reminders.mail.max-per-second=$RATE
+until grep -q "reminder schedules" "$DIR/app.log"; do sleep 0.5; done
+grep -o "Loaded .* ms" "$DIR/app.log"
+echo "RSS after load: $(( $(ps -o rss= -p $APP) / 1024 )) MB"
+
+echo "Waiting for the reminder minute..."
+FIRST=""
+DEADLINE=$(( $(date +%s) + LEAD * 60 + 600 ))
+while [ "$(date +%s)" -lt "$DEADLINE" ]; do
+    read -r SENT CONNS < <(tail -1 "$DIR/sink.log")
+    SENT=${SENT:-0}
+    if [ -z "$FIRST" ] && [ "$SENT" -gt 0 ]; then FIRST=$(date +%s%N); fi
+    if [ "$SENT" -ge "$COUNT" ]; then break; fi
+    sleep 1
+done
+END=$(date +%s%N)
+if [ -n "$FIRST" ]; then
+    MS=$(( (END - FIRST) / 1000000 ))
+    echo "Delivered $SENT of $COUNT mails over $CONNS SMTP connections in ${MS} ms (~$(( SENT * 1000 / (MS > 0 ? MS : 1) ))/s)"
+else
+    echo "No mail delivered"
+fi
+curl -s "localhost:$PORT/api/admin/reminders" -H "X-Admin-Token: ${ADMIN_TOKEN:-dev-reset-token}"; echo
@@ -0,0 +1,44 @@
+#!/bin/bash
+
+# Compares cold start of the default jar with the fast-start build (see build-fast-start.sh).
+# For each variant it reports time-to-first-request (process start until /api/stripe/health answers)
+# and resident memory right after that first request.
+#
+# Usage: ./startup-benchmark.sh [runs]   (default 3 runs per variant; expects both builds to exist)
+
+cd "$(dirname "$0")/Backend"
+RUNS=${1:-3}
+PORT=${BENCH_PORT:-18080}
+DB="jdbc:h2:file:./target/bench/selfimprovement;MODE=PostgreSQL"
+
+JAR=$(ls target/fast-start/backend-*.jar 2>/dev/null | head -1)
+if [ -z "$JAR" ]; then
+    echo "Run ./build-fast-start.sh first"
+    exit 1
+fi
+
+measure() {
+    local label=$1; shift
+    local total_ms=0 total_rss=0
+    for i in $(seq "$RUNS"); do
+        local start=$(date +%s%N)
+        "$@" --server.port=$PORT --spring.datasource.url="$DB" > target/bench-$label.log 2>&1 &
+        local pid=$!
+        until curl -sf "localhost:$PORT/api/stripe/health" > /dev/null; do
+            if ! kill -0 $pid 2>/dev/null; then echo "$label failed, see target/bench-$label.log"; exit 1; fi
+            sleep 0.05
+        done
+        local ms=$(( ($(date +%s%N) - start) / 1000000 ))
+        local rss=$(awk '/VmRSS/ {print $2}' /proc/$pid/status)
+        kill $pid; wait $pid 2>/dev/null
+        printf "%-10s run %d: %6d ms  %7d KB RSS\n" "$label" "$i" "$ms" "$rss"
+        total_ms=$((total_ms + ms)); total_rss=$((total_rss + rss))
+    done
+    printf "%-10s mean:  %6d ms  %7d KB RSS\n\n" "$label" $((total_ms / RUNS)) $((total_rss / RUNS))
+}
+
+mkdir -p target/bench
+# Same AOT jar without its optimizations is equivalent to the plain build
+measure default  java -jar "$JAR"
+measure faststart java -XX:SharedArchiveFile=target/fast-start/app.jsa -Xshare:auto \
+    -Dspring.aot.enabled=true -jar "$JAR" --spring.profiles.active=faststart